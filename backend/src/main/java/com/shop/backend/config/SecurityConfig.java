@@ -1,7 +1,11 @@
 package com.shop.backend.config;
 
+import com.shop.backend.security.BoundedPasswordEncoder;
 import com.shop.backend.security.CustomOAuth2SuccessHandler;
 import com.shop.backend.security.JwtAuthenticationFilter;
+import com.shop.backend.service.TestResultSearchService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -30,9 +34,14 @@ public class SecurityConfig {
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
     }
 
+    // Đổi strength thì hash cũ được băm lại ở lần đăng nhập thành công kế tiếp (UserDetailsPasswordService)
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${auth.bcrypt.strength:10}") int strength,
+                                           @Value("${auth.password-hashing.threads:0}") int threads,
+                                           @Value("${auth.password-hashing.queue-capacity:64}") int queueCapacity,
+                                           MeterRegistry meterRegistry) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength), poolSize, queueCapacity, meterRegistry);
     }
 
     @Bean
@@ -72,6 +81,7 @@ public class SecurityConfig {
         configuration.setAllowedOriginPatterns(List.of("http://localhost:3000"));
         configuration.addAllowedHeader("*");
         configuration.addAllowedMethod("*");
+        configuration.setExposedHeaders(List.of(TestResultSearchService.TRUNCATED_HEADER, TestResultSearchService.NEXT_CURSOR_HEADER));
         configuration.setAllowCredentials(true);
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
@@ -86,6 +96,7 @@ public class SecurityConfig {
         config.setAllowedOriginPatterns(List.of("http://localhost:3000"));
         config.addAllowedHeader("*");
         config.addAllowedMethod("*");
+        config.setExposedHeaders(List.of(TestResultSearchService.TRUNCATED_HEADER, TestResultSearchService.NEXT_CURSOR_HEADER));
         source.registerCorsConfiguration("/**", config);
         return new CorsFilter(source);
     }
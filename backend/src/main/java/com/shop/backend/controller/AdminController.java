@@ -7,14 +7,29 @@ import com.shop.backend.dto.depression.DepressionTestResultDTO;
 import com.shop.backend.dto.UserDTO;
 import com.shop.backend.dto.depression.DepressionQuestionDTO;
 import com.shop.backend.dto.depression.CreateQuestionRequest;
-import com.shop.backend.repository.DepressionTestAnswerRepository;
+import com.shop.backend.dto.depression.AnswerDetailDTO;
+import com.shop.backend.service.AnswerStorageMigrator;
+import com.shop.backend.service.QuestionInUseException;
+import com.shop.backend.service.TestRollupService;
+import com.shop.backend.service.SubmissionMetricsBroadcaster;
+import com.shop.backend.service.ScoreDistribution;
+import com.shop.backend.service.TestResultExportService;
+import com.shop.backend.service.TestResultFilter;
+import com.shop.backend.service.TestResultSearchService;
+import com.shop.backend.service.UserDirectoryIndex;
+import com.shop.backend.service.TestAnswerReader;
 import com.shop.backend.model.DepressionQuestionOption;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -27,7 +42,28 @@ public class AdminController {
     private AdminService adminService;
     
     @Autowired
-    private DepressionTestAnswerRepository depressionTestAnswerRepository;
+    private TestAnswerReader testAnswerReader;
+    
+    @Autowired
+    private AnswerStorageMigrator answerStorageMigrator;
+    
+    @Autowired
+    private TestRollupService testRollupService;
+    
+    @Autowired
+    private SubmissionMetricsBroadcaster submissionMetricsBroadcaster;
+    
+    @Autowired
+    private ScoreDistribution scoreDistribution;
+    
+    @Autowired
+    private TestResultExportService testResultExportService;
+    
+    @Autowired
+    private TestResultSearchService testResultSearchService;
+    
+    @Autowired
+    private UserDirectoryIndex userDirectoryIndex;
     
     // Quản lý người dùng
     @GetMapping("/users")
@@ -50,6 +86,24 @@ public class AdminController {
         return ResponseEntity.ok(dtos);
     }
     
+    // Tìm user theo tên/email (tiền tố hoặc chuỗi con, không phân biệt dấu), lọc role/status; phân trang theo id
+    @GetMapping("/users/search")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> searchUsers(
+            @RequestParam(defaultValue = "") String q,
+            @RequestParam(required = false) Role role,
+            @RequestParam(required = false) User.Status status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(userDirectoryIndex.search(q, role, status, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     @GetMapping("/users/role/{role}")
     public ResponseEntity<List<UserDTO>> getUsersByRole(@PathVariable String role) {
         try {
@@ -127,21 +181,8 @@ public class AdminController {
     // Quản lý câu hỏi
     @GetMapping("/questions")
     public ResponseEntity<List<DepressionQuestionDTO>> getAllQuestions() {
-        List<DepressionQuestion> questions = adminService.getAllQuestions();
-        List<DepressionQuestionDTO> dtos = questions.stream().map(question -> {
-            DepressionQuestionDTO dto = new DepressionQuestionDTO();
-            dto.setId(question.getId());
-            dto.setQuestionText(question.getQuestionText());
-            dto.setWeight(question.getWeight());
-            dto.setCategory(question.getCategory());
-            dto.setOrder(question.getOrder());
-            dto.setIsActive(question.getIsActive());
-            // Lấy danh sách đáp án cho câu hỏi
-            List<DepressionQuestionOption> options = adminService.getQuestionOptions(question.getId());
-            dto.setOptions(options);
-            return dto;
-        }).collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+        // Câu hỏi và đáp án lấy từ QuestionCatalog, không truy vấn đáp án theo từng câu hỏi
+        return ResponseEntity.ok(adminService.getAllQuestions());
     }
     
     @PostMapping("/questions")
@@ -187,6 +228,8 @@ public class AdminController {
         try {
             adminService.deleteQuestion(questionId);
             return ResponseEntity.ok().build();
+        } catch (QuestionInUseException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -307,11 +350,40 @@ public class AdminController {
         return ResponseEntity.ok(dtos);
     }
     
+    // Danh sách kết quả test: lọc theo mức độ, loại test, khoảng ngày, học sinh; phân trang keyset khi có cursor/limit,
+    // không có thì trả về mảng tối đa 1000 dòng (bị cắt thì có header X-Result-Truncated / X-Next-Cursor)
     @GetMapping("/test-results")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<DepressionTestResultDTO>> getAllTestResults() {
-        List<DepressionTestResultDTO> results = adminService.getAllTestResultDTOs();
-        return ResponseEntity.ok(results);
+    public ResponseEntity<?> getAllTestResults(
+            @RequestParam(required = false) DepressionTestResult.SeverityLevel severity,
+            @RequestParam(required = false) String testType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long studentId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        try {
+            TestResultFilter filter = new TestResultFilter(from, to, severity, testType, studentId);
+            if (cursor != null || limit != null) {
+                return ResponseEntity.ok(testResultSearchService.page(filter, cursor, limit != null ? limit : TestResultSearchService.DEFAULT_PAGE_SIZE));
+            }
+            return TestResultSearchService.unpagedResponse(testResultSearchService.unpaged(filter));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    // Xuất kết quả test (CSV hoặc NDJSON), ghi dần ra response nên không giữ toàn bộ dữ liệu trong heap
+    @GetMapping("/test-results/export")
+    @PreAuthorize("hasAnyRole('ADMIN','EXPERT')")
+    public ResponseEntity<?> exportTestResults(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) DepressionTestResult.SeverityLevel severity,
+            @RequestParam(required = false) String testType,
+            @RequestParam(required = false) Long studentId) {
+        return testResultExportService.download(format, new TestResultFilter(from, to, severity, testType, studentId));
     }
     
     @DeleteMapping("/test-results/{id}")
@@ -325,29 +397,39 @@ public class AdminController {
         }
     }
     
+    // Đáp án của nhiều bài test trong một lần gọi (?ids=1,2,3), trả về map theo id bài test
+    @GetMapping("/test-results/answers")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getTestAnswersBatch(@RequestParam List<Long> ids) {
+        try {
+            return ResponseEntity.ok(testAnswerReader.getAnswerDetails(ids));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     @GetMapping("/test-results/{testResultId}/answers")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<List<AnswerDetailDTO>> getTestAnswers(@PathVariable Long testResultId) {
-        List<com.shop.backend.model.DepressionTestAnswer> answers = depressionTestAnswerRepository.findByTestResultId(testResultId);
-        List<AnswerDetailDTO> result = answers.stream().map(ans -> {
-            AnswerDetailDTO dto = new AnswerDetailDTO();
-            dto.setQuestionId(ans.getQuestion().getId());
-            dto.setQuestionText(ans.getQuestion().getQuestionText());
-            dto.setAnswerValue(ans.getAnswerValue());
-            return dto;
-        }).toList();
-        return ResponseEntity.ok(result);
+        return ResponseEntity.ok(testAnswerReader.getAnswerDetails(testResultId));
+    }
+    
+    // Chuyển đáp án dạng từng dòng sang dạng nén (chạy nền, xem tiến độ bằng GET)
+    @PostMapping("/test-answers/pack")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> packTestAnswers(
+            @RequestParam(defaultValue = "500") int batchSize,
+            @RequestParam(defaultValue = "4") int threads) {
+        if (!answerStorageMigrator.start(batchSize, threads)) {
+            return ResponseEntity.status(org.springframework.http.HttpStatus.CONFLICT).body(answerStorageMigrator.getStatus());
+        }
+        return ResponseEntity.accepted().body(answerStorageMigrator.getStatus());
     }
-    public static class AnswerDetailDTO {
-        private Long questionId;
-        private String questionText;
-        private Integer answerValue;
-        public Long getQuestionId() { return questionId; }
-        public void setQuestionId(Long questionId) { this.questionId = questionId; }
-        public String getQuestionText() { return questionText; }
-        public void setQuestionText(String questionText) { this.questionText = questionText; }
-        public Integer getAnswerValue() { return answerValue; }
-        public void setAnswerValue(Integer answerValue) { this.answerValue = answerValue; }
+    
+    @GetMapping("/test-answers/pack")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getPackTestAnswersStatus() {
+        return ResponseEntity.ok(answerStorageMigrator.getStatus());
     }
     
     // Thống kê số lượt test theo ngày (và số severe test)
@@ -357,6 +439,30 @@ public class AdminController {
         Map<String, Object> result = adminService.getTestCountByDateRange(days);
         return ResponseEntity.ok(result);
     }
+    
+    // Số bài nộp trực tiếp (SSE): "snapshot" khi kết nối, sau đó "delta" theo chu kỳ
+    @GetMapping(value = "/statistics/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN','EXPERT')")
+    public SseEmitter streamLiveStatistics() {
+        return submissionMetricsBroadcaster.subscribe();
+    }
+    
+    // Histogram điểm theo loại test (tính từ bộ đếm trong bộ nhớ)
+    @GetMapping("/statistics/score-histogram")
+    @PreAuthorize("hasAnyRole('ADMIN','EXPERT')")
+    public ResponseEntity<Map<String, Object>> getScoreHistogram(
+            @RequestParam(required = false) String testType,
+            @RequestParam(defaultValue = "1") int bucketWidth) {
+        return ResponseEntity.ok(scoreDistribution.histogram(testType, bucketWidth));
+    }
+    
+    // Tính lại bảng test_daily_rollup từ dữ liệu gốc (sau khi sửa tay dữ liệu hoặc import)
+    @PostMapping("/statistics/rollup/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rebuildTestRollup() {
+        testRollupService.rebuild();
+        return ResponseEntity.ok().build();
+    }
 
     @GetMapping("/profile")
     public ResponseEntity<UserDTO> getProfile(@AuthenticationPrincipal org.springframework.security.core.userdetails.User userDetails) {
@@ -2,11 +2,10 @@ package com.shop.backend.controller;
 
 import com.shop.backend.model.AdviceMessage;
 import com.shop.backend.repository.AdviceMessageRepository;
-import com.shop.backend.repository.UserRepository;
 import com.shop.backend.dto.AdviceMessageDTO;
+import com.shop.backend.security.AuthenticatedUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -16,29 +15,12 @@ import java.util.List;
 public class AdviceMessageController {
     @Autowired
     private AdviceMessageRepository adviceMessageRepository;
-    @Autowired
-    private UserRepository userRepository;
-
-    // Helper: lấy userId từ token
-    private Long getUserIdFromAuthentication(Authentication authentication) {
-        String name = authentication.getName();
-        if (name.startsWith("anonymous_")) {
-            // Anonymous user: lấy theo ID
-            Long userId = Long.parseLong(name.substring("anonymous_".length()));
-            return userId;
-        } else {
-            // User thường: lấy theo email
-            return userRepository.findByEmail(name.toLowerCase())
-                    .orElseThrow(() -> new RuntimeException("User not found for email: " + name))
-                    .getId();
-        }
-    }
 
     // Lấy danh sách lời khuyên/thông báo của học sinh (mới nhất trước)
     @GetMapping("/received")
-    public ResponseEntity<?> getReceivedAdvice(Authentication authentication) {
+    public ResponseEntity<?> getReceivedAdvice(AuthenticatedUser currentUser) {
         try {
-            Long userId = getUserIdFromAuthentication(authentication);
+            Long userId = currentUser.getUserId();
             List<AdviceMessage> messages = adviceMessageRepository.findByReceiverIdOrderBySentAtDesc(userId);
             List<AdviceMessageDTO> dtos = messages.stream().map(msg -> {
                 AdviceMessageDTO dto = new AdviceMessageDTO();
@@ -58,16 +40,16 @@ public class AdviceMessageController {
 
     // Lấy số lượng thông báo chưa đọc
     @GetMapping("/unread/count")
-    public ResponseEntity<Long> getUnreadAdviceCount(Authentication authentication) {
-        Long userId = getUserIdFromAuthentication(authentication);
+    public ResponseEntity<Long> getUnreadAdviceCount(AuthenticatedUser currentUser) {
+        Long userId = currentUser.getUserId();
         long count = adviceMessageRepository.findByReceiverIdAndIsReadFalseOrderBySentAtDesc(userId).size();
         return ResponseEntity.ok(count);
     }
 
     // Đánh dấu một thông báo là đã đọc
     @PutMapping("/{id}/read")
-    public ResponseEntity<?> markAdviceAsRead(@PathVariable Long id, Authentication authentication) {
-        Long userId = getUserIdFromAuthentication(authentication);
+    public ResponseEntity<?> markAdviceAsRead(@PathVariable Long id, AuthenticatedUser currentUser) {
+        Long userId = currentUser.getUserId();
         AdviceMessage msg = adviceMessageRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("AdviceMessage not found"));
         if (!msg.getReceiver().getId().equals(userId)) {
@@ -7,11 +7,17 @@ import com.shop.backend.dto.auth.ForgotPasswordRequest;
 import com.shop.backend.dto.auth.VerifyOtpRequest;
 import com.shop.backend.dto.auth.UpgradeAnonymousRequest;
 import com.shop.backend.service.AuthService;
+import com.shop.backend.service.OtpLockedException;
 import com.shop.backend.service.OtpService;
+import com.shop.backend.service.OtpStoreFullException;
+import com.shop.backend.service.PasswordHashingBusyException;
 import com.shop.backend.model.User;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -28,6 +34,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.util.Map;
+import java.util.Objects;
 import com.shop.backend.dto.SystemAnnouncementDTO;
 import com.shop.backend.service.AdminService;
 import java.util.List;
@@ -46,6 +53,26 @@ public class AuthController {
     @Autowired
     private AdminService adminService;
 
+    // Pool băm mật khẩu đang đầy: trả lỗi ngay để client thử lại, không giữ thread của Tomcat
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<?> handlePasswordHashingBusy(PasswordHashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "2")
+                .body(Map.of("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(OtpLockedException.class)
+    public ResponseEntity<?> handleOtpLocked(OtpLockedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Map.of("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(OtpStoreFullException.class)
+    public ResponseEntity<?> handleOtpStoreFull(OtpStoreFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "60")
+                .body(Map.of("error", e.getMessage()));
+    }
+
     @PostMapping("/register")
     public ResponseEntity<AuthResponse> register(@Valid @RequestBody RegisterRequest request) {
         return ResponseEntity.ok(authService.register(request));
@@ -95,6 +122,7 @@ public class AuthController {
             return ResponseEntity.badRequest().body("Mã OTP không đúng hoặc đã hết hạn!");
         }
         user.setPassword(passwordEncoder.encode(req.getNewPassword()));
+        user.revokeTokens();
         userRepository.save(user);
         // Gửi email thông báo đổi mật khẩu thành công
         authService.sendPasswordChangedEmail(user.getEmail(), user.getFirstName() != null ? user.getFirstName() : "Người dùng");
@@ -113,6 +141,7 @@ public class AuthController {
         
         User user = userOpt.get();
         user.setPassword(passwordEncoder.encode(newPassword));
+        user.revokeTokens();
         userRepository.save(user);
         
         return ResponseEntity.ok("Đã reset mật khẩu thành công!");
@@ -159,6 +188,10 @@ public class AuthController {
     public ResponseEntity<User> updateUser(@PathVariable Long id, @RequestBody User user) {
         return userRepository.findById(id)
             .map(u -> {
+                // Đổi email, quyền hoặc trạng thái thì token đã cấp không còn đúng
+                if (!Objects.equals(u.getEmail(), user.getEmail()) || u.getRole() != user.getRole() || u.getStatus() != user.getStatus()) {
+                    u.revokeTokens();
+                }
                 u.setEmail(user.getEmail());
                 u.setFirstName(user.getFirstName());
                 u.setLastName(user.getLastName());
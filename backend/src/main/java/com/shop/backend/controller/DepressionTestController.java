@@ -2,17 +2,26 @@ package com.shop.backend.controller;
 
 import com.shop.backend.dto.depression.DepressionTestRequest;
 import com.shop.backend.dto.depression.DepressionTestResponse;
-import com.shop.backend.dto.depression.DepressionQuestionDTO;
-import com.shop.backend.dto.depression.DepressionTestResultDTO;
-import com.shop.backend.model.User;
-import com.shop.backend.repository.UserRepository;
+import com.shop.backend.dto.depression.TestDraftDTO;
 import com.shop.backend.service.DepressionTestService;
+import com.shop.backend.service.InvalidSubmissionException;
+import com.shop.backend.service.ScoredSubmission;
+import com.shop.backend.service.SubmissionInProgressException;
+import com.shop.backend.service.SubmissionIdempotencyCache;
+import com.shop.backend.service.SubmissionQueueFullException;
+import com.shop.backend.service.TestResultSearchService;
+import com.shop.backend.service.QuestionPayloadCache;
+import com.shop.backend.security.AuthenticatedUser;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/depression-test")
@@ -22,36 +31,106 @@ public class DepressionTestController {
     private DepressionTestService depressionTestService;
     
     @Autowired
-    private UserRepository userRepository;
+    private QuestionPayloadCache questionPayloadCache;
     
+    // Trả về payload JSON đã render sẵn (gzip nếu client hỗ trợ), 304 khi ETag không đổi
     @GetMapping("/questions")
-    public ResponseEntity<List<DepressionQuestionDTO>> getQuestions(@RequestParam(value = "type", required = false) String testKey) {
-        List<DepressionQuestionDTO> questions;
-        if (testKey != null && !testKey.isEmpty()) {
-            questions = depressionTestService.getActiveQuestionDTOsByTestKey(testKey);
-        } else {
-            questions = depressionTestService.getActiveQuestionDTOs();
+    public ResponseEntity<byte[]> getQuestions(
+            @RequestParam(value = "type", required = false) String testKey,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        QuestionPayloadCache.Payload payload = questionPayloadCache.get(testKey);
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        String etag = gzip ? payload.gzipEtag() : payload.etag();
+        if (payload.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
         }
-        return ResponseEntity.ok(questions);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(payload.gzipBody());
+        }
+        return builder.body(payload.body());
     }
     
     @PostMapping("/submit")
-    public ResponseEntity<DepressionTestResponse> submitTest(
+    public ResponseEntity<?> submitTest(
             @RequestBody DepressionTestRequest request,
-            Authentication authentication) {
-        String userName = authentication.getName();
-        User user;
-        if (userName.startsWith("anonymous_")) {
-            Long userId = Long.parseLong(userName.substring("anonymous_".length()));
-            user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        } else {
-            user = userRepository.findByEmail(userName)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            AuthenticatedUser currentUser) {
+        if (idempotencyKey != null && !SubmissionIdempotencyCache.isValidKey(idempotencyKey)) {
+            return ResponseEntity.badRequest().body(Map.of("error",
+                    "Idempotency-Key phải gồm 1-" + SubmissionIdempotencyCache.MAX_KEY_LENGTH + " ký tự ASCII in được"));
+        }
+        // Kiểm tra và chấm điểm trên catalog trong bộ nhớ trước khi truy vấn database
+        ScoredSubmission submission;
+        try {
+            submission = depressionTestService.scoreSubmission(request);
+        } catch (InvalidSubmissionException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        DepressionTestResponse response;
+        try {
+            response = depressionTestService.submitTest(currentUser.getUserId(), submission, idempotencyKey);
+        } catch (SubmissionQueueFullException e) {
+            return tooManyRequests(e);
+        } catch (SubmissionInProgressException e) {
+            // Không phải quá tải: request trước với cùng key chưa xong, gửi lại sau sẽ nhận đúng kết quả của nó
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(Map.of("error", e.getMessage()));
         }
-        DepressionTestResponse response = depressionTestService.submitTest(user.getId(), request);
         return ResponseEntity.ok(response);
     }
+    
+    // Bài làm dở: client autosave từng phần, tải lại khi mở lại trang, và nộp mà không cần gửi lại đáp án
+    @GetMapping("/draft")
+    public ResponseEntity<?> getDraft(AuthenticatedUser currentUser) {
+        TestDraftDTO draft = depressionTestService.getDraft(currentUser.getUserId());
+        if (draft == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Không có bài làm dở"));
+        }
+        return ResponseEntity.ok(draft);
+    }
+    
+    @PutMapping("/draft")
+    public ResponseEntity<?> saveDraft(@RequestBody DepressionTestRequest request, AuthenticatedUser currentUser) {
+        try {
+            return ResponseEntity.ok(depressionTestService.saveDraft(currentUser.getUserId(), request));
+        } catch (InvalidSubmissionException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @DeleteMapping("/draft")
+    public ResponseEntity<?> discardDraft(AuthenticatedUser currentUser) {
+        depressionTestService.discardDraft(currentUser.getUserId());
+        return ResponseEntity.noContent().build();
+    }
+    
+    @PostMapping("/draft/submit")
+    public ResponseEntity<?> submitDraft(AuthenticatedUser currentUser) {
+        try {
+            return ResponseEntity.ok(depressionTestService.submitDraft(currentUser.getUserId()));
+        } catch (InvalidSubmissionException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (SubmissionQueueFullException e) {
+            return tooManyRequests(e);
+        }
+    }
+    
+    private static ResponseEntity<?> tooManyRequests(SubmissionQueueFullException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(Map.of("error", e.getMessage()));
+    }
 
     @GetMapping("/categories")
     public ResponseEntity<List<String>> getCategories() {
@@ -59,18 +138,19 @@ public class DepressionTestController {
         return ResponseEntity.ok(categories);
     }
 
+    // Không có cursor/limit: trả về danh sách như trước (tối đa 1000 bài, bị cắt thì có header X-Next-Cursor); có thì trả về CursorPage
     @GetMapping("/history")
-    public ResponseEntity<List<DepressionTestResultDTO>> getTestHistory(Authentication authentication) {
-        String userEmail = authentication.getName();
-        System.out.println("[DEBUG] Email from token: " + userEmail);
-        User user = userRepository.findByEmail(userEmail).orElse(null);
-        if (user == null) {
-            System.err.println("[DEBUG] User not found for email: " + userEmail);
-            return ResponseEntity.ok(java.util.Collections.emptyList());
+    public ResponseEntity<?> getTestHistory(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            AuthenticatedUser currentUser) {
+        if (cursor != null || limit != null) {
+            try {
+                return ResponseEntity.ok(depressionTestService.getTestHistoryPage(currentUser.getUserId(), cursor, limit != null ? limit : 20));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
         }
-        System.out.println("[DEBUG] User id: " + user.getId());
-        List<DepressionTestResultDTO> history = depressionTestService.getTestHistoryForUser(user.getId());
-        System.out.println("[DEBUG] History size: " + (history != null ? history.size() : 0));
-        return ResponseEntity.ok(history);
+        return TestResultSearchService.unpagedResponse(depressionTestService.getTestHistoryForUser(currentUser.getUserId()));
     }
 } 
\ No newline at end of file
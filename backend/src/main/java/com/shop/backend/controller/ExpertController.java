@@ -3,20 +3,32 @@ package com.shop.backend.controller;
 import com.shop.backend.dto.expert.ExpertNoteRequest;
 import com.shop.backend.dto.expert.AdviceMessageRequest;
 import com.shop.backend.model.*;
-import com.shop.backend.repository.UserRepository;
+import com.shop.backend.security.AuthenticatedUser;
+import com.shop.backend.service.ExpertContentIndex;
 import com.shop.backend.service.ExpertService;
-import com.shop.backend.dto.depression.DepressionTestResultDTO;
-import com.shop.backend.repository.DepressionTestAnswerRepository;
+import com.shop.backend.service.TriageConflictException;
+import com.shop.backend.service.TriageService;
+import com.shop.backend.dto.depression.AnswerDetailDTO;
+import com.shop.backend.service.TestAnswerReader;
+import com.shop.backend.service.SubmissionMetricsBroadcaster;
+import com.shop.backend.service.TestResultExportService;
+import com.shop.backend.service.TestResultFilter;
+import com.shop.backend.service.TestResultSearchService;
 import com.shop.backend.dto.expert.AdviceMessageDTO;
+import com.shop.backend.dto.expert.TriageCaseDTO;
 import com.shop.backend.dto.UserDTO;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDate;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,89 +41,102 @@ public class ExpertController {
     private ExpertService expertService;
     
     @Autowired
-    private UserRepository userRepository;
+    private TestAnswerReader testAnswerReader;
     
     @Autowired
-    private DepressionTestAnswerRepository depressionTestAnswerRepository;
-    
-    // Helper method to get expert ID from authentication
-    private Long getExpertIdFromAuthentication(Authentication authentication) {
-        String userEmail = authentication.getName();
-        logger.info("[ExpertController] Email from token: {}", userEmail);
-        User user = userRepository.findByEmail(userEmail)
-            .orElseThrow(() -> {
-                logger.error("[ExpertController] User not found for email: {}", userEmail);
-                return new RuntimeException("User not found for email: " + userEmail);
-            });
-        logger.info("[ExpertController] Found expertId: {} for email: {}", user.getId(), userEmail);
-        return user.getId();
-    }
-    
-    // Lấy danh sách tất cả kết quả test
+    private SubmissionMetricsBroadcaster submissionMetricsBroadcaster;
+    
+    @Autowired
+    private TestResultExportService testResultExportService;
+    
+    @Autowired
+    private TestResultSearchService testResultSearchService;
+    
+    @Autowired
+    private ExpertContentIndex expertContentIndex;
+    
+    @Autowired
+    private TriageService triageService;
+    
+    // Danh sách kết quả test: lọc theo mức độ, loại test, khoảng ngày, học sinh; phân trang keyset khi có cursor/limit,
+    // không có thì trả về mảng tối đa 1000 dòng (bị cắt thì có header X-Result-Truncated / X-Next-Cursor)
     @GetMapping("/test-results")
-    public ResponseEntity<List<DepressionTestResultDTO>> getAllTestResults() {
-        List<DepressionTestResultDTO> results = expertService.getAllTestResultDTOs();
-        return ResponseEntity.ok(results);
+    public ResponseEntity<?> getAllTestResults(
+            @RequestParam(required = false) DepressionTestResult.SeverityLevel severity,
+            @RequestParam(required = false) String testType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long studentId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        try {
+            TestResultFilter filter = new TestResultFilter(from, to, severity, testType, studentId);
+            if (cursor != null || limit != null) {
+                return ResponseEntity.ok(testResultSearchService.page(filter, cursor, limit != null ? limit : TestResultSearchService.DEFAULT_PAGE_SIZE));
+            }
+            return TestResultSearchService.unpagedResponse(testResultSearchService.unpaged(filter));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    // Xuất kết quả test (CSV hoặc NDJSON), ghi dần ra response nên không giữ toàn bộ dữ liệu trong heap
+    @GetMapping("/test-results/export")
+    public ResponseEntity<?> exportTestResults(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) DepressionTestResult.SeverityLevel severity,
+            @RequestParam(required = false) String testType,
+            @RequestParam(required = false) Long studentId) {
+        return testResultExportService.download(format, new TestResultFilter(from, to, severity, testType, studentId));
     }
     
     // Lấy danh sách kết quả test theo mức độ nghiêm trọng
     @GetMapping("/test-results/severity/{severityLevel}")
-    public ResponseEntity<List<DepressionTestResultDTO>> getTestResultsBySeverity(
-            @PathVariable String severityLevel) {
+    public ResponseEntity<?> getTestResultsBySeverity(
+            @PathVariable String severityLevel,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        DepressionTestResult.SeverityLevel level;
         try {
-            DepressionTestResult.SeverityLevel level = DepressionTestResult.SeverityLevel.valueOf(severityLevel.toUpperCase());
-            List<DepressionTestResult> results = expertService.getTestResultsBySeverity(level);
-            List<DepressionTestResultDTO> dtos = results.stream().map(result -> {
-                DepressionTestResultDTO dto = new DepressionTestResultDTO();
-                dto.setId(result.getId());
-                dto.setTotalScore(result.getTotalScore());
-                dto.setSeverityLevel(result.getSeverityLevel() != null ? result.getSeverityLevel().name() : null);
-                dto.setTestedAt(result.getTestedAt());
-                dto.setDiagnosis(result.getDiagnosis());
-                
-                // Lấy thông tin user nếu có
-                if (result.getUser() != null) {
-                    dto.setStudentName(result.getUser().getFirstName() + " " + result.getUser().getLastName());
-                    dto.setEmail(result.getUser().getEmail());
-                }
-                
-                return dto;
-            }).collect(Collectors.toList());
-            return ResponseEntity.ok(dtos);
+            level = DepressionTestResult.SeverityLevel.valueOf(severityLevel.toUpperCase());
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
+        try {
+            TestResultFilter filter = TestResultFilter.bySeverity(level);
+            if (cursor != null || limit != null) {
+                return ResponseEntity.ok(testResultSearchService.page(filter, cursor, limit != null ? limit : TestResultSearchService.DEFAULT_PAGE_SIZE));
+            }
+            return TestResultSearchService.unpagedResponse(testResultSearchService.unpaged(filter));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
     
     // Lấy lịch sử test của một học sinh
     @GetMapping("/student/{studentId}/test-history")
-    public ResponseEntity<List<DepressionTestResultDTO>> getStudentTestHistory(@PathVariable Long studentId) {
-        List<DepressionTestResult> history = expertService.getStudentTestHistory(studentId);
-        List<DepressionTestResultDTO> dtos = history.stream().map(result -> {
-            DepressionTestResultDTO dto = new DepressionTestResultDTO();
-            dto.setId(result.getId());
-            dto.setTotalScore(result.getTotalScore());
-            dto.setSeverityLevel(result.getSeverityLevel() != null ? result.getSeverityLevel().name() : null);
-            dto.setTestedAt(result.getTestedAt());
-            dto.setDiagnosis(result.getDiagnosis());
-            
-            // Lấy thông tin user nếu có
-            if (result.getUser() != null) {
-                dto.setStudentName(result.getUser().getFirstName() + " " + result.getUser().getLastName());
-                dto.setEmail(result.getUser().getEmail());
+    public ResponseEntity<?> getStudentTestHistory(
+            @PathVariable Long studentId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        if (cursor != null || limit != null) {
+            try {
+                return ResponseEntity.ok(expertService.getStudentTestHistoryPage(studentId, cursor, limit != null ? limit : 20));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(java.util.Map.of("error", e.getMessage()));
             }
-            
-            return dto;
-        }).collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+        }
+        return TestResultSearchService.unpagedResponse(expertService.getStudentTestHistory(studentId));
     }
     
     // Tạo nhận xét cho học sinh
     @PostMapping("/notes")
     public ResponseEntity<ExpertNote> createNote(
             @RequestBody ExpertNoteRequest request,
-            Authentication authentication) {
-        Long expertId = getExpertIdFromAuthentication(authentication);
+            AuthenticatedUser currentUser) {
+        Long expertId = currentUser.getUserId();
         ExpertNote note = expertService.createNote(expertId, request);
         return ResponseEntity.ok(note);
     }
@@ -120,16 +145,16 @@ public class ExpertController {
     @PostMapping("/advice")
     public ResponseEntity<AdviceMessage> sendAdvice(
             @RequestBody AdviceMessageRequest request,
-            Authentication authentication) {
-        Long expertId = getExpertIdFromAuthentication(authentication);
+            AuthenticatedUser currentUser) {
+        Long expertId = currentUser.getUserId();
         AdviceMessage message = expertService.sendAdvice(expertId, request);
         return ResponseEntity.ok(message);
     }
     
     // Lấy danh sách nhận xét của chuyên gia
     @GetMapping("/notes")
-    public ResponseEntity<List<ExpertNote>> getExpertNotes(Authentication authentication) {
-        Long expertId = getExpertIdFromAuthentication(authentication);
+    public ResponseEntity<List<ExpertNote>> getExpertNotes(AuthenticatedUser currentUser) {
+        Long expertId = currentUser.getUserId();
         List<ExpertNote> notes = expertService.getExpertNotes(expertId);
         return ResponseEntity.ok(notes);
     }
@@ -143,13 +168,106 @@ public class ExpertController {
     
     // Lấy tin nhắn đã gửi
     @GetMapping("/messages/sent")
-    public ResponseEntity<List<AdviceMessageDTO>> getSentMessages(Authentication authentication) {
-        Long expertId = getExpertIdFromAuthentication(authentication);
+    public ResponseEntity<List<AdviceMessageDTO>> getSentMessages(AuthenticatedUser currentUser) {
+        Long expertId = currentUser.getUserId();
         List<AdviceMessageDTO> messages = expertService.getSentMessages(expertId);
         logger.info("[ExpertController] expertId {} has {} sent advice messages", expertId, messages.size());
         return ResponseEntity.ok(messages);
     }
     
+    // Tìm kiếm toàn văn trong nhận xét và lời khuyên (xếp hạng theo độ liên quan).
+    // Chuyên gia chỉ tìm trong nội dung của chính mình, admin tìm trên toàn bộ.
+    @GetMapping("/search")
+    public ResponseEntity<?> searchContent(
+            @RequestParam String q,
+            @RequestParam(required = false) String type,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            AuthenticatedUser currentUser) {
+        ExpertContentIndex.ContentType contentType = null;
+        if (type != null && !type.isEmpty()) {
+            try {
+                contentType = ExpertContentIndex.ContentType.valueOf(type.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Loại nội dung không hợp lệ: " + type));
+            }
+        }
+        boolean isAdmin = currentUser.getRole() == Role.ADMIN;
+        Long expertId = isAdmin ? null : currentUser.getUserId();
+        try {
+            return ResponseEntity.ok(expertContentIndex.search(q, contentType, expertId, page, size));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    // Dựng lại chỉ mục tìm kiếm từ database (chạy nền); chỉ admin
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<?> rebuildSearchIndex(AuthenticatedUser currentUser) {
+        if (currentUser.getRole() != Role.ADMIN) {
+            return ResponseEntity.status(403).body(Map.of("error", "Chỉ admin được dựng lại chỉ mục tìm kiếm"));
+        }
+        if (!expertContentIndex.startRebuild()) {
+            return ResponseEntity.status(409).body(Map.of("error", "Chỉ mục đang được dựng lại"));
+        }
+        return ResponseEntity.accepted().build();
+    }
+    
+    // Đầu hàng đợi triage (đọc từ bộ nhớ, không truy vấn kết quả test)
+    @GetMapping("/triage/head")
+    public ResponseEntity<?> getTriageHead(@RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(Map.of("size", triageService.size(), "cases", triageService.peek(Math.min(limit, 100))));
+    }
+    
+    // Các ca mình đang nhận và chưa đóng
+    @GetMapping("/triage/mine")
+    public ResponseEntity<?> getMyTriageCases(AuthenticatedUser currentUser) {
+        return ResponseEntity.ok(triageService.getClaimedCases(currentUser.getUserId()));
+    }
+    
+    // Nhận ca ưu tiên cao nhất; 204 nếu hàng đợi trống
+    @PostMapping("/triage/claim")
+    public ResponseEntity<?> claimNextTriageCase(AuthenticatedUser currentUser) {
+        TriageCaseDTO claimed = triageService.claimNext(currentUser.getUserId());
+        return claimed != null ? ResponseEntity.ok(claimed) : ResponseEntity.noContent().build();
+    }
+    
+    @PostMapping("/triage/{caseId}/claim")
+    public ResponseEntity<?> claimTriageCase(@PathVariable Long caseId, AuthenticatedUser currentUser) {
+        try {
+            return ResponseEntity.ok(triageService.claim(caseId, currentUser.getUserId()));
+        } catch (TriageConflictException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @PostMapping("/triage/{caseId}/acknowledge")
+    public ResponseEntity<?> acknowledgeTriageCase(@PathVariable Long caseId, AuthenticatedUser currentUser) {
+        try {
+            return ResponseEntity.ok(triageService.acknowledge(caseId, currentUser.getUserId()));
+        } catch (TriageConflictException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @PostMapping("/triage/{caseId}/resolve")
+    public ResponseEntity<?> resolveTriageCase(@PathVariable Long caseId, AuthenticatedUser currentUser) {
+        try {
+            return ResponseEntity.ok(triageService.resolve(caseId, currentUser.getUserId()));
+        } catch (TriageConflictException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @PostMapping("/triage/{caseId}/release")
+    public ResponseEntity<?> releaseTriageCase(@PathVariable Long caseId, AuthenticatedUser currentUser) {
+        try {
+            return ResponseEntity.ok(triageService.release(caseId, currentUser.getUserId()));
+        } catch (TriageConflictException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     // Đánh dấu tin nhắn đã đọc
     @PutMapping("/messages/{messageId}/read")
     public ResponseEntity<?> markMessageAsRead(@PathVariable Long messageId) {
@@ -157,32 +275,20 @@ public class ExpertController {
         return ResponseEntity.ok().build();
     }
     
+    // Đáp án của nhiều bài test trong một lần gọi (?ids=1,2,3), trả về map theo id bài test
+    @GetMapping("/test-results/answers")
+    public ResponseEntity<?> getTestAnswersBatch(@RequestParam List<Long> ids) {
+        try {
+            return ResponseEntity.ok(testAnswerReader.getAnswerDetails(ids));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     // Lấy đáp án chi tiết cho một bài test
     @GetMapping("/test-results/{testResultId}/answers")
     public ResponseEntity<List<AnswerDetailDTO>> getTestAnswers(@PathVariable Long testResultId) {
-        List<DepressionTestAnswer> answers = depressionTestAnswerRepository.findByTestResultId(testResultId);
-        List<AnswerDetailDTO> result = answers.stream().map(ans -> {
-            AnswerDetailDTO dto = new AnswerDetailDTO();
-            dto.setQuestionId(ans.getQuestion().getId());
-            dto.setQuestionText(ans.getQuestion().getQuestionText());
-            dto.setAnswerValue(ans.getAnswerValue());
-            return dto;
-        }).toList();
-        return ResponseEntity.ok(result);
-    }
-
-    // DTO cho đáp án chi tiết
-    public static class AnswerDetailDTO {
-        private Long questionId;
-        private String questionText;
-        private Integer answerValue;
-        // getters/setters
-        public Long getQuestionId() { return questionId; }
-        public void setQuestionId(Long questionId) { this.questionId = questionId; }
-        public String getQuestionText() { return questionText; }
-        public void setQuestionText(String questionText) { this.questionText = questionText; }
-        public Integer getAnswerValue() { return answerValue; }
-        public void setAnswerValue(Integer answerValue) { this.answerValue = answerValue; }
+        return ResponseEntity.ok(testAnswerReader.getAnswerDetails(testResultId));
     }
 
     // Thống kê số lượt test theo ngày (và số severe test) trong khoảng thời gian
@@ -191,6 +297,12 @@ public class ExpertController {
         return ResponseEntity.ok(expertService.getTestCountByDateRange(days));
     }
 
+    // Số bài nộp trực tiếp cho phiên kiểm tra đang diễn ra (SSE)
+    @GetMapping(value = "/statistics/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLiveStatistics() {
+        return submissionMetricsBroadcaster.subscribe();
+    }
+
     @GetMapping("/profile")
     public ResponseEntity<UserDTO> getCurrentExpertProfile(Authentication authentication) {
         String email = authentication.getName();
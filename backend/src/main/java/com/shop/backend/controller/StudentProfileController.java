@@ -3,9 +3,9 @@ package com.shop.backend.controller;
 import com.shop.backend.dto.UserDTO;
 import com.shop.backend.model.User;
 import com.shop.backend.repository.UserRepository;
+import com.shop.backend.security.AuthenticatedUser;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -15,10 +15,9 @@ public class StudentProfileController {
     private final UserRepository userRepository;
 
     @GetMapping("/profile")
-    public ResponseEntity<UserDTO> getCurrentStudentProfile(Authentication authentication) {
-        String email = authentication.getName();
-        User user = userRepository.findByEmail(email)
-            .orElseThrow(() -> new RuntimeException("User not found for email: " + email));
+    public ResponseEntity<UserDTO> getCurrentStudentProfile(AuthenticatedUser currentUser) {
+        User user = userRepository.findById(currentUser.getUserId())
+            .orElseThrow(() -> new RuntimeException("User not found: " + currentUser.getUsername()));
         UserDTO dto = new UserDTO();
         dto.setId(user.getId());
         dto.setFirstName(user.getFirstName());
@@ -35,10 +34,9 @@ public class StudentProfileController {
     }
 
     @PutMapping("/profile")
-    public ResponseEntity<UserDTO> updateCurrentStudentProfile(@RequestBody UserDTO updateDto, Authentication authentication) {
-        String email = authentication.getName();
-        User user = userRepository.findByEmail(email)
-            .orElseThrow(() -> new RuntimeException("User not found for email: " + email));
+    public ResponseEntity<UserDTO> updateCurrentStudentProfile(@RequestBody UserDTO updateDto, AuthenticatedUser currentUser) {
+        User user = userRepository.findById(currentUser.getUserId())
+            .orElseThrow(() -> new RuntimeException("User not found: " + currentUser.getUsername()));
         if (updateDto.getFirstName() != null) user.setFirstName(updateDto.getFirstName());
         if (updateDto.getLastName() != null) user.setLastName(updateDto.getLastName());
         if (updateDto.getPhone() != null) user.setPhone(updateDto.getPhone());
@@ -0,0 +1,10 @@
+package com.shop.backend.dto.depression;
+
+import lombok.Data;
+
+@Data
+public class AnswerDetailDTO {
+    private Long questionId;
+    private String questionText;
+    private Integer answerValue;
+}
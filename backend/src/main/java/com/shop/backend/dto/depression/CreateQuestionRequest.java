@@ -11,6 +11,7 @@ public class CreateQuestionRequest {
     private Integer order;
     private Boolean isActive;
     private String testKey;
+    private Boolean reverseScored;
     private List<QuestionOptionRequest> options;
     
     @Data
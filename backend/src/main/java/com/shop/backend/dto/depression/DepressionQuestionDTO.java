@@ -12,5 +12,6 @@ public class DepressionQuestionDTO {
     private String category;
     private Integer order;
     private Boolean isActive;
+    private Boolean reverseScored;
     private List<DepressionQuestionOption> options;
 } 
\ No newline at end of file
@@ -12,4 +12,6 @@ public class DepressionTestResponse {
     private String recommendation;
     private LocalDateTime testedAt;
     private Boolean shouldContactExpert;
+    // Phần trăm bài test cùng loại có điểm thấp hơn (null khi chưa có dữ liệu so sánh)
+    private Double percentileRank;
 } 
\ No newline at end of file
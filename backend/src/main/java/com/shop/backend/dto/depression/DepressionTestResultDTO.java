@@ -1,9 +1,12 @@
 package com.shop.backend.dto.depression;
 
+import com.shop.backend.model.DepressionTestResult;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Data
+@NoArgsConstructor
 public class DepressionTestResultDTO {
     private Long id;
     private String studentName;
@@ -15,4 +18,20 @@ public class DepressionTestResultDTO {
     private String recommendation;
     private String testType;
     private Long userId;
+
+    // Dùng cho constructor projection trong JPQL: chỉ chọn các cột cần trả về, không nạp entity
+    public DepressionTestResultDTO(Long id, Integer totalScore, DepressionTestResult.SeverityLevel severityLevel,
+                                   LocalDateTime testedAt, String diagnosis, String recommendation, String testType,
+                                   Long userId, String firstName, String lastName, String email) {
+        this.id = id;
+        this.totalScore = totalScore;
+        this.severityLevel = severityLevel != null ? severityLevel.name() : null;
+        this.testedAt = testedAt;
+        this.diagnosis = diagnosis;
+        this.recommendation = recommendation;
+        this.testType = testType;
+        this.userId = userId;
+        this.studentName = firstName + " " + lastName;
+        this.email = email;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.shop.backend.dto.depression;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class TestDraftDTO {
+    private String draftId;
+    private String testType;
+    private List<DepressionTestRequest.QuestionAnswer> answers;
+    private Integer answeredCount;
+    private Integer questionCount;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,15 @@
+package com.shop.backend.dto.expert;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+public class ContentSearchHitDTO {
+    private String type;
+    private Long id;
+    private Long expertId;
+    private Long studentId;
+    private LocalDateTime createdAt;
+    private String snippet;
+    private double score;
+}
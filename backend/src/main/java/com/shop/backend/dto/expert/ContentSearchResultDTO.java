@@ -0,0 +1,12 @@
+package com.shop.backend.dto.expert;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class ContentSearchResultDTO {
+    private List<ContentSearchHitDTO> hits;
+    private long totalHits;
+    private int page;
+    private int size;
+}
@@ -0,0 +1,21 @@
+package com.shop.backend.dto.expert;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+public class TriageCaseDTO {
+    private Long id;
+    private Long testResultId;
+    private Long userId;
+    private String studentName;
+    private String email;
+    private String testType;
+    private Integer totalScore;
+    private String status;
+    private Long claimedBy;
+    private LocalDateTime enqueuedAt;
+    private LocalDateTime claimedAt;
+    private LocalDateTime acknowledgedAt;
+    private LocalDateTime resolvedAt;
+}
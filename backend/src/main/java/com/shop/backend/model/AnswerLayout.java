@@ -0,0 +1,34 @@
+package com.shop.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+// Danh sách id câu hỏi (tăng dần) mà packed_answers của một bài test tham chiếu tới.
+// Mỗi bộ câu hỏi khác nhau chỉ có một layout, xác định bằng fingerprint.
+@Data
+@Entity
+@Table(name = "answer_layouts")
+public class AnswerLayout {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 64)
+    private String fingerprint;
+
+    @Column(name = "question_count", nullable = false)
+    private Integer questionCount;
+
+    // Các id câu hỏi cách nhau bởi dấu phẩy
+    @Column(name = "question_ids", nullable = false, columnDefinition = "TEXT")
+    private String questionIds;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
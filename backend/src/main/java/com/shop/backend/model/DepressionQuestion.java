@@ -36,6 +36,10 @@ public class DepressionQuestion {
     @Column(name = "`order`")
     private Integer order;
 
+    // Câu hỏi tính điểm ngược (ví dụ câu hỏi mang nghĩa tích cực trong SAS/EPDS)
+    @Column(name = "reverse_scored")
+    private Boolean reverseScored = false;
+
     @OneToMany(mappedBy = "question", fetch = FetchType.LAZY)
     private java.util.List<DepressionQuestionOption> options;
 
@@ -7,7 +7,19 @@ import java.util.List;
 
 @Data
 @Entity
-@Table(name = "depression_test_results")
+@Table(name = "depression_test_results", uniqueConstraints = {
+        // Chặn bài nộp trùng khi client gửi lại cùng Idempotency-Key (NULL không bị ràng buộc)
+        @UniqueConstraint(name = "uk_test_results_user_idempotency_key", columnNames = {"user_id", "idempotency_key"}),
+        // Mỗi bài nộp write-behind chỉ được ghi một lần, kể cả khi journal được replay lại sau crash
+        @UniqueConstraint(name = "uk_test_results_submission_seq", columnNames = {"submission_seq"})
+}, indexes = {
+        // Phân trang lịch sử theo keyset (tested_at, id) của từng user
+        @Index(name = "idx_test_results_user_tested_at_id", columnList = "user_id, tested_at, id"),
+        // Danh sách kết quả cho admin/chuyên gia: lọc theo mức độ hoặc loại test rồi phân trang theo (tested_at, id)
+        @Index(name = "idx_test_results_tested_at_id", columnList = "tested_at, id"),
+        @Index(name = "idx_test_results_severity_tested_at_id", columnList = "severity_level, tested_at, id"),
+        @Index(name = "idx_test_results_type_tested_at_id", columnList = "test_type, tested_at, id")
+})
 public class DepressionTestResult {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -36,6 +48,21 @@ public class DepressionTestResult {
     @Column(name = "test_type", length = 50)
     private String testType;
 
+    @Column(name = "idempotency_key", length = 64)
+    private String idempotencyKey;
+
+    // Sequence của bài nộp trong journal write-behind; NULL với bài ghi trực tiếp
+    @Column(name = "submission_seq")
+    private Long submissionSeq;
+
+    // Lưu trữ dạng nén: mỗi byte là một đáp án theo thứ tự của answer layout (0xFF = chưa trả lời).
+    // Khi có giá trị thì bài test không còn dòng nào trong depression_test_answers.
+    @Column(name = "answer_layout_id")
+    private Long answerLayoutId;
+
+    @Column(name = "packed_answers", length = 1024)
+    private byte[] packedAnswers;
+
     @OneToMany(mappedBy = "testResult", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<DepressionTestAnswer> answers;
 
@@ -48,6 +75,9 @@ public class DepressionTestResult {
 
     @PrePersist
     protected void onCreate() {
-        testedAt = LocalDateTime.now();
+        // Bài nộp qua write-behind đã có thời điểm nhận, không ghi đè
+        if (testedAt == null) {
+            testedAt = LocalDateTime.now();
+        }
     }
 } 
\ No newline at end of file
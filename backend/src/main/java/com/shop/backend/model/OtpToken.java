@@ -0,0 +1,31 @@
+package com.shop.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+// OTP quên mật khẩu dùng chung giữa các node (otp.store=database). Một dòng mỗi email; chỉ lưu hash của mã.
+// expires_at là hạn của mã; failures_until là hết cửa sổ đếm lần sai, hoặc hết thời gian khóa khi đã chạm giới hạn.
+// Dòng chỉ bị dọn khi cả hai mốc đã qua, nên yêu cầu mã mới không xóa được bộ đếm.
+@Data
+@Entity
+@Table(name = "otp_tokens", indexes = {
+        @Index(name = "idx_otp_tokens_expires_at", columnList = "expires_at")
+})
+public class OtpToken {
+    @Id
+    @Column(length = 255)
+    private String email;
+
+    @Column(name = "otp_hash", nullable = false, length = 64)
+    private String otpHash;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "failed_attempts", nullable = false)
+    private int failedAttempts;
+
+    @Column(name = "failures_until")
+    private LocalDateTime failuresUntil;
+}
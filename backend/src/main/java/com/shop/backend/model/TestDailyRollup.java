@@ -0,0 +1,34 @@
+package com.shop.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDate;
+
+// Số bài test theo (ngày, loại test, mức độ), cập nhật cùng transaction với bài nộp.
+// test_type rỗng thay cho NULL để khóa unique dùng được cho INSERT ... ON DUPLICATE KEY UPDATE.
+@Data
+@Entity
+@Table(name = "test_daily_rollup", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_test_daily_rollup_key", columnNames = {"stat_date", "test_type", "severity_level"})
+})
+public class TestDailyRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Column(name = "test_type", nullable = false, length = 50)
+    private String testType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "severity_level", nullable = false)
+    private DepressionTestResult.SeverityLevel severityLevel;
+
+    @Column(name = "test_count", nullable = false)
+    private Long testCount;
+
+    @Column(name = "total_score_sum", nullable = false)
+    private Long totalScoreSum;
+}
@@ -0,0 +1,59 @@
+package com.shop.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+// Một bài test SEVERE đang chờ chuyên gia xử lý: OPEN -> CLAIMED -> ACKNOWLEDGED -> RESOLVED.
+// Chỉ giữ id bài test (không khóa ngoại) để xóa kết quả test không bị chặn bởi hàng đợi.
+@Data
+@Entity
+@Table(name = "triage_cases", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_triage_cases_test_result", columnNames = {"test_result_id"})
+}, indexes = {
+        @Index(name = "idx_triage_cases_status", columnList = "status"),
+        @Index(name = "idx_triage_cases_claimed_by_status", columnList = "claimed_by, status")
+})
+public class TriageCase {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "test_result_id", nullable = false)
+    private Long testResultId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "test_type", length = 50)
+    private String testType;
+
+    @Column(name = "total_score", nullable = false)
+    private Integer totalScore;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status = Status.OPEN;
+
+    @Column(name = "claimed_by")
+    private Long claimedBy;
+
+    @Column(name = "enqueued_at", nullable = false)
+    private LocalDateTime enqueuedAt;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "acknowledged_at")
+    private LocalDateTime acknowledgedAt;
+
+    @Column(name = "resolved_at")
+    private LocalDateTime resolvedAt;
+
+    public enum Status {
+        OPEN,
+        CLAIMED,
+        ACKNOWLEDGED,
+        RESOLVED
+    }
+}
@@ -1,12 +1,16 @@
 package com.shop.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_updated_at", columnList = "updated_at")
+})
+@EntityListeners(UserEntityListener.class)
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -43,6 +47,11 @@ public class User {
     @Column(nullable = false)
     private String plan = "FREE";
 
+    // Tăng lên để thu hồi mọi JWT đã cấp (đổi mật khẩu, đổi quyền, khóa tài khoản)
+    @JsonIgnore
+    @Column(name = "token_version", nullable = false)
+    private int tokenVersion = 0;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -53,6 +62,10 @@ public class User {
         ACTIVE, INACTIVE, BANNED
     }
 
+    public void revokeTokens() {
+        tokenVersion++;
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,5 @@
+package com.shop.backend.model;
+
+// Một User vừa được tạo, cập nhật hoặc xóa (removed = true)
+public record UserChangedEvent(User user, boolean removed) {
+}
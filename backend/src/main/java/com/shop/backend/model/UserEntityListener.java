@@ -0,0 +1,28 @@
+package com.shop.backend.model;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+// Mọi thay đổi User đi qua JPA (save/delete ở bất kỳ đâu) đều phát UserChangedEvent;
+// bên nhận dùng @TransactionalEventListener để chỉ xử lý sau khi transaction đã commit
+@Component
+public class UserEntityListener {
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    @PostUpdate
+    public void afterSave(User user) {
+        eventPublisher.publishEvent(new UserChangedEvent(user, false));
+    }
+
+    @PostRemove
+    public void afterRemove(User user) {
+        eventPublisher.publishEvent(new UserChangedEvent(user, true));
+    }
+}
@@ -0,0 +1,7 @@
+package com.shop.backend.model;
+
+import java.util.Set;
+
+// Các user mà lần đọc lại định kỳ bảng users thấy vừa thay đổi hoặc đã bị xóa, kể cả khi thay đổi xảy ra ở node khác
+public record UsersRefreshedEvent(Set<Long> userIds) {
+}
@@ -0,0 +1,17 @@
+package com.shop.backend.repository;
+
+import com.shop.backend.model.AnswerLayout;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.Optional;
+
+@Repository
+public interface AnswerLayoutRepository extends JpaRepository<AnswerLayout, Long> {
+    Optional<AnswerLayout> findByFingerprint(String fingerprint);
+
+    // packed_answers không có khóa ngoại tới câu hỏi, nên xóa câu hỏi phải kiểm tra qua layout
+    @Query(value = "SELECT COUNT(*) FROM answer_layouts WHERE FIND_IN_SET(:questionId, question_ids) > 0", nativeQuery = true)
+    long countReferencing(@Param("questionId") Long questionId);
+}
@@ -2,10 +2,18 @@ package com.shop.backend.repository;
 
 import com.shop.backend.model.DepressionTestAnswer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface DepressionTestAnswerRepository extends JpaRepository<DepressionTestAnswer, Long> {
+public interface DepressionTestAnswerRepository extends JpaRepository<DepressionTestAnswer, Long>, DepressionTestAnswerRepositoryCustom {
     List<DepressionTestAnswer> findByTestResultId(Long testResultId);
+
+    // Đáp án của nhiều bài test trong một câu lệnh: [testResultId, questionId, answerValue], không nạp entity
+    @Query("SELECT a.testResult.id, a.question.id, a.answerValue FROM DepressionTestAnswer a " +
+           "WHERE a.testResult.id IN :testResultIds ORDER BY a.testResult.id, a.id")
+    List<Object[]> findAnswerValuesByTestResultIds(@Param("testResultIds") Collection<Long> testResultIds);
 } 
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.shop.backend.repository;
+
+import com.shop.backend.model.DepressionTestAnswer;
+import java.util.List;
+
+public interface DepressionTestAnswerRepositoryCustom {
+    // Ghi toàn bộ đáp án bằng một JDBC batch (multi-row insert với rewriteBatchedStatements)
+    void saveAllBatched(List<DepressionTestAnswer> answers);
+}
@@ -0,0 +1,31 @@
+package com.shop.backend.repository;
+
+import com.shop.backend.model.DepressionTestAnswer;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+public class DepressionTestAnswerRepositoryImpl implements DepressionTestAnswerRepositoryCustom {
+    private static final String INSERT_SQL =
+            "INSERT INTO depression_test_answers (test_result_id, question_id, answer_value) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DepressionTestAnswerRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Không đi qua EntityManager: id của đáp án không cần đọc lại nên IDENTITY không chặn batch,
+    // và JdbcTemplate dùng chung connection của transaction JPA đang mở
+    @Override
+    public void saveAllBatched(List<DepressionTestAnswer> answers) {
+        if (answers.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, answers, answers.size(), (ps, answer) -> {
+            ps.setLong(1, answer.getTestResult().getId());
+            ps.setLong(2, answer.getQuestion().getId());
+            ps.setInt(3, answer.getAnswerValue());
+        });
+    }
+}
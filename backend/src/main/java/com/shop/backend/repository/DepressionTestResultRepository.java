@@ -1,25 +1,45 @@
 package com.shop.backend.repository;
 
+import com.shop.backend.dto.depression.DepressionTestResultDTO;
 import com.shop.backend.model.DepressionTestResult;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface DepressionTestResultRepository extends JpaRepository<DepressionTestResult, Long> {
+public interface DepressionTestResultRepository extends JpaRepository<DepressionTestResult, Long>, DepressionTestResultRepositoryCustom {
     List<DepressionTestResult> findByUserIdOrderByTestedAtDesc(Long userId);
-    List<DepressionTestResult> findBySeverityLevel(DepressionTestResult.SeverityLevel severityLevel);
-    List<DepressionTestResult> findAllByOrderByTestedAtDesc();
     long countBySeverityLevel(DepressionTestResult.SeverityLevel severityLevel);
     List<DepressionTestResult> findTop10ByOrderByTestedAtDesc();
+    Optional<DepressionTestResult> findByUserIdAndIdempotencyKey(Long userId, String idempotencyKey);
 
-    // Đếm tổng số test theo ngày
-    @Query("SELECT DATE(t.testedAt) as date, COUNT(t) as count FROM DepressionTestResult t WHERE t.testedAt >= :from AND t.testedAt <= :to GROUP BY DATE(t.testedAt) ORDER BY date")
-    List<Object[]> countTestsByDateRange(@Param("from") java.time.LocalDateTime from, @Param("to") java.time.LocalDateTime to);
+    // Replay journal: các bài nộp đã commit trước khi crash (chưa kịp ghi dấu "C")
+    @Query("SELECT t.submissionSeq FROM DepressionTestResult t WHERE t.submissionSeq IN :sequences")
+    List<Long> findExistingSubmissionSeqs(@Param("sequences") Collection<Long> sequences);
 
-    // Đếm số test severe theo ngày
-    @Query("SELECT DATE(t.testedAt) as date, COUNT(t) as count FROM DepressionTestResult t WHERE t.testedAt >= :from AND t.testedAt <= :to AND t.severityLevel = 'SEVERE' GROUP BY DATE(t.testedAt) ORDER BY date")
-    List<Object[]> countSevereTestsByDateRange(@Param("from") java.time.LocalDateTime from, @Param("to") java.time.LocalDateTime to);
+    // Lịch sử test của một user, mới nhất trước; dùng index (user_id, tested_at, id)
+    @Query("SELECT new com.shop.backend.dto.depression.DepressionTestResultDTO(t.id, t.totalScore, t.severityLevel, t.testedAt, t.diagnosis, t.recommendation, t.testType, u.id, u.firstName, u.lastName, u.email) " +
+           "FROM DepressionTestResult t JOIN t.user u WHERE u.id = :userId ORDER BY t.testedAt DESC, t.id DESC")
+    List<DepressionTestResultDTO> findHistory(@Param("userId") Long userId, Limit limit);
+
+    // Trang tiếp theo theo keyset: các bản ghi đứng sau (testedAt, id) của trang trước
+    @Query("SELECT new com.shop.backend.dto.depression.DepressionTestResultDTO(t.id, t.totalScore, t.severityLevel, t.testedAt, t.diagnosis, t.recommendation, t.testType, u.id, u.firstName, u.lastName, u.email) " +
+           "FROM DepressionTestResult t JOIN t.user u WHERE u.id = :userId " +
+           "AND (t.testedAt < :testedAt OR (t.testedAt = :testedAt AND t.id < :id)) ORDER BY t.testedAt DESC, t.id DESC")
+    List<DepressionTestResultDTO> findHistoryBefore(@Param("userId") Long userId, @Param("testedAt") LocalDateTime testedAt,
+                                                    @Param("id") Long id, Limit limit);
+
+    // Đáp án dạng nén của một bài test: [answerLayoutId, packedAnswers]
+    @Query("SELECT t.answerLayoutId, t.packedAnswers FROM DepressionTestResult t WHERE t.id = :id")
+    List<Object[]> findPackedAnswersById(@Param("id") Long id);
+
+    // Như trên cho nhiều bài test: [id, answerLayoutId, packedAnswers]
+    @Query("SELECT t.id, t.answerLayoutId, t.packedAnswers FROM DepressionTestResult t WHERE t.id IN :ids")
+    List<Object[]> findPackedAnswersByIdIn(@Param("ids") Collection<Long> ids);
 } 
\ No newline at end of file
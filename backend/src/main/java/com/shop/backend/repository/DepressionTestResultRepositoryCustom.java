@@ -0,0 +1,16 @@
+package com.shop.backend.repository;
+
+import com.shop.backend.dto.depression.DepressionTestResultDTO;
+import com.shop.backend.service.HistoryCursor;
+import com.shop.backend.service.TestResultFilter;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface DepressionTestResultRepositoryCustom {
+    // Đọc tuần tự (forward-only) theo tested_at, id; phải được tiêu thụ và đóng trong transaction đang mở
+    Stream<DepressionTestResultDTO> streamForExport(TestResultFilter filter, int fetchSize);
+
+    // Tìm kiếm mới nhất trước theo (tested_at, id); after = null là trang đầu, limit <= 0 là không giới hạn
+    List<DepressionTestResultDTO> search(TestResultFilter filter, HistoryCursor after, int limit);
+}
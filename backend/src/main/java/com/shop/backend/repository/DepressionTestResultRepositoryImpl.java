@@ -0,0 +1,93 @@
+package com.shop.backend.repository;
+
+import com.shop.backend.dto.depression.DepressionTestResultDTO;
+import com.shop.backend.service.HistoryCursor;
+import com.shop.backend.service.TestResultFilter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class DepressionTestResultRepositoryImpl implements DepressionTestResultRepositoryCustom {
+    // Constructor projection: chỉ các cột của DTO, User được join một lần trong cùng câu lệnh
+    private static final String SELECT_DTO =
+            "SELECT new com.shop.backend.dto.depression.DepressionTestResultDTO(t.id, t.totalScore, t.severityLevel, t.testedAt, "
+                    + "t.diagnosis, t.recommendation, t.testType, u.id, u.firstName, u.lastName, u.email) "
+                    + "FROM DepressionTestResult t JOIN t.user u";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Stream<DepressionTestResultDTO> streamForExport(TestResultFilter filter, int fetchSize) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        StringBuilder jpql = new StringBuilder(SELECT_DTO);
+        appendWhere(jpql, filterConditions(params, filter));
+        jpql.append(" ORDER BY t.testedAt, t.id");
+        TypedQuery<DepressionTestResultDTO> query = entityManager.createQuery(jpql.toString(), DepressionTestResultDTO.class);
+        params.forEach(query::setParameter);
+        query.setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize);
+        query.setHint(HibernateHints.HINT_READ_ONLY, true);
+        return query.getResultStream();
+    }
+
+    @Override
+    public List<DepressionTestResultDTO> search(TestResultFilter filter, HistoryCursor after, int limit) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        StringBuilder jpql = new StringBuilder(SELECT_DTO);
+        List<String> conditions = filterConditions(params, filter);
+        if (after != null) {
+            // Keyset: chỉ lấy các bản ghi đứng sau (testedAt, id) của trang trước, không dùng OFFSET
+            conditions.add("(t.testedAt < :afterTestedAt OR (t.testedAt = :afterTestedAt AND t.id < :afterId))");
+            params.put("afterTestedAt", after.testedAt());
+            params.put("afterId", after.id());
+        }
+        appendWhere(jpql, conditions);
+        jpql.append(" ORDER BY t.testedAt DESC, t.id DESC");
+        TypedQuery<DepressionTestResultDTO> query = entityManager.createQuery(jpql.toString(), DepressionTestResultDTO.class);
+        params.forEach(query::setParameter);
+        if (limit > 0) {
+            query.setMaxResults(limit);
+        }
+        return query.getResultList();
+    }
+
+    // Mỗi điều kiện đều là tiền tố của một index (..., tested_at, id) nên sắp xếp không cần filesort
+    static List<String> filterConditions(Map<String, Object> params, TestResultFilter filter) {
+        List<String> conditions = new ArrayList<>();
+        if (filter.from() != null) {
+            conditions.add("t.testedAt >= :from");
+            params.put("from", filter.from().atStartOfDay());
+        }
+        if (filter.to() != null) {
+            // Bao gồm cả ngày "to"
+            conditions.add("t.testedAt < :to");
+            params.put("to", filter.to().plusDays(1).atStartOfDay());
+        }
+        if (filter.severityLevel() != null) {
+            conditions.add("t.severityLevel = :severityLevel");
+            params.put("severityLevel", filter.severityLevel());
+        }
+        if (filter.testType() != null && !filter.testType().isEmpty()) {
+            conditions.add("t.testType = :testType");
+            params.put("testType", filter.testType());
+        }
+        if (filter.userId() != null) {
+            conditions.add("u.id = :userId");
+            params.put("userId", filter.userId());
+        }
+        return conditions;
+    }
+
+    private static void appendWhere(StringBuilder jpql, List<String> conditions) {
+        if (!conditions.isEmpty()) {
+            jpql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+    }
+}
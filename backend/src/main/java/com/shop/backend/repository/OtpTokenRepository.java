@@ -0,0 +1,51 @@
+package com.shop.backend.repository;
+
+import com.shop.backend.model.OtpToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+
+@Repository
+public interface OtpTokenRepository extends JpaRepository<OtpToken, String> {
+
+    // Lưu mã mới bằng một câu upsert để hai request đồng thời cho cùng email không đụng khóa chính.
+    // Email đang bị khóa giữ nguyên mã cũ; bộ đếm lần sai còn trong cửa sổ thì được giữ lại.
+    // MySQL gán lần lượt từ trái sang phải, nên failures_until phải được gán sau cùng.
+    @Modifying(clearAutomatically = true)
+    @Query(value = "INSERT INTO otp_tokens (email, otp_hash, expires_at, failed_attempts, failures_until) "
+            + "VALUES (:email, :otpHash, :expiresAt, 0, NULL) ON DUPLICATE KEY UPDATE "
+            + "otp_hash = IF(failed_attempts >= :maxAttempts AND failures_until > :now, otp_hash, :otpHash), "
+            + "expires_at = IF(failed_attempts >= :maxAttempts AND failures_until > :now, expires_at, :expiresAt), "
+            + "failed_attempts = IF(failures_until > :now, failed_attempts, 0), "
+            + "failures_until = IF(failures_until > :now, failures_until, NULL)", nativeQuery = true)
+    int upsert(@Param("email") String email, @Param("otpHash") String otpHash, @Param("expiresAt") LocalDateTime expiresAt,
+               @Param("maxAttempts") int maxAttempts, @Param("now") LocalDateTime now);
+
+    // Dùng mã: xóa có điều kiện nên khi nhiều node cùng nhận một mã thì chỉ một node thắng
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM OtpToken t WHERE t.email = :email AND t.otpHash = :otpHash AND t.expiresAt > :now "
+            + "AND (t.failedAttempts < :maxAttempts OR t.failuresUntil <= :now)")
+    int consume(@Param("email") String email, @Param("otpHash") String otpHash,
+                @Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts);
+
+    // Lần sai đầu tiên (hoặc sau khi cửa sổ cũ đã hết) mở cửa sổ mới tới windowEnd
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE OtpToken t SET "
+            + "t.failedAttempts = CASE WHEN t.failuresUntil IS NULL OR t.failuresUntil <= :now THEN 1 ELSE t.failedAttempts + 1 END, "
+            + "t.failuresUntil = CASE WHEN t.failuresUntil IS NULL OR t.failuresUntil <= :now THEN :windowEnd ELSE t.failuresUntil END "
+            + "WHERE t.email = :email AND t.expiresAt > :now AND (t.failedAttempts < :maxAttempts OR t.failuresUntil <= :now)")
+    int recordFailure(@Param("email") String email, @Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts,
+                      @Param("windowEnd") LocalDateTime windowEnd);
+
+    // Lần sai chạm giới hạn: khóa đến lockedUntil
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE OtpToken t SET t.failuresUntil = :lockedUntil WHERE t.email = :email AND t.failedAttempts >= :maxAttempts AND t.failuresUntil <= :lockedUntil")
+    int lock(@Param("email") String email, @Param("maxAttempts") int maxAttempts, @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    @Modifying
+    @Query("DELETE FROM OtpToken t WHERE t.expiresAt <= :now AND (t.failuresUntil IS NULL OR t.failuresUntil <= :now)")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,26 @@
+package com.shop.backend.repository;
+
+import com.shop.backend.model.TestDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface TestDailyRollupRepository extends JpaRepository<TestDailyRollup, Long>, TestDailyRollupRepositoryCustom {
+    // [ngày, tổng số test, số test SEVERE] cho mỗi ngày có dữ liệu
+    @Query("SELECT r.statDate, SUM(r.testCount), SUM(CASE WHEN r.severityLevel = com.shop.backend.model.DepressionTestResult.SeverityLevel.SEVERE THEN r.testCount ELSE 0 END) " +
+           "FROM TestDailyRollup r WHERE r.statDate BETWEEN :from AND :to GROUP BY r.statDate")
+    List<Object[]> sumByDate(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Tổng toàn thời gian: [tổng, MINIMAL, MILD, MODERATE, SEVERE]
+    @Query("SELECT SUM(r.testCount), " +
+           "SUM(CASE WHEN r.severityLevel = com.shop.backend.model.DepressionTestResult.SeverityLevel.MINIMAL THEN r.testCount ELSE 0 END), " +
+           "SUM(CASE WHEN r.severityLevel = com.shop.backend.model.DepressionTestResult.SeverityLevel.MILD THEN r.testCount ELSE 0 END), " +
+           "SUM(CASE WHEN r.severityLevel = com.shop.backend.model.DepressionTestResult.SeverityLevel.MODERATE THEN r.testCount ELSE 0 END), " +
+           "SUM(CASE WHEN r.severityLevel = com.shop.backend.model.DepressionTestResult.SeverityLevel.SEVERE THEN r.testCount ELSE 0 END) " +
+           "FROM TestDailyRollup r")
+    List<Object[]> sumBySeverity();
+}
@@ -0,0 +1,17 @@
+package com.shop.backend.repository;
+
+import com.shop.backend.model.DepressionTestResult;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface TestDailyRollupRepositoryCustom {
+    // Cộng dồn (hoặc trừ khi count âm) vào các dòng rollup bằng một JDBC batch upsert
+    void applyIncrements(List<Increment> increments);
+
+    // Tính lại toàn bộ bảng từ depression_test_results
+    void rebuildFromResults();
+
+    record Increment(LocalDate statDate, String testType, DepressionTestResult.SeverityLevel severityLevel,
+                     long count, long scoreSum) {
+    }
+}
@@ -0,0 +1,44 @@
+package com.shop.backend.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.util.List;
+
+public class TestDailyRollupRepositoryImpl implements TestDailyRollupRepositoryCustom {
+    private static final String UPSERT_SQL =
+            "INSERT INTO test_daily_rollup (stat_date, test_type, severity_level, test_count, total_score_sum) VALUES (?, ?, ?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE test_count = test_count + VALUES(test_count), total_score_sum = total_score_sum + VALUES(total_score_sum)";
+
+    private static final String REBUILD_SQL =
+            "INSERT INTO test_daily_rollup (stat_date, test_type, severity_level, test_count, total_score_sum) "
+                    + "SELECT DATE(tested_at), COALESCE(test_type, ''), severity_level, COUNT(*), SUM(total_score) "
+                    + "FROM depression_test_results WHERE tested_at IS NOT NULL "
+                    + "GROUP BY DATE(tested_at), COALESCE(test_type, ''), severity_level";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TestDailyRollupRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void applyIncrements(List<Increment> increments) {
+        if (increments.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPSERT_SQL, increments, increments.size(), (ps, increment) -> {
+            ps.setDate(1, Date.valueOf(increment.statDate()));
+            ps.setString(2, increment.testType());
+            ps.setString(3, increment.severityLevel().name());
+            ps.setLong(4, increment.count());
+            ps.setLong(5, increment.scoreSum());
+        });
+    }
+
+    @Override
+    public void rebuildFromResults() {
+        jdbcTemplate.update("DELETE FROM test_daily_rollup");
+        jdbcTemplate.update(REBUILD_SQL);
+    }
+}
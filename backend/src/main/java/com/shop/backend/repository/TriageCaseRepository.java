@@ -0,0 +1,41 @@
+package com.shop.backend.repository;
+
+import com.shop.backend.model.TriageCase;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TriageCaseRepository extends JpaRepository<TriageCase, Long> {
+    List<TriageCase> findByStatus(TriageCase.Status status);
+    List<TriageCase> findByClaimedByAndStatusInOrderByClaimedAtDesc(Long claimedBy, Collection<TriageCase.Status> statuses);
+    List<TriageCase> findByTestResultIdIn(Collection<Long> testResultIds);
+
+    // Các lệnh chuyển trạng thái đều có điều kiện trên trạng thái hiện tại: chỉ một chuyên gia thắng,
+    // kể cả khi nhiều instance cùng xử lý một hàng đợi. Trả về số dòng đã cập nhật (0 hoặc 1).
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE TriageCase c SET c.status = com.shop.backend.model.TriageCase.Status.CLAIMED, c.claimedBy = :expertId, c.claimedAt = :now " +
+           "WHERE c.id = :id AND c.status = com.shop.backend.model.TriageCase.Status.OPEN")
+    int claim(@Param("id") Long id, @Param("expertId") Long expertId, @Param("now") LocalDateTime now);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE TriageCase c SET c.status = com.shop.backend.model.TriageCase.Status.ACKNOWLEDGED, c.acknowledgedAt = :now " +
+           "WHERE c.id = :id AND c.claimedBy = :expertId AND c.status = com.shop.backend.model.TriageCase.Status.CLAIMED")
+    int acknowledge(@Param("id") Long id, @Param("expertId") Long expertId, @Param("now") LocalDateTime now);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE TriageCase c SET c.status = com.shop.backend.model.TriageCase.Status.RESOLVED, c.resolvedAt = :now " +
+           "WHERE c.id = :id AND c.claimedBy = :expertId AND c.status IN (com.shop.backend.model.TriageCase.Status.CLAIMED, com.shop.backend.model.TriageCase.Status.ACKNOWLEDGED)")
+    int resolve(@Param("id") Long id, @Param("expertId") Long expertId, @Param("now") LocalDateTime now);
+
+    // Trả ca về hàng đợi (chuyên gia không thể tiếp nhận)
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE TriageCase c SET c.status = com.shop.backend.model.TriageCase.Status.OPEN, c.claimedBy = NULL, c.claimedAt = NULL, c.acknowledgedAt = NULL " +
+           "WHERE c.id = :id AND c.claimedBy = :expertId AND c.status IN (com.shop.backend.model.TriageCase.Status.CLAIMED, com.shop.backend.model.TriageCase.Status.ACKNOWLEDGED)")
+    int release(@Param("id") Long id, @Param("expertId") Long expertId);
+}
@@ -3,6 +3,7 @@ package com.shop.backend.repository;
 import com.shop.backend.model.User;
 import com.shop.backend.model.Role;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -13,4 +14,11 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
     List<User> findByRole(Role role);
     long countByRole(Role role);
+
+    // Một lần quét: [tổng, STUDENT, EXPERT, ADMIN]
+    @Query("SELECT COUNT(u), " +
+           "SUM(CASE WHEN u.role = com.shop.backend.model.Role.STUDENT THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN u.role = com.shop.backend.model.Role.EXPERT THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN u.role = com.shop.backend.model.Role.ADMIN THEN 1 ELSE 0 END) FROM User u")
+    List<Object[]> countGroupedByRole();
 } 
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.shop.backend.security;
+
+import com.shop.backend.model.Role;
+import lombok.Getter;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.List;
+
+// Principal của mọi request đã xác thực: mang sẵn id, quyền, gói và cờ ẩn danh để controller không phải đọc lại bảng users.
+// Kế thừa User của Spring Security nên authentication.getName() và @AuthenticationPrincipal User vẫn dùng được như cũ.
+@Getter
+public class AuthenticatedUser extends User {
+    private static final String ANONYMOUS_PREFIX = "anonymous_";
+
+    private final Long userId;
+    private final Role role;
+    private final String plan;
+    private final boolean anonymous;
+
+    public AuthenticatedUser(String username, String password, Long userId, Role role, String plan, boolean anonymous) {
+        this(username, password, userId, role, plan, anonymous, false);
+    }
+
+    // locked = tài khoản bị BANNED: DaoAuthenticationProvider từ chối đăng nhập, filter JWT không set authentication
+    public AuthenticatedUser(String username, String password, Long userId, Role role, String plan, boolean anonymous, boolean locked) {
+        super(username, password != null ? password : "", true, true, true, !locked,
+                List.of(new SimpleGrantedAuthority("ROLE_" + role.name())));
+        this.userId = userId;
+        this.role = role;
+        this.plan = plan;
+        this.anonymous = anonymous;
+    }
+
+    // Subject của JWT: email, hoặc "anonymous_<id>" cho tài khoản ẩn danh
+    public static String usernameOf(com.shop.backend.model.User user) {
+        return user.isAnonymous() ? ANONYMOUS_PREFIX + user.getId() : user.getEmail();
+    }
+
+    // Id của tài khoản ẩn danh trong username; null nếu username là email
+    public static Long anonymousIdOf(String username) {
+        if (username == null || !username.startsWith(ANONYMOUS_PREFIX)) {
+            return null;
+        }
+        return Long.parseLong(username.substring(ANONYMOUS_PREFIX.length()));
+    }
+}
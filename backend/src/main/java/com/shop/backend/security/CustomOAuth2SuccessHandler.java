@@ -3,8 +3,6 @@ package com.shop.backend.security;
 import com.shop.backend.model.User;
 import com.shop.backend.model.Role;
 import com.shop.backend.repository.UserRepository;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -16,28 +14,22 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
-import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
-import java.security.Key;
 
 @Component
 public class CustomOAuth2SuccessHandler implements org.springframework.security.web.authentication.AuthenticationSuccessHandler {
 
     private final UserRepository userRepository;
-
-    @Value("${jwt.secret}")
-    private String jwtSecret;
-
-    @Value("${jwt.expiration}")
-    private long jwtExpiration;
+    private final JwtService jwtService;
 
     @Value("${app.frontend-url}")
     private String frontendUrl;
 
-    public CustomOAuth2SuccessHandler(UserRepository userRepository) {
+    public CustomOAuth2SuccessHandler(UserRepository userRepository, JwtService jwtService) {
         this.userRepository = userRepository;
+        this.jwtService = jwtService;
     }
 
     @Override
@@ -75,17 +67,12 @@ public class CustomOAuth2SuccessHandler implements org.springframework.security.
             System.out.println("[OAuth2] Created new STUDENT user: " + email + ", id: " + user.getId());
         }
 
-        // Sinh JWT không deprecated
-        Key key = new SecretKeySpec(jwtSecret.getBytes(StandardCharsets.UTF_8), SignatureAlgorithm.HS256.getJcaName());
-        String token = Jwts.builder()
-                .setSubject(user.getEmail())
-                .claim("role", user.getRole().name())
-                .claim("firstName", user.getFirstName())
-                .claim("lastName", user.getLastName())
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(key, SignatureAlgorithm.HS256)
-                .compact();
+        // Sinh JWT qua JwtService để dùng chung key và các claim của chế độ stateless
+        Map<String, Object> claims = jwtService.identityClaims(user);
+        claims.put("firstName", user.getFirstName());
+        claims.put("lastName", user.getLastName());
+        String token = jwtService.generateToken(claims,
+                new org.springframework.security.core.userdetails.User(user.getEmail(), "", List.of()));
 
         // Redirect về frontend kèm token
         String redirectUrl = UriComponentsBuilder.fromUriString(frontendUrl)
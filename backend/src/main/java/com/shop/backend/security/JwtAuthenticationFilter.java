@@ -1,10 +1,14 @@
 package com.shop.backend.security;
 
+import com.shop.backend.model.Role;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -14,59 +18,108 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.lang.NonNull;
 
 import java.io.IOException;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
+    // Các route public không bao giờ đọc người dùng hiện tại: bỏ qua hoàn toàn việc xử lý token
+    private static final Set<String> PUBLIC_PATHS = Set.of(
+            "/", "/error", "/api/depression-test/questions", "/api/feedback",
+            "/api/auth/login", "/api/auth/register", "/api/auth/anonymous/create");
+    private static final String PUBLIC_PREFIX = "/api/auth/forgot-password";
+
     @Autowired
     private JwtService jwtService;
     @Autowired
     private UserDetailsService userDetailsService;
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    // Tắt đi thì mọi request quay về cách cũ: nạp UserDetails từ database
+    @Value("${jwt.stateless:true}")
+    private boolean stateless;
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        String path = request.getServletPath();
+        return PUBLIC_PATHS.contains(path) || path.startsWith(PUBLIC_PREFIX);
+    }
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain)
             throws ServletException, IOException {
-        logger.info("[JwtAuthFilter] Incoming request: {} {}", request.getMethod(), request.getRequestURI());
         final String authHeader = request.getHeader("Authorization");
-        logger.info("[JwtAuthFilter] Authorization header: {}", authHeader);
-        final String jwt;
-        final String username;
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            logger.warn("[JwtAuthFilter] No Authorization header or not Bearer");
             filterChain.doFilter(request, response);
             return;
         }
-        jwt = authHeader.substring(7);
+        // Chữ ký và hạn dùng được kiểm tra trong đúng một lần parse
+        final Claims claims;
         try {
-            username = jwtService.extractUsername(jwt);
-            logger.info("[JwtAuthFilter] Extracted username: {}", username);
-        } catch (Exception e) {
-            logger.error("[JwtAuthFilter] Failed to extract username from token: {}", e.getMessage());
+            claims = jwtService.parseClaims(authHeader.substring(7));
+        } catch (JwtException | IllegalArgumentException e) {
+            logger.debug("[JwtAuthFilter] Invalid token for {} {}: {}", request.getMethod(), request.getRequestURI(), e.getMessage());
             filterChain.doFilter(request, response);
             return;
         }
-        // Luôn set lại authentication context nếu có JWT
+        String username = claims.getSubject();
         if (username != null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-            logger.info("[JwtAuthFilter] User {} authorities: {}", username, userDetails.getAuthorities());
             try {
-            if (jwtService.isTokenValid(jwt, userDetails)) {
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities()
-                );
-                SecurityContextHolder.getContext().setAuthentication(authToken);
-                    logger.info("[JwtAuthFilter] Token valid, authentication set for {}", username);
-                } else {
-                    logger.warn("[JwtAuthFilter] Token invalid for user {}", username);
+                UsernamePasswordAuthenticationToken authToken = stateless && hasIdentityClaims(claims)
+                        ? fromClaims(username, claims)
+                        : fromUserDetails(username);
+                // Luôn set lại authentication context nếu có JWT hợp lệ
+                if (authToken != null) {
+                    SecurityContextHolder.getContext().setAuthentication(authToken);
                 }
             } catch (Exception e) {
-                logger.error("[JwtAuthFilter] Exception when validating token: {}", e.getMessage());
+                logger.warn("[JwtAuthFilter] Could not authenticate {}: {}", username, e.getMessage());
             }
-        } else {
-            logger.warn("[JwtAuthFilter] Username null");
         }
         filterChain.doFilter(request, response);
     }
-} 
\ No newline at end of file
+
+    private static boolean hasIdentityClaims(Claims claims) {
+        return claims.get(JwtService.CLAIM_ROLE) != null
+                && claims.get(JwtService.CLAIM_USER_ID) != null
+                && claims.get(JwtService.CLAIM_TOKEN_VERSION) != null;
+    }
+
+    // Chế độ stateless: quyền lấy từ claim, thu hồi kiểm tra qua bảng phiên bản trong bộ nhớ
+    private UsernamePasswordAuthenticationToken fromClaims(String username, Claims claims) {
+        long userId = claims.get(JwtService.CLAIM_USER_ID, Number.class).longValue();
+        int tokenVersion = claims.get(JwtService.CLAIM_TOKEN_VERSION, Number.class).intValue();
+        if (!tokenVersionRegistry.isCurrent(userId, tokenVersion)) {
+            logger.debug("[JwtAuthFilter] Revoked token for user {}", userId);
+            return null;
+        }
+        if (!tokenVersionRegistry.isKnownUser(userId)) {
+            // User đã bị xóa hoặc vừa được tạo ở node khác: hỏi database, và chỉ chấp nhận nếu vẫn đúng user đó
+            UsernamePasswordAuthenticationToken authToken = fromUserDetails(username);
+            if (authToken == null || !(authToken.getPrincipal() instanceof AuthenticatedUser loaded)
+                    || !loaded.getUserId().equals(userId)) {
+                logger.debug("[JwtAuthFilter] Unknown user {} for token", userId);
+                return null;
+            }
+            return authToken;
+        }
+        AuthenticatedUser principal = new AuthenticatedUser(username, "", userId,
+                Role.valueOf(claims.get(JwtService.CLAIM_ROLE, String.class)),
+                claims.get(JwtService.CLAIM_PLAN, String.class),
+                Boolean.TRUE.equals(claims.get(JwtService.CLAIM_ANONYMOUS, Boolean.class)));
+        return new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+    }
+
+    // Token cấp trước khi có claim userId/tv: giữ cách cũ cho tới khi token hết hạn
+    private UsernamePasswordAuthenticationToken fromUserDetails(String username) {
+        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        if (!userDetails.isAccountNonLocked()) {
+            logger.debug("[JwtAuthFilter] Locked account {}", username);
+            return null;
+        }
+        return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+    }
+}
@@ -1,9 +1,13 @@
 package com.shop.backend.security;
 
+import com.shop.backend.model.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
@@ -16,21 +20,56 @@ import java.util.function.Function;
 
 @Service
 public class JwtService {
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_USER_ID = "userId";
+    public static final String CLAIM_TOKEN_VERSION = "tv";
+    public static final String CLAIM_PLAN = "plan";
+    public static final String CLAIM_ANONYMOUS = "anonymous";
+
     @Value("${jwt.secret}")
     private String secretKey;
 
     @Value("${jwt.expiration}")
     private long jwtExpiration;
 
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    // Key và parser được dựng một lần; cả hai đều thread-safe
+    private Key signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secretKey.getBytes());
+        parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+    }
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = parseClaims(token);
         return claimsResolver.apply(claims);
     }
 
+    // Kiểm tra chữ ký và hạn dùng trong một lần parse; token sai hoặc hết hạn ném JwtException
+    public Claims parseClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    // Các claim cho chế độ stateless: filter dựng Authentication từ đây mà không cần đọc bảng users
+    public Map<String, Object> identityClaims(User user) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_ROLE, user.getRole().name().toUpperCase());
+        claims.put(CLAIM_USER_ID, user.getId());
+        claims.put(CLAIM_TOKEN_VERSION, Math.max(user.getTokenVersion(), tokenVersionRegistry.currentVersion(user.getId())));
+        claims.put(CLAIM_PLAN, user.getPlan());
+        claims.put(CLAIM_ANONYMOUS, user.isAnonymous());
+        return claims;
+    }
+
     public String generateToken(UserDetails userDetails) {
         return generateToken(new HashMap<>(), userDetails);
     }
@@ -41,7 +80,7 @@ public class JwtService {
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
@@ -57,17 +96,4 @@ public class JwtService {
     private Date extractExpiration(String token) {
         return extractClaim(token, Claims::getExpiration);
     }
-
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private Key getSigningKey() {
-        byte[] keyBytes = secretKey.getBytes();
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,186 @@
+package com.shop.backend.security;
+
+import com.shop.backend.model.User;
+import com.shop.backend.model.UserChangedEvent;
+import com.shop.backend.model.UsersRefreshedEvent;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Bảng phiên bản token trong bộ nhớ cho JWT stateless: token chỉ hợp lệ khi claim "tv" >= phiên bản hiện tại của user.
+// Chỉ giữ các user từng bị thu hồi token (token_version > 0), cùng một bitset id các user còn tồn tại.
+// Được nạp trước khi web server nhận request. Thay đổi trên node này đi qua UserChangedEvent;
+// thay đổi từ node khác được đọc lại định kỳ theo updated_at, còn user bị xóa được phát hiện khi
+// COUNT/SUM/MAX của id trong bảng lệch với bitset (xóa một user và tạo một user khác vẫn làm lệch SUM và MAX).
+// Các id thay đổi mỗi lần làm mới được phát qua UsersRefreshedEvent.
+@Component
+@DependsOn("entityManagerFactory")
+public class TokenVersionRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(TokenVersionRegistry.class);
+    // Đọc lùi thêm một khoảng so với lần làm mới trước: updated_at do đồng hồ của node ghi đặt
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(2);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final Map<Long, Integer> versions = new ConcurrentHashMap<>();
+    // Id user tự tăng nên bitset gọn hơn nhiều so với một Set<Long>
+    private BitSet knownUsers = new BitSet();
+    private final ReadWriteLock knownUsersLock = new ReentrantReadWriteLock();
+    // Chỉ thread của @Scheduled ghi sau khi đã nạp
+    private LocalDateTime lastRefresh;
+
+    @PostConstruct
+    public void load() {
+        lastRefresh = LocalDateTime.now();
+        jdbcTemplate.query("SELECT id, token_version FROM users WHERE token_version > 0",
+                rs -> {
+                    versions.merge(rs.getLong(1), rs.getInt(2), Math::max);
+                });
+        reloadKnownUsers();
+        logger.info("[TokenVersion] Loaded {} revoked user(s)", versions.size());
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation-refresh-ms:15000}", initialDelayString = "${jwt.revocation-refresh-ms:15000}")
+    public void refresh() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        Set<Long> changed = new HashSet<>();
+        jdbcTemplate.query("SELECT id, token_version FROM users WHERE updated_at >= ?",
+                rs -> {
+                    long userId = rs.getLong(1);
+                    changed.add(userId);
+                    int tokenVersion = rs.getInt(2);
+                    if (tokenVersion > 0) {
+                        versions.merge(userId, tokenVersion, Math::max);
+                    }
+                    markKnown(userId, true);
+                },
+                Timestamp.valueOf(lastRefresh.minus(CLOCK_SKEW)));
+        lastRefresh = startedAt;
+        IdFingerprint stored = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*), COALESCE(SUM(id), 0), COALESCE(MAX(id), 0) FROM users",
+                (rs, rowNum) -> new IdFingerprint(rs.getLong(1), rs.getLong(2), rs.getLong(3)));
+        if (stored != null && !stored.equals(knownUserFingerprint())) {
+            // Có user bị xóa (hoặc tạo mà không có updated_at) ở node khác: nạp lại toàn bộ id
+            BitSet removed = reloadKnownUsers();
+            removed.stream().forEach(userId -> {
+                versions.remove((long) userId);
+                changed.add((long) userId);
+            });
+        }
+        if (!changed.isEmpty()) {
+            // Các cache khác theo user (UserDetails) dựa vào đây để thấy thay đổi từ node khác
+            eventPublisher.publishEvent(new UsersRefreshedEvent(changed));
+        }
+    }
+
+    public int currentVersion(long userId) {
+        return versions.getOrDefault(userId, 0);
+    }
+
+    public boolean isCurrent(long userId, int tokenVersion) {
+        return tokenVersion >= currentVersion(userId);
+    }
+
+    // false: user đã bị xóa, hoặc vừa được tạo ở node khác và chưa được làm mới tới
+    public boolean isKnownUser(long userId) {
+        if (userId < 0 || userId > Integer.MAX_VALUE) {
+            return false;
+        }
+        knownUsersLock.readLock().lock();
+        try {
+            return knownUsers.get((int) userId);
+        } finally {
+            knownUsersLock.readLock().unlock();
+        }
+    }
+
+    // Chỉ áp dụng sau khi commit: phiên bản mới chưa commit thì token cũ vẫn đúng với database
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        User user = event.user();
+        if (user.getId() == null) {
+            return;
+        }
+        if (event.removed()) {
+            versions.remove(user.getId());
+            markKnown(user.getId(), false);
+            return;
+        }
+        markKnown(user.getId(), true);
+        if (user.getTokenVersion() > 0) {
+            versions.merge(user.getId(), user.getTokenVersion(), Math::max);
+        }
+    }
+
+    // Trả về các id có trong bitset cũ nhưng không còn trong bảng
+    private BitSet reloadKnownUsers() {
+        BitSet ids = new BitSet();
+        jdbcTemplate.query("SELECT id FROM users",
+                rs -> {
+                    long userId = rs.getLong(1);
+                    if (userId >= 0 && userId <= Integer.MAX_VALUE) {
+                        ids.set((int) userId);
+                    }
+                });
+        knownUsersLock.writeLock().lock();
+        try {
+            BitSet removed = (BitSet) knownUsers.clone();
+            removed.andNot(ids);
+            knownUsers = ids;
+            return removed;
+        } finally {
+            knownUsersLock.writeLock().unlock();
+        }
+    }
+
+    private void markKnown(long userId, boolean known) {
+        if (userId < 0 || userId > Integer.MAX_VALUE) {
+            return;
+        }
+        knownUsersLock.writeLock().lock();
+        try {
+            knownUsers.set((int) userId, known);
+        } finally {
+            knownUsersLock.writeLock().unlock();
+        }
+    }
+
+    private IdFingerprint knownUserFingerprint() {
+        knownUsersLock.readLock().lock();
+        try {
+            long sum = 0;
+            for (int id = knownUsers.nextSetBit(0); id >= 0; id = knownUsers.nextSetBit(id + 1)) {
+                sum += id;
+            }
+            return new IdFingerprint(knownUsers.cardinality(), sum, Math.max(knownUsers.length() - 1, 0));
+        } finally {
+            knownUsersLock.readLock().unlock();
+        }
+    }
+
+    private record IdFingerprint(long count, long sum, long max) {
+    }
+}
@@ -4,11 +4,12 @@ import com.shop.backend.model.*;
 import com.shop.backend.repository.*;
 import com.shop.backend.dto.depression.DepressionTestResultDTO;
 import com.shop.backend.dto.depression.CreateQuestionRequest;
+import com.shop.backend.dto.depression.DepressionQuestionDTO;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -18,6 +19,15 @@ public class AdminService {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private TestRollupService testRollupService;
+    
+    @Autowired
+    private SystemStatisticsService systemStatisticsService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     @Autowired
     private DepressionQuestionRepository questionRepository;
     
@@ -33,6 +43,15 @@ public class AdminService {
     @Autowired
     private DepressionQuestionOptionRepository optionRepository;
     
+    @Autowired
+    private QuestionCatalog questionCatalog;
+
+    @Autowired
+    private AnswerLayoutRepository answerLayoutRepository;
+    
+    @Autowired
+    private TriageService triageService;
+    
     // Quản lý người dùng
     public List<User> getAllUsers() {
         return userRepository.findAll();
@@ -47,6 +66,7 @@ public class AdminService {
         return userRepository.findById(userId)
             .map(user -> {
                 user.setStatus(User.Status.valueOf(status.toUpperCase()));
+                user.revokeTokens();
                 return userRepository.save(user);
             })
             .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng"));
@@ -57,6 +77,7 @@ public class AdminService {
         return userRepository.findById(userId)
             .map(user -> {
                 user.setRole(role);
+                user.revokeTokens();
                 return userRepository.save(user);
             })
             .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng"));
@@ -67,8 +88,8 @@ public class AdminService {
     }
     
     // Quản lý câu hỏi
-    public List<DepressionQuestion> getAllQuestions() {
-        return questionRepository.findAll();
+    public List<DepressionQuestionDTO> getAllQuestions() {
+        return questionCatalog.getAllQuestions();
     }
     
     public List<DepressionQuestionOption> getQuestionOptions(Long questionId) {
@@ -81,6 +102,7 @@ public class AdminService {
     
     @Transactional
     public DepressionQuestion createQuestion(DepressionQuestion question) {
+        questionCatalog.reloadAfterCommit();
         return questionRepository.save(question);
     }
     
@@ -94,6 +116,7 @@ public class AdminService {
         question.setOrder(request.getOrder() != null ? request.getOrder() : 1);
         question.setIsActive(request.getIsActive() != null ? request.getIsActive() : true);
         question.setTestKey(request.getTestKey() != null ? request.getTestKey() : "DASS-21");
+        question.setReverseScored(request.getReverseScored() != null ? request.getReverseScored() : false);
         
         question = questionRepository.save(question);
         
@@ -109,6 +132,7 @@ public class AdminService {
             }
         }
         
+        questionCatalog.reloadAfterCommit();
         return question;
     }
     
@@ -119,6 +143,7 @@ public class AdminService {
                 question.setQuestionText(questionDetails.getQuestionText());
                 question.setWeight(questionDetails.getWeight());
                 question.setIsActive(questionDetails.getIsActive());
+                questionCatalog.reloadAfterCommit();
                 return questionRepository.save(question);
             })
             .orElseThrow(() -> new RuntimeException("Không tìm thấy câu hỏi"));
@@ -134,6 +159,9 @@ public class AdminService {
         question.setIsActive(request.getIsActive());
         question.setCategory(request.getCategory());
         question.setOrder(request.getOrder());
+        if (request.getReverseScored() != null) {
+            question.setReverseScored(request.getReverseScored());
+        }
         questionRepository.save(question);
 
         // Xóa đáp án cũ
@@ -150,12 +178,18 @@ public class AdminService {
                 optionRepository.save(option);
             }
         }
+        questionCatalog.reloadAfterCommit();
         return question;
     }
     
     @Transactional
     public void deleteQuestion(Long questionId) {
+        // Bài test lưu dạng nén vẫn đọc nội dung câu hỏi qua layout; câu hỏi đã dùng thì chỉ được ẩn đi
+        if (answerLayoutRepository.countReferencing(questionId) > 0) {
+            throw new QuestionInUseException("Câu hỏi đã có bài test sử dụng, hãy tắt câu hỏi thay vì xóa");
+        }
         questionRepository.deleteById(questionId);
+        questionCatalog.reloadAfterCommit();
     }
     
     @Transactional
@@ -164,6 +198,7 @@ public class AdminService {
             .ifPresent(question -> {
                 question.setIsActive(!question.getIsActive());
                 questionRepository.save(question);
+                questionCatalog.reloadAfterCommit();
             });
     }
     
@@ -210,51 +245,7 @@ public class AdminService {
     
     // Thống kê hệ thống
     public Map<String, Object> getSystemStatistics() {
-        Map<String, Object> stats = new HashMap<>();
-        
-        // Thống kê người dùng
-        long totalUsers = userRepository.count();
-        long studentCount = userRepository.countByRole(Role.STUDENT);
-        long expertCount = userRepository.countByRole(Role.EXPERT);
-        long adminCount = userRepository.countByRole(Role.ADMIN);
-        
-        stats.put("totalUsers", totalUsers);
-        stats.put("studentCount", studentCount);
-        stats.put("expertCount", expertCount);
-        stats.put("adminCount", adminCount);
-        
-        // Thống kê bài test
-        long totalTests = testResultRepository.count();
-        long minimalTests = testResultRepository.countBySeverityLevel(DepressionTestResult.SeverityLevel.MINIMAL);
-        long mildTests = testResultRepository.countBySeverityLevel(DepressionTestResult.SeverityLevel.MILD);
-        long moderateTests = testResultRepository.countBySeverityLevel(DepressionTestResult.SeverityLevel.MODERATE);
-        long severeTests = testResultRepository.countBySeverityLevel(DepressionTestResult.SeverityLevel.SEVERE);
-        
-        stats.put("totalTests", totalTests);
-        stats.put("minimalTests", minimalTests);
-        stats.put("mildTests", mildTests);
-        stats.put("moderateTests", moderateTests);
-        stats.put("severeTests", severeTests);
-        
-        // Tính tỷ lệ
-        if (totalTests > 0) {
-            stats.put("minimalPercentage", (double) minimalTests / totalTests * 100);
-            stats.put("mildPercentage", (double) mildTests / totalTests * 100);
-            stats.put("moderatePercentage", (double) moderateTests / totalTests * 100);
-            stats.put("severePercentage", (double) severeTests / totalTests * 100);
-        }
-        
-        // Thống kê câu hỏi
-        long totalQuestions = questionRepository.count();
-        long activeQuestions = questionRepository.countByIsActiveTrue();
-        
-        stats.put("totalQuestions", totalQuestions);
-        stats.put("activeQuestions", activeQuestions);
-        
-        // Thống kê tổng số lời khuyên đã gửi
-        long totalAdvices = adviceMessageRepository.count();
-        stats.put("totalAdvices", totalAdvices);
-        return stats;
+        return systemStatisticsService.getStatistics();
     }
     
     // Lấy danh sách kết quả test gần đây
@@ -262,63 +253,18 @@ public class AdminService {
         return testResultRepository.findTop10ByOrderByTestedAtDesc();
     }
     
-    public List<DepressionTestResultDTO> getAllTestResultDTOs() {
-        List<DepressionTestResult> results = testResultRepository.findAllByOrderByTestedAtDesc();
-        return results.stream().map(result -> {
-            DepressionTestResultDTO dto = new DepressionTestResultDTO();
-            dto.setId(result.getId());
-            dto.setTotalScore(result.getTotalScore());
-            dto.setSeverityLevel(result.getSeverityLevel() != null ? result.getSeverityLevel().name() : null);
-            dto.setTestedAt(result.getTestedAt());
-            dto.setDiagnosis(result.getDiagnosis());
-            if (result.getUser() != null) {
-                dto.setStudentName(result.getUser().getFirstName() + " " + result.getUser().getLastName());
-                dto.setEmail(result.getUser().getEmail());
-                dto.setUserId(result.getUser().getId()); // Thêm trường userId
-            }
-            return dto;
-        }).toList();
-    }
-    
     @Transactional
     public void deleteTestResult(Long id) {
-        testResultRepository.deleteById(id);
+        testResultRepository.findById(id).ifPresent(result -> {
+            testResultRepository.delete(result);
+            testRollupService.recordRemoved(List.of(result));
+            eventPublisher.publishEvent(new TestResultDeletedEvent(result.getTestType(), result.getTotalScore()));
+            triageService.removeForResults(List.of(result.getId()));
+        });
     }
     
     // Thống kê số lượt test theo ngày (và số severe test) trong khoảng thời gian
     public Map<String, Object> getTestCountByDateRange(int days) {
-        java.time.LocalDate today = java.time.LocalDate.now();
-        java.time.LocalDate from = today.minusDays(days - 1);
-        java.time.LocalDateTime fromDateTime = from.atStartOfDay();
-        java.time.LocalDateTime toDateTime = today.atTime(23, 59, 59);
-        // Lấy tổng số test theo ngày
-        List<Object[]> totalList = testResultRepository.countTestsByDateRange(fromDateTime, toDateTime);
-        // Lấy số severe test theo ngày
-        List<Object[]> severeList = testResultRepository.countSevereTestsByDateRange(fromDateTime, toDateTime);
-        // Map ngày -> count
-        Map<String, Integer> totalMap = new java.util.HashMap<>();
-        for (Object[] row : totalList) {
-            totalMap.put(row[0].toString(), ((Number)row[1]).intValue());
-        }
-        Map<String, Integer> severeMap = new java.util.HashMap<>();
-        for (Object[] row : severeList) {
-            severeMap.put(row[0].toString(), ((Number)row[1]).intValue());
-        }
-        // Build kết quả đủ ngày (nếu ngày nào không có thì count = 0)
-        java.util.List<String> dates = new java.util.ArrayList<>();
-        java.util.List<Integer> totalTests = new java.util.ArrayList<>();
-        java.util.List<Integer> severeTests = new java.util.ArrayList<>();
-        for (int i = 0; i < days; i++) {
-            java.time.LocalDate d = from.plusDays(i);
-            String key = d.toString();
-            dates.add(key);
-            totalTests.add(totalMap.getOrDefault(key, 0));
-            severeTests.add(severeMap.getOrDefault(key, 0));
-        }
-        Map<String, Object> result = new java.util.HashMap<>();
-        result.put("dates", dates);
-        result.put("totalTests", totalTests);
-        result.put("severeTests", severeTests);
-        return result;
+        return testRollupService.getTestCountByDateRange(days);
     }
 } 
\ No newline at end of file
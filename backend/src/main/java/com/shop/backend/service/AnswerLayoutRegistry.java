@@ -0,0 +1,127 @@
+package com.shop.backend.service;
+
+import com.shop.backend.model.AnswerLayout;
+import com.shop.backend.repository.AnswerLayoutRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Cấp id layout cho packed_answers. Layout là phiên bản bền vững của thứ tự catalog:
+// version của QuestionCatalog đổi sau mỗi lần restart, còn layout chỉ đổi khi bộ câu hỏi thực sự đổi.
+@Component
+public class AnswerLayoutRegistry {
+
+    @Autowired
+    private AnswerLayoutRepository answerLayoutRepository;
+
+    private final TransactionTemplate writeTransaction;
+    private final Map<String, Long> idsByFingerprint = new ConcurrentHashMap<>();
+    private final Map<Long, long[]> questionIdsById = new ConcurrentHashMap<>();
+    // Bank cũ bị bỏ khi catalog công bố version mới nên chỉ giữ tham chiếu yếu
+    private final Map<QuestionBank, Long> idsByBank = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public AnswerLayoutRegistry(PlatformTransactionManager transactionManager) {
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public long layoutIdFor(QuestionBank bank) {
+        Long cached = idsByBank.get(bank);
+        if (cached != null) {
+            return cached;
+        }
+        long[] questionIds = new long[bank.size()];
+        for (int i = 0; i < questionIds.length; i++) {
+            questionIds[i] = bank.questionIdAt(i);
+        }
+        long id = layoutIdFor(questionIds);
+        idsByBank.put(bank, id);
+        return id;
+    }
+
+    // questionIds phải tăng dần (thứ tự catalog)
+    public long layoutIdFor(long[] questionIds) {
+        String fingerprint = fingerprint(questionIds);
+        Long cached = idsByFingerprint.get(fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+        AnswerLayout layout = answerLayoutRepository.findByFingerprint(fingerprint)
+                .orElseGet(() -> create(fingerprint, questionIds));
+        idsByFingerprint.put(fingerprint, layout.getId());
+        questionIdsById.put(layout.getId(), questionIds.clone());
+        return layout.getId();
+    }
+
+    public long[] questionIds(long layoutId) {
+        long[] cached = questionIdsById.get(layoutId);
+        if (cached != null) {
+            return cached;
+        }
+        AnswerLayout layout = answerLayoutRepository.findById(layoutId)
+                .orElseThrow(() -> new RuntimeException("Answer layout not found: " + layoutId));
+        long[] questionIds = parse(layout.getQuestionIds());
+        questionIdsById.put(layoutId, questionIds);
+        idsByFingerprint.put(layout.getFingerprint(), layoutId);
+        return questionIds;
+    }
+
+    private AnswerLayout create(String fingerprint, long[] questionIds) {
+        StringJoiner joined = new StringJoiner(",");
+        for (long questionId : questionIds) {
+            joined.add(Long.toString(questionId));
+        }
+        try {
+            return writeTransaction.execute(status -> {
+                AnswerLayout layout = new AnswerLayout();
+                layout.setFingerprint(fingerprint);
+                layout.setQuestionCount(questionIds.length);
+                layout.setQuestionIds(joined.toString());
+                return answerLayoutRepository.save(layout);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Node khác vừa tạo cùng layout
+            return answerLayoutRepository.findByFingerprint(fingerprint).orElseThrow(() -> e);
+        }
+    }
+
+    private static long[] parse(String joined) {
+        if (joined == null || joined.isEmpty()) {
+            return new long[0];
+        }
+        String[] parts = joined.split(",");
+        long[] questionIds = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            questionIds[i] = Long.parseLong(parts[i]);
+        }
+        return questionIds;
+    }
+
+    static String fingerprint(long[] questionIds) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            for (long questionId : questionIds) {
+                buffer.clear();
+                buffer.putLong(questionId);
+                digest.update(buffer.array());
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
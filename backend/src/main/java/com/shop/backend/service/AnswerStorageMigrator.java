@@ -0,0 +1,170 @@
+package com.shop.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Chuyển đáp án cũ từ depression_test_answers sang packed_answers trên dòng kết quả.
+// Danh sách bài test được chia theo khoảng id (keyset) nên các batch chạy song song không chồng lên nhau;
+// mỗi batch là một transaction: cập nhật dòng kết quả rồi xóa các dòng đáp án đã chuyển.
+// Đọc đáp án và lấy id layout làm trước khi mở transaction, để mỗi batch chỉ giữ một connection.
+@Service
+public class AnswerStorageMigrator {
+    private static final Logger logger = LoggerFactory.getLogger(AnswerStorageMigrator.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AnswerLayoutRegistry answerLayoutRegistry;
+
+    private final TransactionTemplate batchTransaction;
+
+    private final AtomicLong migratedResults = new AtomicLong();
+    private final AtomicLong deletedRows = new AtomicLong();
+    private final AtomicLong skippedResults = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private volatile boolean running;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+
+    public AnswerStorageMigrator(PlatformTransactionManager transactionManager) {
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    // Chạy nền; trả về false nếu đang có một lượt chuyển đổi khác
+    public synchronized boolean start(int batchSize, int threads) {
+        if (running) {
+            return false;
+        }
+        running = true;
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        migratedResults.set(0);
+        deletedRows.set(0);
+        skippedResults.set(0);
+        failedBatches.set(0);
+        Thread coordinator = new Thread(() -> run(Math.max(1, batchSize), Math.max(1, threads)), "answer-pack-migration");
+        coordinator.setDaemon(true);
+        coordinator.start();
+        return true;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running);
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        status.put("migratedResults", migratedResults.get());
+        status.put("deletedRows", deletedRows.get());
+        status.put("skippedResults", skippedResults.get());
+        status.put("failedBatches", failedBatches.get());
+        return status;
+    }
+
+    private void run(int batchSize, int threads) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        // Giới hạn số batch chờ để không đọc trước toàn bộ bảng vào bộ nhớ
+        Semaphore inFlight = new Semaphore(threads * 2);
+        try {
+            long lastId = 0;
+            while (true) {
+                List<Long> ids = jdbcTemplate.queryForList(
+                        "SELECT DISTINCT test_result_id FROM depression_test_answers WHERE test_result_id > ? ORDER BY test_result_id LIMIT ?",
+                        Long.class, lastId, batchSize);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                lastId = ids.get(ids.size() - 1);
+                inFlight.acquire();
+                pool.execute(() -> {
+                    try {
+                        migrateBatch(ids);
+                    } catch (RuntimeException e) {
+                        failedBatches.incrementAndGet();
+                        logger.error("[AnswerPack] Batch {}..{} failed: {}", ids.get(0), ids.get(ids.size() - 1), e.getMessage());
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("[AnswerPack] Migration aborted: {}", e.getMessage());
+        } finally {
+            pool.shutdownNow();
+            finishedAt = LocalDateTime.now();
+            running = false;
+            logger.info("[AnswerPack] Finished: {}", getStatus());
+        }
+    }
+
+    private void migrateBatch(List<Long> resultIds) {
+        String in = String.join(",", Collections.nCopies(resultIds.size(), "?"));
+        Map<Long, List<long[]>> answersByResult = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT test_result_id, question_id, answer_value FROM depression_test_answers WHERE test_result_id IN (" + in
+                        + ") ORDER BY test_result_id, question_id",
+                rs -> {
+                    answersByResult.computeIfAbsent(rs.getLong(1), k -> new ArrayList<>())
+                            .add(new long[]{rs.getLong(2), rs.getInt(3)});
+                },
+                resultIds.toArray());
+
+        List<Object[]> updates = new ArrayList<>(answersByResult.size());
+        List<Long> migrated = new ArrayList<>(answersByResult.size());
+        answersByResult.forEach((resultId, answers) -> {
+            long[] questionIds = new long[answers.size()];
+            int[] values = new int[answers.size()];
+            for (int i = 0; i < questionIds.length; i++) {
+                questionIds[i] = answers.get(i)[0];
+                values[i] = (int) answers.get(i)[1];
+                // Câu hỏi lặp lại hoặc giá trị không nén được: giữ nguyên dạng dòng
+                if ((i > 0 && questionIds[i] == questionIds[i - 1]) || values[i] < 0) {
+                    skippedResults.incrementAndGet();
+                    return;
+                }
+            }
+            if (!PackedAnswers.canPack(values)) {
+                skippedResults.incrementAndGet();
+                return;
+            }
+            updates.add(new Object[]{answerLayoutRegistry.layoutIdFor(questionIds), PackedAnswers.pack(values), resultId});
+            migrated.add(resultId);
+        });
+        if (migrated.isEmpty()) {
+            return;
+        }
+        batchTransaction.executeWithoutResult(status -> applyBatch(updates, migrated));
+    }
+
+    private void applyBatch(List<Object[]> updates, List<Long> migrated) {
+        jdbcTemplate.batchUpdate(
+                "UPDATE depression_test_results SET answer_layout_id = ?, packed_answers = ? WHERE id = ? AND packed_answers IS NULL",
+                updates);
+        String migratedIn = String.join(",", Collections.nCopies(migrated.size(), "?"));
+        int deleted = jdbcTemplate.update(
+                "DELETE FROM depression_test_answers WHERE test_result_id IN (" + migratedIn + ")", migrated.toArray());
+        migratedResults.addAndGet(migrated.size());
+        deletedRows.addAndGet(deleted);
+    }
+}
@@ -7,6 +7,7 @@ import com.shop.backend.dto.auth.UpgradeAnonymousRequest;
 import com.shop.backend.model.User;
 import com.shop.backend.model.Role;
 import com.shop.backend.repository.UserRepository;
+import com.shop.backend.security.AuthenticatedUser;
 import com.shop.backend.security.JwtService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -51,6 +52,7 @@ public class AuthService {
         claims.put("role", user.getRole().name().toUpperCase());
         claims.put("firstName", user.getFirstName());
         claims.put("lastName", user.getLastName());
+        claims.putAll(jwtService.identityClaims(user));
         String token = jwtService.generateToken(
             claims,
             new org.springframework.security.core.userdetails.User(
@@ -81,13 +83,13 @@ public class AuthService {
         claims.put("role", user.getRole().name().toUpperCase());
         claims.put("firstName", user.getFirstName());
         claims.put("lastName", user.getLastName());
+        claims.putAll(jwtService.identityClaims(user));
         claims.put("anonymous", true);
-        claims.put("userId", user.getId());
 
         String token = jwtService.generateToken(
             claims,
             new org.springframework.security.core.userdetails.User(
-                "anonymous_" + user.getId(), // Username tạm thời
+                AuthenticatedUser.usernameOf(user), // Username tạm thời
                 "", // Password rỗng
                 java.util.Collections.singletonList(new org.springframework.security.core.authority.SimpleGrantedAuthority("ROLE_" + user.getRole().name()))
             )
@@ -118,6 +120,8 @@ public class AuthService {
         user.setLastName(request.getLastName());
         user.setPhone(request.getPhone());
         user.setAnonymous(false);
+        // Token ẩn danh cũ không còn dùng được sau khi nâng cấp
+        user.revokeTokens();
 
         userRepository.save(user);
 
@@ -129,6 +133,7 @@ public class AuthService {
         claims.put("role", user.getRole().name().toUpperCase());
         claims.put("firstName", user.getFirstName());
         claims.put("lastName", user.getLastName());
+        claims.putAll(jwtService.identityClaims(user));
         claims.put("anonymous", false);
 
         String token = jwtService.generateToken(
@@ -158,6 +163,7 @@ public class AuthService {
         claims.put("role", user.getRole().name().toUpperCase());
         claims.put("firstName", user.getFirstName());
         claims.put("lastName", user.getLastName());
+        claims.putAll(jwtService.identityClaims(user));
         String token = jwtService.generateToken(
             claims,
             new org.springframework.security.core.userdetails.User(
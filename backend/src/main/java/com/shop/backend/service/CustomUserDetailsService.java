@@ -1,32 +1,81 @@
 package com.shop.backend.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shop.backend.model.Role;
 import com.shop.backend.model.User;
+import com.shop.backend.model.UserChangedEvent;
+import com.shop.backend.model.UsersRefreshedEvent;
 import com.shop.backend.repository.UserRepository;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import com.shop.backend.security.AuthenticatedUser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
-import java.util.Collections;
+import java.time.Duration;
 
+// UserDetails được cache theo username (email hoặc anonymous_<id>) để đường JWT cũ và đăng nhập không đọc bảng users mỗi lần.
+// Mọi thay đổi User đi qua JPA phát UserChangedEvent, nên entry của user đó bị xóa ngay sau commit (khóa tài khoản có hiệu lực tức thì).
+// Thay đổi ở node khác đến qua UsersRefreshedEvent của TokenVersionRegistry, chậm nhất một chu kỳ jwt.revocation-refresh-ms.
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
+    private final Cache<String, CachedUser> cache;
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository,
+                                    @Value("${auth.user-details-cache.ttl-minutes:10}") long ttlMinutes,
+                                    @Value("${auth.user-details-cache.maximum-size:10000}") long maximumSize,
+                                    MeterRegistry meterRegistry) {
         this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "user_details");
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        CachedUser cached = cache.get(username, this::load);
+        // Luôn trả về instance mới: ProviderManager xóa password trên principal sau khi đăng nhập
+        return new AuthenticatedUser(
+                username, // Sử dụng username gốc (email hoặc anonymous_id)
+                cached.password(), // Password rỗng cho user ẩn danh
+                cached.userId(), cached.role(), cached.plan(), cached.anonymous(), cached.locked()
+        );
+    }
+
+    // DaoAuthenticationProvider gọi sau khi đăng nhập thành công với hash có cost thấp hơn cấu hình hiện tại.
+    // Chỉ thay hash, mật khẩu không đổi nên không thu hồi token.
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        if (!(user instanceof AuthenticatedUser principal)) {
+            return user;
+        }
+        userRepository.findById(principal.getUserId()).ifPresent(entity -> {
+            entity.setPassword(newPassword);
+            userRepository.save(entity);
+        });
+        return new AuthenticatedUser(principal.getUsername(), newPassword, principal.getUserId(), principal.getRole(),
+                principal.getPlan(), principal.isAnonymous(), !principal.isAccountNonLocked());
+    }
+
+    private CachedUser load(String username) {
         User user;
         
         // Kiểm tra nếu là user ẩn danh (username bắt đầu bằng "anonymous_")
         if (username.startsWith("anonymous_")) {
             try {
-                Long userId = Long.parseLong(username.substring("anonymous_".length()));
+                Long userId = AuthenticatedUser.anonymousIdOf(username);
                 user = userRepository.findById(userId)
                         .orElseThrow(() -> new UsernameNotFoundException("Anonymous user not found with id: " + userId));
                 
@@ -42,10 +91,33 @@ public class CustomUserDetailsService implements UserDetailsService {
                     .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + username));
         }
 
-        return new org.springframework.security.core.userdetails.User(
-                username, // Sử dụng username gốc (email hoặc anonymous_id)
-                user.getPassword() != null ? user.getPassword() : "", // Password rỗng cho user ẩn danh
-                Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + user.getRole().name()))
-        );
+        return new CachedUser(user.getPassword(), user.getId(), user.getRole(), user.getPlan(), user.isAnonymous(),
+                user.getStatus() == User.Status.BANNED);
+    }
+
+    // Đổi trạng thái/quyền, đổi mật khẩu, nâng cấp tài khoản ẩn danh, xóa user đều đi qua đây
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        User user = event.user();
+        if (user.getId() == null) {
+            return;
+        }
+        // invalidate theo key chờ lần nạp đang chạy của key đó kết thúc, nên không còn bản cũ được ghi lại vào cache
+        cache.invalidate("anonymous_" + user.getId());
+        if (user.getEmail() != null) {
+            cache.invalidate(user.getEmail());
+        }
+        // Email cũ (hoặc cùng email khác hoa/thường): quét theo userId, User rất hiếm khi thay đổi so với số lần đọc
+        cache.asMap().values().removeIf(cached -> user.getId().equals(cached.userId()));
+    }
+
+    // Khóa tài khoản, đổi mật khẩu hay xóa user ở node khác: bỏ entry theo userId để lần sau đọc lại từ database
+    @EventListener
+    public void onUsersRefreshed(UsersRefreshedEvent event) {
+        cache.asMap().values().removeIf(cached -> event.userIds().contains(cached.userId()));
+    }
+
+    // Chỉ giữ những gì cần để dựng UserDetails, không giữ entity
+    private record CachedUser(String password, Long userId, Role role, String plan, boolean anonymous, boolean locked) {
     }
-} 
\ No newline at end of file
+}
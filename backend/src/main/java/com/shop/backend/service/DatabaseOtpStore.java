@@ -0,0 +1,62 @@
+package com.shop.backend.service;
+
+import com.shop.backend.repository.OtpTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// OtpStore dùng chung cho nhiều node: bảng otp_tokens, mọi thay đổi là upsert hoặc UPDATE/DELETE có điều kiện.
+// Dòng hết hạn được dọn định kỳ; một dòng cũ chưa kịp dọn vẫn bị bỏ qua nhờ điều kiện expires_at > now.
+@Component
+@ConditionalOnProperty(name = "otp.store", havingValue = "database")
+public class DatabaseOtpStore implements OtpStore {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseOtpStore.class);
+
+    @Autowired
+    private OtpTokenRepository otpTokenRepository;
+
+    @Override
+    @Transactional
+    public boolean save(String email, String otpHash, Duration ttl, int maxAttempts, Duration lockout) {
+        LocalDateTime now = LocalDateTime.now();
+        otpTokenRepository.upsert(email, otpHash, now.plus(ttl), maxAttempts, now);
+        // Upsert giữ nguyên mã cũ khi email đang bị khóa
+        return otpTokenRepository.findById(email)
+                .map(token -> token.getOtpHash().equals(otpHash))
+                .orElse(false);
+    }
+
+    @Override
+    @Transactional
+    public Result verify(String email, String otpHash, int maxAttempts, Duration lockout) {
+        LocalDateTime now = LocalDateTime.now();
+        if (otpTokenRepository.consume(email, otpHash, now, maxAttempts) == 1) {
+            return Result.VALID;
+        }
+        if (otpTokenRepository.recordFailure(email, now, maxAttempts, now.plus(lockout)) == 1) {
+            return otpTokenRepository.lock(email, maxAttempts, now.plus(lockout)) == 1 ? Result.LOCKED : Result.INVALID;
+        }
+        // Không tăng được bộ đếm: không có mã, mã đã hết hạn, hoặc email đang bị khóa
+        return otpTokenRepository.findById(email)
+                .filter(token -> token.getFailuresUntil() != null && token.getFailuresUntil().isAfter(now)
+                        && token.getFailedAttempts() >= maxAttempts)
+                .map(token -> Result.LOCKED)
+                .orElse(Result.MISSING);
+    }
+
+    @Scheduled(fixedDelayString = "${otp.database.sweep-interval-ms:60000}")
+    @Transactional
+    public void deleteExpired() {
+        int deleted = otpTokenRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            logger.debug("[OtpStore] Deleted {} expired OTP row(s)", deleted);
+        }
+    }
+}
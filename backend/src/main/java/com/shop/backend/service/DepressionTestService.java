@@ -1,75 +1,164 @@
 package com.shop.backend.service;
 
+import com.shop.backend.dto.CursorPage;
 import com.shop.backend.dto.depression.DepressionTestRequest;
 import com.shop.backend.dto.depression.DepressionTestResponse;
 import com.shop.backend.dto.depression.DepressionQuestionDTO;
 import com.shop.backend.dto.depression.DepressionTestResultDTO;
+import com.shop.backend.dto.depression.TestDraftDTO;
 import com.shop.backend.model.*;
 import com.shop.backend.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
 @Service
 public class DepressionTestService {
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
     
     @Autowired
     private DepressionQuestionRepository questionRepository;
     
     @Autowired
-    private DepressionQuestionOptionRepository optionRepository;
+    private QuestionCatalog questionCatalog;
     
     @Autowired
     private DepressionTestResultRepository testResultRepository;
     
     @Autowired
-    private DepressionTestAnswerRepository testAnswerRepository;
+    private TestSubmissionWriter testSubmissionWriter;
+    
+    @Autowired
+    private ScoringEngine scoringEngine;
+    
+    @Autowired
+    private SubmissionValidator submissionValidator;
+    
+    @Autowired
+    private SubmissionWriteBehindQueue submissionWriteBehindQueue;
+    
+    @Autowired
+    private SubmissionIdempotencyCache submissionIdempotencyCache;
+    
+    @Autowired
+    private TestDraftStore testDraftStore;
+    
+    @Autowired
+    private SubmissionMetricsRing submissionMetricsRing;
+    
+    @Autowired
+    private ScoreDistribution scoreDistribution;
     
     public List<DepressionQuestion> getActiveQuestions() {
         return questionRepository.findByIsActiveTrue();
     }
     
     public List<DepressionQuestionDTO> getActiveQuestionDTOs() {
-        List<DepressionQuestion> questions = questionRepository.findByIsActiveTrue();
-        return questions.stream().map(q -> {
-            DepressionQuestionDTO dto = new DepressionQuestionDTO();
-            dto.setId(q.getId());
-            dto.setQuestionText(q.getQuestionText());
-            dto.setWeight(q.getWeight());
-            dto.setCategory(q.getCategory());
-            dto.setOrder(q.getOrder());
-            dto.setOptions(optionRepository.findByQuestionIdOrderByOrderAsc(q.getId()));
-            return dto;
-        }).toList();
+        return questionCatalog.getActiveQuestions();
     }
     
     public List<DepressionQuestionDTO> getActiveQuestionDTOsByTestKey(String testKey) {
-        List<DepressionQuestion> questions = questionRepository.findByTestKeyAndIsActiveTrue(testKey);
-        return questions.stream().map(q -> {
-            DepressionQuestionDTO dto = new DepressionQuestionDTO();
-            dto.setId(q.getId());
-            dto.setQuestionText(q.getQuestionText());
-            dto.setWeight(q.getWeight());
-            dto.setCategory(q.getCategory());
-            dto.setOrder(q.getOrder());
-            dto.setOptions(optionRepository.findByQuestionIdOrderByOrderAsc(q.getId()));
-            return dto;
-        }).toList();
-    }
-    
-    @Transactional
+        return questionCatalog.getActiveQuestions(testKey);
+    }
+    
+    // Validate against the in-memory catalog and score; no DB access happens here
+    public ScoredSubmission scoreSubmission(DepressionTestRequest request) {
+        ScoringEngine.InstrumentRules rules = scoringEngine.rulesFor(request.getTestType());
+        int[] values = submissionValidator.toAnswerVector(rules.bank(), request.getTestType(), request.getAnswers());
+        return new ScoredSubmission(request.getTestType(), rules.bank(), values, scoringEngine.score(rules, values));
+    }
+    
     public DepressionTestResponse submitTest(Long userId, DepressionTestRequest request) {
-        // Calculate total score
-        int totalScore = 0;
-        for (DepressionTestRequest.QuestionAnswer answer : request.getAnswers()) {
-            totalScore += answer.getAnswerValue();
+        return submitTest(userId, scoreSubmission(request));
+    }
+    
+    public DepressionTestResponse submitTest(Long userId, ScoredSubmission submission) {
+        return submitTest(userId, submission, null);
+    }
+    
+    // Có Idempotency-Key: lần gửi lại trả về response của lần đầu, không ghi thêm kết quả nào
+    public DepressionTestResponse submitTest(Long userId, ScoredSubmission submission, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return persistSubmission(userId, submission, null);
         }
+        return submissionIdempotencyCache.execute(userId, idempotencyKey, () -> {
+            try {
+                return persistSubmission(userId, submission, idempotencyKey);
+            } catch (DataIntegrityViolationException e) {
+                // Cache đã hết hạn hoặc server vừa khởi động lại: bản ghi cũ vẫn giữ key trong database
+                return testResultRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                        .map(this::toResponse)
+                        .orElseThrow(() -> e);
+            }
+        });
+    }
+    
+    public TestDraftDTO getDraft(Long userId) {
+        TestDraft draft = testDraftStore.get(userId);
+        return draft != null ? toDraftDTO(draft) : null;
+    }
+    
+    // Autosave: chỉ cần gửi các câu vừa thay đổi, kiểm tra trên catalog trong bộ nhớ như khi nộp bài
+    public TestDraftDTO saveDraft(Long userId, DepressionTestRequest request) {
+        QuestionBank bank = scoringEngine.rulesFor(request.getTestType()).bank();
+        int[] update = submissionValidator.toAnswerVector(bank, request.getTestType(), request.getAnswers());
+        if (!PackedAnswers.canPack(update)) {
+            throw new InvalidSubmissionException("Giá trị trả lời vượt quá " + PackedAnswers.MAX_VALUE);
+        }
+        return toDraftDTO(testDraftStore.merge(userId, request.getTestType(), bank, update));
+    }
+    
+    public void discardDraft(Long userId) {
+        testDraftStore.remove(userId);
+    }
+    
+    // Nộp bản nháp qua đúng đường submitTest; draftId làm Idempotency-Key nên bấm nộp hai lần vẫn chỉ ghi một kết quả
+    public DepressionTestResponse submitDraft(Long userId) {
+        TestDraft draft = testDraftStore.get(userId);
+        if (draft == null) {
+            throw new InvalidSubmissionException("Không có bài làm dở để nộp");
+        }
+        DepressionTestResponse response = submitTest(userId, scoreSubmission(draft.toRequest()), "draft-" + draft.draftId());
+        testDraftStore.remove(userId, draft);
+        return response;
+    }
+    
+    private TestDraftDTO toDraftDTO(TestDraft draft) {
+        TestDraftDTO dto = new TestDraftDTO();
+        dto.setDraftId(draft.draftId());
+        dto.setTestType(draft.testType());
+        dto.setAnswers(draft.answers());
+        dto.setAnsweredCount(draft.answeredCount());
+        dto.setQuestionCount(draft.bank().size());
+        dto.setStartedAt(draft.startedAt());
+        dto.setUpdatedAt(draft.updatedAt());
+        dto.setExpiresAt(draft.updatedAt().plus(testDraftStore.getTtl()));
+        return dto;
+    }
+    
+    private DepressionTestResponse persistSubmission(Long userId, ScoredSubmission submission, String idempotencyKey) {
+        ScoringEngine.ScoreResult score = submission.score();
+        int totalScore = score.totalScore();
+        String diagnosis = score.diagnosis();
+        DepressionTestResult.SeverityLevel severityLevel = score.severityLevel();
         
-        // Determine diagnosis and severity
-        String diagnosis = determineDiagnosis(totalScore);
-        DepressionTestResult.SeverityLevel severityLevel = determineSeverityLevel(totalScore);
+        if (submissionWriteBehindQueue.isEnabled()) {
+            // Write-behind: kết quả đã nằm trong journal, id sẽ được cấp khi writer ghi xuống database
+            PendingSubmission pending = submissionWriteBehindQueue.submit(userId, submission, getRecommendation(severityLevel), idempotencyKey);
+            DepressionTestResponse response = new DepressionTestResponse();
+            response.setTotalScore(totalScore);
+            response.setDiagnosis(diagnosis);
+            response.setSeverityLevel(severityLevel.name());
+            response.setRecommendation(pending.recommendation());
+            response.setTestedAt(pending.testedAt());
+            response.setShouldContactExpert(severityLevel == DepressionTestResult.SeverityLevel.SEVERE);
+            response.setPercentileRank(scoreDistribution.percentileRank(submission.testType(), totalScore));
+            recordSubmitted(submission.testType(), severityLevel, totalScore);
+            return response;
+        }
         
         // Save test result
         DepressionTestResult testResult = new DepressionTestResult();
@@ -79,46 +168,34 @@ public class DepressionTestService {
         testResult.setUser(new User()); // Set user by ID
         testResult.getUser().setId(userId);
         testResult.setRecommendation(getRecommendation(severityLevel));
-        testResult.setTestType(request.getTestType());
+        testResult.setTestType(submission.testType());
+        testResult.setIdempotencyKey(idempotencyKey);
         
-        testResult = testResultRepository.save(testResult);
-        
-        // Save individual answers
-        for (DepressionTestRequest.QuestionAnswer answer : request.getAnswers()) {
-            DepressionTestAnswer testAnswer = new DepressionTestAnswer();
-            testAnswer.setTestResult(testResult);
-            testAnswer.setQuestion(new DepressionQuestion());
-            testAnswer.getQuestion().setId(answer.getQuestionId());
-            testAnswer.setAnswerValue(answer.getAnswerValue());
-            testAnswerRepository.save(testAnswer);
-        }
-        
-        // Create response
-        DepressionTestResponse response = new DepressionTestResponse();
-        response.setTestResultId(testResult.getId());
-        response.setTotalScore(totalScore);
-        response.setDiagnosis(diagnosis);
-        response.setSeverityLevel(severityLevel.name());
-        response.setRecommendation(getRecommendation(severityLevel));
-        response.setTestedAt(testResult.getTestedAt());
-        response.setShouldContactExpert(severityLevel == DepressionTestResult.SeverityLevel.SEVERE);
+        // Save result and answers in one short transaction (answers go out as one JDBC batch)
+        testResult = testSubmissionWriter.persist(testResult, submission);
+        // Xếp hạng so với các bài đã có trước, rồi mới tính bài này vào phân bố
+        DepressionTestResponse response = toResponse(testResult);
+        recordSubmitted(submission.testType(), severityLevel, totalScore);
         
         return response;
     }
     
-    private String determineDiagnosis(int totalScore) {
-        if (totalScore <= 4) return "Không có dấu hiệu trầm cảm";
-        else if (totalScore <= 9) return "Trầm cảm nhẹ";
-        else if (totalScore <= 14) return "Trầm cảm vừa";
-        else if (totalScore <= 19) return "Trầm cảm nặng vừa";
-        else return "Trầm cảm rất nặng";
+    private void recordSubmitted(String testType, DepressionTestResult.SeverityLevel severityLevel, int totalScore) {
+        submissionMetricsRing.record(testType, severityLevel);
+        scoreDistribution.record(testType, totalScore);
     }
     
-    private DepressionTestResult.SeverityLevel determineSeverityLevel(int totalScore) {
-        if (totalScore <= 4) return DepressionTestResult.SeverityLevel.MINIMAL;
-        else if (totalScore <= 9) return DepressionTestResult.SeverityLevel.MILD;
-        else if (totalScore <= 14) return DepressionTestResult.SeverityLevel.MODERATE;
-        else return DepressionTestResult.SeverityLevel.SEVERE;
+    private DepressionTestResponse toResponse(DepressionTestResult testResult) {
+        DepressionTestResponse response = new DepressionTestResponse();
+        response.setTestResultId(testResult.getId());
+        response.setTotalScore(testResult.getTotalScore());
+        response.setDiagnosis(testResult.getDiagnosis());
+        response.setSeverityLevel(testResult.getSeverityLevel().name());
+        response.setRecommendation(testResult.getRecommendation());
+        response.setTestedAt(testResult.getTestedAt());
+        response.setShouldContactExpert(testResult.getSeverityLevel() == DepressionTestResult.SeverityLevel.SEVERE);
+        response.setPercentileRank(scoreDistribution.percentileRank(testResult.getTestType(), testResult.getTotalScore()));
+        return response;
     }
     
     private String getRecommendation(DepressionTestResult.SeverityLevel severityLevel) {
@@ -140,20 +217,23 @@ public class DepressionTestService {
         return questionRepository.findDistinctActiveCategories();
     }
 
-    public List<DepressionTestResultDTO> getTestHistoryForUser(Long userId) {
-        List<DepressionTestResult> results = testResultRepository.findByUserIdOrderByTestedAtDesc(userId);
-        return results.stream().map(r -> {
-            DepressionTestResultDTO dto = new DepressionTestResultDTO();
-            dto.setId(r.getId());
-            dto.setTotalScore(r.getTotalScore());
-            dto.setSeverityLevel(r.getSeverityLevel() != null ? r.getSeverityLevel().name() : null);
-            dto.setTestedAt(r.getTestedAt());
-            dto.setDiagnosis(r.getDiagnosis());
-            dto.setRecommendation(r.getRecommendation());
-            dto.setStudentName(r.getUser() != null ? r.getUser().getFirstName() + " " + r.getUser().getLastName() : null);
-            dto.setEmail(r.getUser() != null ? r.getUser().getEmail() : null);
-            dto.setTestType(r.getTestType());
-            return dto;
-        }).toList();
+    // Client cũ không gửi tham số phân trang: tối đa MAX_UNPAGED_RESULTS bài mới nhất, như danh sách của admin;
+    // projection nên không nạp entity hay User lazy
+    public CursorPage<DepressionTestResultDTO> getTestHistoryForUser(Long userId) {
+        int cap = TestResultSearchService.MAX_UNPAGED_RESULTS;
+        return TestResultSearchService.toPage(testResultRepository.findHistory(userId, Limit.of(cap + 1)), cap);
+    }
+    
+    // Phân trang keyset trên (tested_at, id): chi phí mỗi trang không phụ thuộc số bài test của user
+    public CursorPage<DepressionTestResultDTO> getTestHistoryPage(Long userId, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_HISTORY_PAGE_SIZE));
+        List<DepressionTestResultDTO> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = testResultRepository.findHistory(userId, Limit.of(pageSize + 1));
+        } else {
+            HistoryCursor position = HistoryCursor.decode(cursor);
+            rows = testResultRepository.findHistoryBefore(userId, position.testedAt(), position.id(), Limit.of(pageSize + 1));
+        }
+        return TestResultSearchService.toPage(rows, pageSize);
     }
 } 
\ No newline at end of file
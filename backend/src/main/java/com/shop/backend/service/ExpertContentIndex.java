@@ -0,0 +1,505 @@
+package com.shop.backend.service;
+
+import com.shop.backend.dto.expert.ContentSearchHitDTO;
+import com.shop.backend.dto.expert.ContentSearchResultDTO;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Chỉ mục đảo (inverted index) trong bộ nhớ cho ExpertNote.note và AdviceMessage.message, xếp hạng BM25.
+// Tách từ kiểu tiếng Việt: bỏ dấu để "mat ngu" khớp "mất ngủ", và vì một từ thường gồm nhiều âm tiết
+// nên ngoài từng âm tiết còn đánh chỉ mục cặp âm tiết liền nhau ("lo_au"), cụm khớp đúng thứ tự được điểm cao hơn.
+// Bài mới được thêm sau commit; chỉ mục được lưu định kỳ ra index-dir, khi khởi động chỉ cần nạp
+// snapshot rồi đọc bổ sung các dòng có id lớn hơn. Dựng lại toàn bộ chạy song song theo khoảng id.
+// Bài lưu ở node khác được đọc bổ sung định kỳ theo cùng cách (id > id lớn nhất đã có).
+@Component
+public class ExpertContentIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ExpertContentIndex.class);
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNIPPET_LENGTH = 200;
+    private static final int RANGE_SIZE = 2000;
+    private static final int MAX_PAGE_SIZE = 50;
+    private static final int MAX_TOKEN_LENGTH = 64;
+    // Đọc lùi thêm vài id: transaction của node khác có thể commit id nhỏ hơn sau id lớn hơn đã được đọc
+    private static final int CATCH_UP_OVERLAP = 100;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    public enum ContentType {
+        NOTE("expert_notes", "SELECT id, expert_id, student_id, created_at, note FROM expert_notes"),
+        ADVICE("advice_messages", "SELECT id, sender_id, receiver_id, sent_at, message FROM advice_messages");
+
+        private final String table;
+        private final String select;
+
+        ContentType(String table, String select) {
+            this.table = table;
+            this.select = select;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${expert-search.index-dir:./data/expert-search}")
+    private String indexDir;
+
+    @Value("${expert-search.rebuild-threads:4}")
+    private int rebuildThreads;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Segment segment = new Segment();
+    // Bài lưu trong lúc đang nạp/dựng lại chỉ mục mới, thêm lại vào chỉ mục mới trước khi tráo
+    private final List<Doc> pendingDocs = new ArrayList<>();
+    private boolean capturing = true;
+    private volatile boolean ready;
+    private volatile boolean dirty;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void open() {
+        Path snapshot = snapshotPath();
+        Segment loaded = null;
+        if (Files.exists(snapshot)) {
+            try {
+                loaded = readSnapshot(snapshot);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("[ExpertSearch] Ignoring unreadable snapshot {}: {}", snapshot, e.getMessage());
+            }
+        }
+        if (loaded == null) {
+            startRebuild();
+            return;
+        }
+        beginCapture();
+        int before = loaded.docs.size();
+        for (ContentType type : ContentType.values()) {
+            loadAfter(type, loaded.lastIds[type.ordinal()], batch -> batch.forEach(loaded::add));
+        }
+        install(loaded);
+        logger.info("[ExpertSearch] Loaded {} document(s) from snapshot, {} new since", before, loaded.docs.size() - before);
+    }
+
+    // Dựng lại từ database ở nền; false nếu đang có một lượt dựng lại khác
+    public boolean startRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        beginCapture();
+        Thread builder = new Thread(() -> {
+            long startedAt = System.currentTimeMillis();
+            try {
+                Segment built = buildParallel();
+                install(built);
+                logger.info("[ExpertSearch] Rebuilt index with {} document(s) in {} ms",
+                        built.docs.size(), System.currentTimeMillis() - startedAt);
+            } catch (RuntimeException e) {
+                endCapture();
+                logger.error("[ExpertSearch] Rebuild failed: {}", e.getMessage());
+            } finally {
+                rebuilding.set(false);
+            }
+        }, "expert-search-rebuild");
+        builder.setDaemon(true);
+        builder.start();
+        return true;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onContentSaved(ExpertContentSavedEvent event) {
+        addAll(List.of(Doc.of(event.type(), event.id(), event.expertId(), event.studentId(), event.createdAt(), event.text())));
+    }
+
+    // ExpertContentSavedEvent chỉ đến trên node đã lưu bài; các node khác thấy bài mới qua lượt đọc bổ sung này
+    @Scheduled(fixedDelayString = "${expert-search.catch-up-interval-ms:30000}", initialDelayString = "${expert-search.catch-up-interval-ms:30000}")
+    public void catchUp() {
+        if (!ready || rebuilding.get()) {
+            return;
+        }
+        for (ContentType type : ContentType.values()) {
+            long lastId;
+            lock.readLock().lock();
+            try {
+                lastId = segment.lastIds[type.ordinal()];
+            } finally {
+                lock.readLock().unlock();
+            }
+            loadAfter(type, Math.max(0, lastId - CATCH_UP_OVERLAP), this::addAll);
+        }
+    }
+
+    // Xếp hạng BM25 trên toàn bộ tài liệu khớp ít nhất một từ; expertId = null là không giới hạn người viết
+    public ContentSearchResultDTO search(String query, ContentType type, Long expertId, int page, int size) {
+        if (!ready) {
+            throw new IllegalStateException("Chỉ mục tìm kiếm đang được dựng, vui lòng thử lại sau");
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageIndex = Math.max(0, page);
+        Set<String> terms = analyze(query).keySet();
+
+        List<ContentSearchHitDTO> hits = new ArrayList<>();
+        long totalHits = 0;
+        lock.readLock().lock();
+        try {
+            Segment current = segment;
+            int docCount = current.docs.size();
+            if (docCount > 0 && !terms.isEmpty()) {
+                double avgLength = Math.max(1.0, (double) current.totalLength / docCount);
+                Map<Integer, Double> scores = new HashMap<>();
+                for (String term : terms) {
+                    Postings postings = current.postings.get(term);
+                    if (postings == null) {
+                        continue;
+                    }
+                    double idf = Math.log(1 + (docCount - postings.size + 0.5) / (postings.size + 0.5));
+                    for (int i = 0; i < postings.size; i++) {
+                        Doc doc = current.docs.get(postings.docIds[i]);
+                        if ((type != null && doc.type() != type) || (expertId != null && doc.expertId() != expertId)) {
+                            continue;
+                        }
+                        int tf = postings.freqs[i];
+                        double norm = tf + K1 * (1 - B + B * doc.length() / avgLength);
+                        scores.merge(postings.docIds[i], idf * tf * (K1 + 1) / norm, Double::sum);
+                    }
+                }
+                totalHits = scores.size();
+
+                // Chỉ giữ (page + 1) * size kết quả tốt nhất thay vì sắp xếp toàn bộ
+                int keep = (pageIndex + 1) * pageSize;
+                Comparator<Map.Entry<Integer, Double>> byScore = Map.Entry.<Integer, Double>comparingByValue()
+                        .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder()));
+                PriorityQueue<Map.Entry<Integer, Double>> top = new PriorityQueue<>(byScore);
+                for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+                    top.add(entry);
+                    if (top.size() > keep) {
+                        top.poll();
+                    }
+                }
+                List<Map.Entry<Integer, Double>> ranked = new ArrayList<>(top);
+                ranked.sort(byScore.reversed());
+                for (int i = pageIndex * pageSize; i < ranked.size(); i++) {
+                    hits.add(current.docs.get(ranked.get(i).getKey()).toHit(ranked.get(i).getValue()));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        ContentSearchResultDTO result = new ContentSearchResultDTO();
+        result.setHits(hits);
+        result.setTotalHits(totalHits);
+        result.setPage(pageIndex);
+        result.setSize(pageSize);
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${expert-search.snapshot-interval-ms:300000}")
+    public void saveIfDirty() {
+        if (!ready || !dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            writeSnapshot();
+        } catch (IOException e) {
+            dirty = true;
+            logger.error("[ExpertSearch] Failed to write snapshot: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        saveIfDirty();
+    }
+
+    private void addAll(List<Doc> docs) {
+        lock.writeLock().lock();
+        try {
+            for (Doc doc : docs) {
+                if (capturing) {
+                    pendingDocs.add(doc);
+                }
+                // Segment.add bỏ qua bài đã có, chỉ đánh dấu dirty khi thật sự có bài mới
+                int before = segment.docs.size();
+                segment.add(doc);
+                dirty |= segment.docs.size() != before;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void beginCapture() {
+        lock.writeLock().lock();
+        try {
+            capturing = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void endCapture() {
+        lock.writeLock().lock();
+        try {
+            capturing = false;
+            pendingDocs.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void install(Segment next) {
+        lock.writeLock().lock();
+        try {
+            // Segment.add bỏ qua bài đã có nên thêm lại bài đã đọc được từ database cũng không sao
+            pendingDocs.forEach(next::add);
+            pendingDocs.clear();
+            capturing = false;
+            segment = next;
+            ready = true;
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Chia mỗi bảng thành các khoảng id cố định; đọc và tách từ song song, rồi ghép theo thứ tự id
+    private Segment buildParallel() {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, rebuildThreads));
+        try {
+            List<Future<List<Doc>>> parts = new ArrayList<>();
+            for (ContentType type : ContentType.values()) {
+                Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + type.table, Long.class);
+                if (maxId == null) {
+                    continue;
+                }
+                for (long from = 0; from < maxId; from += RANGE_SIZE) {
+                    long afterId = from;
+                    long toId = Math.min(maxId, from + RANGE_SIZE);
+                    parts.add(pool.submit(() -> load(type, afterId, toId, Integer.MAX_VALUE)));
+                }
+            }
+            Segment built = new Segment();
+            for (Future<List<Doc>> part : parts) {
+                part.get().forEach(built::add);
+            }
+            return built;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Đọc từng lô các dòng có id > afterId cho tới hết bảng
+    private void loadAfter(ContentType type, long afterId, Consumer<List<Doc>> consumer) {
+        long lastId = afterId;
+        while (true) {
+            List<Doc> batch = load(type, lastId, Long.MAX_VALUE, RANGE_SIZE);
+            if (batch.isEmpty()) {
+                return;
+            }
+            consumer.accept(batch);
+            lastId = batch.get(batch.size() - 1).sourceId();
+        }
+    }
+
+    private List<Doc> load(ContentType type, long afterId, long toId, int limit) {
+        return jdbcTemplate.query(type.select + " WHERE id > ? AND id <= ? ORDER BY id LIMIT ?",
+                (rs, rowNum) -> {
+                    Timestamp createdAt = rs.getTimestamp(4);
+                    return Doc.of(type, rs.getLong(1), rs.getLong(2), rs.getLong(3),
+                            createdAt != null ? createdAt.toLocalDateTime() : null, rs.getString(5));
+                },
+                afterId, toId, limit);
+    }
+
+    // Âm tiết đã bỏ dấu và cặp âm tiết liền nhau, kèm số lần xuất hiện
+    static Map<String, Integer> analyze(String text) {
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        String previous = null;
+        for (String token : VietnameseText.fold(text).split("[^a-z0-9]+")) {
+            if (token.isEmpty() || token.length() > MAX_TOKEN_LENGTH) {
+                continue;
+            }
+            terms.merge(token, 1, Integer::sum);
+            if (previous != null) {
+                terms.merge(previous + "_" + token, 1, Integer::sum);
+            }
+            previous = token;
+        }
+        return terms;
+    }
+
+    private Path snapshotPath() {
+        return Path.of(indexDir, "expert-content.idx");
+    }
+
+    private void writeSnapshot() throws IOException {
+        Path target = snapshotPath();
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        // Doc bất biến nên chỉ cần chép danh sách khi giữ lock; nén và ghi file chạy ngoài lock để không chặn bài mới
+        List<Doc> docs;
+        lock.readLock().lock();
+        try {
+            docs = new ArrayList<>(segment.docs);
+        } finally {
+            lock.readLock().unlock();
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(docs.size());
+            for (Doc doc : docs) {
+                out.writeByte(doc.type().ordinal());
+                out.writeLong(doc.sourceId());
+                out.writeLong(doc.expertId());
+                out.writeLong(doc.studentId());
+                out.writeLong(doc.createdAt() != null ? doc.createdAt().toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE);
+                out.writeUTF(doc.snippet());
+                out.writeInt(doc.length());
+                out.writeInt(doc.terms().size());
+                for (Map.Entry<String, Integer> term : doc.terms().entrySet()) {
+                    out.writeUTF(term.getKey());
+                    out.writeInt(term.getValue());
+                }
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Segment readSnapshot(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path))))) {
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported snapshot version");
+            }
+            int count = in.readInt();
+            Segment segment = new Segment();
+            for (int i = 0; i < count; i++) {
+                ContentType type = ContentType.values()[in.readByte()];
+                long sourceId = in.readLong();
+                long expertId = in.readLong();
+                long studentId = in.readLong();
+                long epochSecond = in.readLong();
+                String snippet = in.readUTF();
+                int length = in.readInt();
+                int termCount = in.readInt();
+                Map<String, Integer> terms = new LinkedHashMap<>(termCount * 2);
+                for (int t = 0; t < termCount; t++) {
+                    terms.put(in.readUTF(), in.readInt());
+                }
+                LocalDateTime createdAt = epochSecond == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+                segment.add(new Doc(type, sourceId, expertId, studentId, createdAt, snippet, length, terms));
+            }
+            return segment;
+        }
+    }
+
+    record Doc(ContentType type, long sourceId, long expertId, long studentId, LocalDateTime createdAt,
+               String snippet, int length, Map<String, Integer> terms) {
+
+        static Doc of(ContentType type, long sourceId, long expertId, long studentId, LocalDateTime createdAt, String text) {
+            String body = text != null ? text : "";
+            Map<String, Integer> terms = analyze(body);
+            int length = 0;
+            for (Map.Entry<String, Integer> term : terms.entrySet()) {
+                if (term.getKey().indexOf('_') < 0) {
+                    length += term.getValue();
+                }
+            }
+            String snippet = body.length() > SNIPPET_LENGTH ? body.substring(0, SNIPPET_LENGTH) + "…" : body;
+            return new Doc(type, sourceId, expertId, studentId, createdAt, snippet, length, terms);
+        }
+
+        ContentSearchHitDTO toHit(double score) {
+            ContentSearchHitDTO hit = new ContentSearchHitDTO();
+            hit.setType(type.name());
+            hit.setId(sourceId);
+            hit.setExpertId(expertId);
+            hit.setStudentId(studentId);
+            hit.setCreatedAt(createdAt);
+            hit.setSnippet(snippet);
+            hit.setScore(Math.round(score * 1000) / 1000.0);
+            return hit;
+        }
+    }
+
+    // Danh sách (docId, tf) của một từ; docId tăng dần vì tài liệu chỉ được nối thêm
+    private static final class Postings {
+        int[] docIds = new int[4];
+        int[] freqs = new int[4];
+        int size;
+
+        void add(int docId, int freq) {
+            if (size == docIds.length) {
+                docIds = Arrays.copyOf(docIds, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docIds[size] = docId;
+            freqs[size] = freq;
+            size++;
+        }
+    }
+
+    // Toàn bộ chỉ mục; chỉ được đọc/ghi khi giữ lock tương ứng (hoặc khi chưa được công bố)
+    private static final class Segment {
+        final List<Doc> docs = new ArrayList<>();
+        final Map<String, Postings> postings = new HashMap<>();
+        final Set<String> keys = new HashSet<>();
+        final long[] lastIds = new long[ContentType.values().length];
+        long totalLength;
+
+        void add(Doc doc) {
+            if (!keys.add(doc.type() + ":" + doc.sourceId())) {
+                return;
+            }
+            int docId = docs.size();
+            docs.add(doc);
+            doc.terms().forEach((term, freq) -> postings.computeIfAbsent(term, k -> new Postings()).add(docId, freq));
+            totalLength += doc.length();
+            lastIds[doc.type().ordinal()] = Math.max(lastIds[doc.type().ordinal()], doc.sourceId());
+        }
+    }
+}
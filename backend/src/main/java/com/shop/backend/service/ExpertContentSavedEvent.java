@@ -0,0 +1,12 @@
+package com.shop.backend.service;
+
+import java.time.LocalDateTime;
+
+// Một nhận xét hoặc lời khuyên vừa được lưu; ExpertContentIndex đánh chỉ mục sau khi transaction commit
+public record ExpertContentSavedEvent(ExpertContentIndex.ContentType type,
+                                      long id,
+                                      long expertId,
+                                      long studentId,
+                                      LocalDateTime createdAt,
+                                      String text) {
+}
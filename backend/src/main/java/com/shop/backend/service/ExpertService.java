@@ -8,6 +8,7 @@ import com.shop.backend.dto.depression.DepressionTestResultDTO;
 import com.shop.backend.dto.expert.AdviceMessageDTO;
 import com.shop.backend.dto.UserDTO;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -24,45 +25,24 @@ public class ExpertService {
     private AdviceMessageRepository adviceMessageRepository;
     
     @Autowired
-    private DepressionTestResultRepository testResultRepository;
+    private UserRepository userRepository;
     
     @Autowired
-    private UserRepository userRepository;
+    private DepressionTestService depressionTestService;
     
-    // Lấy danh sách tất cả kết quả test của học sinh
-    public List<DepressionTestResult> getAllTestResults() {
-        return testResultRepository.findAllByOrderByTestedAtDesc();
-    }
+    @Autowired
+    private TestRollupService testRollupService;
     
-    // Lấy danh sách kết quả test theo mức độ nghiêm trọng
-    public List<DepressionTestResult> getTestResultsBySeverity(DepressionTestResult.SeverityLevel severityLevel) {
-        return testResultRepository.findBySeverityLevel(severityLevel);
-    }
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
     
-    // Lấy lịch sử test của một học sinh cụ thể
-    public List<DepressionTestResult> getStudentTestHistory(Long studentId) {
-        return testResultRepository.findByUserIdOrderByTestedAtDesc(studentId);
+    // Lấy lịch sử test của một học sinh cụ thể (tối đa 1000 bài mới nhất)
+    public com.shop.backend.dto.CursorPage<DepressionTestResultDTO> getStudentTestHistory(Long studentId) {
+        return depressionTestService.getTestHistoryForUser(studentId);
     }
     
-    // Lấy danh sách tất cả kết quả test của học sinh (dạng DTO)
-    public List<DepressionTestResultDTO> getAllTestResultDTOs() {
-        List<DepressionTestResult> results = testResultRepository.findAllByOrderByTestedAtDesc();
-        return results.stream().map(result -> {
-            DepressionTestResultDTO dto = new DepressionTestResultDTO();
-            dto.setId(result.getId());
-            if (result.getUser() != null) {
-                dto.setStudentName(result.getUser().getFirstName() + " " + result.getUser().getLastName());
-            } else {
-                dto.setStudentName("");
-            }
-            dto.setTotalScore(result.getTotalScore());
-            dto.setSeverityLevel(result.getSeverityLevel() != null ? result.getSeverityLevel().name() : "");
-            dto.setTestedAt(result.getTestedAt());
-            dto.setDiagnosis(result.getDiagnosis());
-            dto.setEmail(result.getUser() != null ? result.getUser().getEmail() : "");
-            dto.setUserId(result.getUser() != null ? result.getUser().getId() : null);
-            return dto;
-        }).toList();
+    public com.shop.backend.dto.CursorPage<DepressionTestResultDTO> getStudentTestHistoryPage(Long studentId, String cursor, int limit) {
+        return depressionTestService.getTestHistoryPage(studentId, cursor, limit);
     }
     
     // Tạo nhận xét cho học sinh
@@ -82,7 +62,10 @@ public class ExpertService {
         note.setNote(request.getNote());
         note.setNoteType(ExpertNote.NoteType.valueOf(request.getNoteType()));
         
-        return expertNoteRepository.save(note);
+        ExpertNote saved = expertNoteRepository.save(note);
+        eventPublisher.publishEvent(new ExpertContentSavedEvent(ExpertContentIndex.ContentType.NOTE, saved.getId(),
+                expertId, request.getStudentId(), saved.getCreatedAt(), saved.getNote()));
+        return saved;
     }
     
     // Gửi lời khuyên/tư vấn cho học sinh
@@ -98,7 +81,10 @@ public class ExpertService {
         message.setReceiver(receiver);
         message.setMessage(request.getMessage());
         message.setMessageType(AdviceMessage.MessageType.valueOf(request.getMessageType()));
-        return adviceMessageRepository.save(message);
+        AdviceMessage saved = adviceMessageRepository.save(message);
+        eventPublisher.publishEvent(new ExpertContentSavedEvent(ExpertContentIndex.ContentType.ADVICE, saved.getId(),
+                sender.getId(), receiver.getId(), saved.getSentAt(), saved.getMessage()));
+        return saved;
     }
     
     // Lấy danh sách nhận xét của chuyên gia
@@ -143,39 +129,7 @@ public class ExpertService {
 
     // Thống kê số lượt test theo ngày (và số severe test) trong khoảng thời gian (tái sử dụng từ admin)
     public Map<String, Object> getTestCountByDateRange(int days) {
-        java.time.LocalDate today = java.time.LocalDate.now();
-        java.time.LocalDate from = today.minusDays(days - 1);
-        java.time.LocalDateTime fromDateTime = from.atStartOfDay();
-        java.time.LocalDateTime toDateTime = today.atTime(23, 59, 59);
-        // Lấy tổng số test theo ngày
-        List<Object[]> totalList = testResultRepository.countTestsByDateRange(fromDateTime, toDateTime);
-        // Lấy số severe test theo ngày
-        List<Object[]> severeList = testResultRepository.countSevereTestsByDateRange(fromDateTime, toDateTime);
-        // Map ngày -> count
-        Map<String, Integer> totalMap = new java.util.HashMap<>();
-        for (Object[] row : totalList) {
-            totalMap.put(row[0].toString(), ((Number)row[1]).intValue());
-        }
-        Map<String, Integer> severeMap = new java.util.HashMap<>();
-        for (Object[] row : severeList) {
-            severeMap.put(row[0].toString(), ((Number)row[1]).intValue());
-        }
-        // Build kết quả đủ ngày (nếu ngày nào không có thì count = 0)
-        java.util.List<String> dates = new java.util.ArrayList<>();
-        java.util.List<Integer> totalTests = new java.util.ArrayList<>();
-        java.util.List<Integer> severeTests = new java.util.ArrayList<>();
-        for (int i = 0; i < days; i++) {
-            java.time.LocalDate d = from.plusDays(i);
-            String key = d.toString();
-            dates.add(key);
-            totalTests.add(totalMap.getOrDefault(key, 0));
-            severeTests.add(severeMap.getOrDefault(key, 0));
-        }
-        Map<String, Object> result = new java.util.HashMap<>();
-        result.put("dates", dates);
-        result.put("totalTests", totalTests);
-        result.put("severeTests", severeTests);
-        return result;
+        return testRollupService.getTestCountByDateRange(days);
     }
 
     public UserDTO getCurrentExpertProfile(String email) {
@@ -0,0 +1,165 @@
+package com.shop.backend.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// OtpStore mặc định, chỉ đúng khi chạy một node. Số email giữ cùng lúc có giới hạn cứng (otp.memory.capacity).
+// Hết hạn dùng timing wheel: mỗi lần lưu đặt một mốc hết hạn vào ô của tick ngay sau expiresAt,
+// mỗi tick chỉ quét đúng ô vừa đến hạn nên chi phí dọn không phụ thuộc tổng số OTP đang giữ.
+@Component
+@ConditionalOnProperty(name = "otp.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOtpStore implements OtpStore {
+    private static final long TICK_MILLIS = 1000;
+    // 1024 ô x 1 giây: một vòng dài hơn TTL và thời gian khóa thông thường, mốc xa hơn thì chờ thêm vòng
+    private static final int WHEEL_SIZE = 1024;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final List<Queue<Timeout>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final int capacity;
+    // Chỉ thread của @Scheduled ghi
+    private long lastTick = System.currentTimeMillis() / TICK_MILLIS;
+
+    public InMemoryOtpStore(@Value("${otp.memory.capacity:100000}") int capacity, MeterRegistry meterRegistry) {
+        this.capacity = capacity;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ConcurrentLinkedQueue<>());
+        }
+        Gauge.builder("otp.store.size", size, AtomicInteger::get)
+                .description("Số email đang giữ OTP hoặc đang bị khóa")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean save(String email, String otpHash, Duration ttl, int maxAttempts, Duration lockout) {
+        long now = System.currentTimeMillis();
+        boolean[] locked = new boolean[1];
+        boolean[] full = new boolean[1];
+        Entry saved = entries.compute(email, (key, existing) -> {
+            if (existing != null && existing.isLocked(now, maxAttempts)) {
+                locked[0] = true;
+                return existing;
+            }
+            if (existing == null && size.incrementAndGet() > capacity) {
+                size.decrementAndGet();
+                full[0] = true;
+                return null;
+            }
+            // Lần sai của mã cũ vẫn tính cho mã mới cho đến hết cửa sổ
+            if (existing != null && existing.failuresUntil() > now) {
+                return new Entry(otpHash, now + ttl.toMillis(), existing.failedAttempts(), existing.failuresUntil());
+            }
+            return new Entry(otpHash, now + ttl.toMillis(), 0, 0);
+        });
+        if (full[0]) {
+            throw new OtpStoreFullException("Hệ thống đang quá tải, vui lòng thử lại sau ít phút");
+        }
+        if (locked[0]) {
+            return false;
+        }
+        schedule(email, saved.retainUntil());
+        return true;
+    }
+
+    @Override
+    public Result verify(String email, String otpHash, int maxAttempts, Duration lockout) {
+        long now = System.currentTimeMillis();
+        Result[] result = {Result.MISSING};
+        long[] retainedUntil = new long[1];
+        Entry updated = entries.computeIfPresent(email, (key, existing) -> {
+            retainedUntil[0] = existing.retainUntil();
+            if (existing.isLocked(now, maxAttempts)) {
+                result[0] = Result.LOCKED;
+                return existing;
+            }
+            if (existing.codeExpiresAt() <= now) {
+                // Mã hết hạn nhưng bộ đếm lần sai còn trong cửa sổ thì vẫn giữ entry
+                return existing.failuresUntil() > now ? existing : remove();
+            }
+            if (existing.otpHash().equals(otpHash)) {
+                result[0] = Result.VALID;
+                return remove();
+            }
+            boolean windowOpen = existing.failuresUntil() > now;
+            int failedAttempts = windowOpen ? existing.failedAttempts() + 1 : 1;
+            if (failedAttempts >= maxAttempts) {
+                // Giữ entry đến hết thời gian khóa để yêu cầu mã mới cũng bị chặn
+                result[0] = Result.LOCKED;
+                return new Entry(existing.otpHash(), existing.codeExpiresAt(), failedAttempts, now + lockout.toMillis());
+            }
+            result[0] = Result.INVALID;
+            long failuresUntil = windowOpen ? existing.failuresUntil() : now + lockout.toMillis();
+            return new Entry(existing.otpHash(), existing.codeExpiresAt(), failedAttempts, failuresUntil);
+        });
+        if (updated != null && updated.retainUntil() != retainedUntil[0]) {
+            schedule(email, updated.retainUntil());
+        }
+        return result[0];
+    }
+
+    @Scheduled(fixedRate = TICK_MILLIS)
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        long currentTick = now / TICK_MILLIS;
+        // Trễ hơn một vòng thì mọi ô đều đã đến hạn, quét mỗi ô một lần là đủ
+        long fromTick = Math.max(lastTick + 1, currentTick - WHEEL_SIZE + 1);
+        for (long tick = fromTick; tick <= currentTick; tick++) {
+            Queue<Timeout> slot = wheel.get((int) (tick % WHEEL_SIZE));
+            List<Timeout> notYetDue = new ArrayList<>();
+            Timeout timeout;
+            while ((timeout = slot.poll()) != null) {
+                if (timeout.expiresAt() > now) {
+                    notYetDue.add(timeout);
+                    continue;
+                }
+                expire(timeout);
+            }
+            slot.addAll(notYetDue);
+        }
+        lastTick = currentTick;
+    }
+
+    private void expire(Timeout timeout) {
+        // Entry đã được lưu lại hoặc bị khóa sau đó có mốc hết hạn khác; mốc đó có Timeout riêng
+        entries.computeIfPresent(timeout.email(), (key, existing) ->
+                existing.retainUntil() == timeout.expiresAt() ? remove() : existing);
+    }
+
+    private Entry remove() {
+        size.decrementAndGet();
+        return null;
+    }
+
+    // Đặt vào tick đầu tiên bắt đầu sau mốc hết hạn, để lúc ô được quét thì mốc chắc chắn đã qua
+    private void schedule(String email, long expiresAt) {
+        long tick = (expiresAt + TICK_MILLIS - 1) / TICK_MILLIS;
+        wheel.get((int) (tick % WHEEL_SIZE)).add(new Timeout(email, expiresAt));
+    }
+
+    // failuresUntil: hết cửa sổ đếm lần sai (0 nếu chưa sai lần nào); khi đã chạm maxAttempts thì là hết thời gian khóa
+    private record Entry(String otpHash, long codeExpiresAt, int failedAttempts, long failuresUntil) {
+        boolean isLocked(long now, int maxAttempts) {
+            return failedAttempts >= maxAttempts && failuresUntil > now;
+        }
+
+        long retainUntil() {
+            return Math.max(codeExpiresAt, failuresUntil);
+        }
+    }
+
+    private record Timeout(String email, long expiresAt) {
+    }
+}
@@ -0,0 +1,8 @@
+package com.shop.backend.service;
+
+// Bài nộp không khớp với bộ câu hỏi hiện tại (câu hỏi lạ, trùng đáp án, giá trị ngoài thang điểm)
+public class InvalidSubmissionException extends RuntimeException {
+    public InvalidSubmissionException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.shop.backend.service;
+
+// Nhập sai OTP quá số lần cho phép, email tạm thời bị khóa (HTTP 429)
+public class OtpLockedException extends RuntimeException {
+    public OtpLockedException(String message) {
+        super(message);
+    }
+}
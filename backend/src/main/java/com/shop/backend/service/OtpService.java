@@ -1,35 +1,71 @@
 package com.shop.backend.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.time.LocalDateTime;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+
+// OTP đặt lại mật khẩu: chuẩn hóa email, băm mã rồi giao cho OtpStore (bộ nhớ hoặc database).
 @Service
 public class OtpService {
-    private static class OtpInfo {
-        String otp;
-        LocalDateTime expiresAt;
-        OtpInfo(String otp, LocalDateTime expiresAt) {
-            this.otp = otp;
-            this.expiresAt = expiresAt;
-        }
-    }
-    private final Map<String, OtpInfo> otpStore = new ConcurrentHashMap<>();
+
+    @Autowired
+    private OtpStore otpStore;
+
+    @Value("${otp.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${otp.lockout-minutes:15}")
+    private long lockoutMinutes;
+
+    // Mọi node phải dùng cùng một khóa (store database); mặc định dùng lại jwt.secret vốn đã giống nhau giữa các node
+    @Value("${otp.hmac-secret:${jwt.secret}}")
+    private String hmacSecret;
 
     public void saveOtp(String email, String otp, int minutes) {
-        otpStore.put(email, new OtpInfo(otp, LocalDateTime.now().plusMinutes(minutes)));
+        String key = normalize(email);
+        if (!otpStore.save(key, hash(key, otp), Duration.ofMinutes(minutes), maxAttempts, Duration.ofMinutes(lockoutMinutes))) {
+            throw new OtpLockedException(lockedMessage());
+        }
     }
 
+    // Sai quá số lần cho phép thì ném OtpLockedException thay vì trả về false
     public boolean verifyOtp(String email, String otp) {
-        OtpInfo info = otpStore.get(email);
-        if (info == null) return false;
-        if (info.expiresAt.isBefore(LocalDateTime.now())) {
-            otpStore.remove(email);
+        if (email == null || otp == null) {
             return false;
         }
-        boolean valid = info.otp.equals(otp);
-        if (valid) otpStore.remove(email);
-        return valid;
+        String key = normalize(email);
+        OtpStore.Result result = otpStore.verify(key, hash(key, otp), maxAttempts, Duration.ofMinutes(lockoutMinutes));
+        if (result == OtpStore.Result.LOCKED) {
+            throw new OtpLockedException(lockedMessage());
+        }
+        return result == OtpStore.Result.VALID;
+    }
+
+    private String lockedMessage() {
+        return "Nhập sai mã OTP quá nhiều lần. Vui lòng thử lại sau " + lockoutMinutes + " phút.";
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // HMAC có khóa bí mật: mã OTP chỉ có 10^6 giá trị, hash không khóa bị vét cạn ngay khi lộ bảng otp_tokens.
+    // Gắn email vào để cùng một mã ở hai email khác nhau không cho cùng giá trị
+    private String hash(String email, String otp) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(hmacSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(("otp:" + email + ":" + otp).getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package com.shop.backend.service;
+
+import java.time.Duration;
+
+// Nơi lưu OTP quên mật khẩu, theo email. OtpService chỉ đưa vào đây hash của OTP, không bao giờ đưa mã gốc.
+// Mặc định lưu trong bộ nhớ (otp.store=memory); chạy nhiều node sau load balancer thì dùng otp.store=database.
+// Số lần nhập sai được đếm theo email trong cửa sổ lockout tính từ lần sai đầu tiên; yêu cầu mã mới
+// không xóa bộ đếm. Chạm maxAttempts thì email bị khóa trong lockout, kể cả khi yêu cầu mã mới.
+public interface OtpStore {
+
+    enum Result {
+        VALID,
+        INVALID,
+        // Không có mã hoặc mã đã hết hạn
+        MISSING,
+        LOCKED
+    }
+
+    // false nếu email đang bị khóa (mã cũ vẫn giữ nguyên)
+    boolean save(String email, String otpHash, Duration ttl, int maxAttempts, Duration lockout);
+
+    // Mã đúng thì bị xóa ngay (chỉ dùng được một lần); mã sai thì tăng bộ đếm và khóa khi chạm maxAttempts
+    Result verify(String email, String otpHash, int maxAttempts, Duration lockout);
+}
@@ -0,0 +1,8 @@
+package com.shop.backend.service;
+
+// Kho OTP trong bộ nhớ đã chạm giới hạn, client cần thử lại sau (HTTP 503)
+public class OtpStoreFullException extends RuntimeException {
+    public OtpStoreFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,42 @@
+package com.shop.backend.service;
+
+// Mã hóa vector đáp án thành mảng byte: một byte không dấu cho mỗi câu theo thứ tự layout.
+// 0xFF đánh dấu câu chưa trả lời, nên chỉ đóng gói được giá trị trong khoảng 0-254.
+public final class PackedAnswers {
+    public static final int MAX_VALUE = 254;
+    private static final int UNANSWERED = 0xFF;
+
+    private PackedAnswers() {
+    }
+
+    public static boolean canPack(int[] values) {
+        for (int value : values) {
+            if (value > MAX_VALUE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // values: -1 (hoặc âm) là chưa trả lời
+    public static byte[] pack(int[] values) {
+        byte[] packed = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            int value = values[i];
+            if (value > MAX_VALUE) {
+                throw new IllegalArgumentException("Answer value " + value + " cannot be packed");
+            }
+            packed[i] = (byte) (value < 0 ? UNANSWERED : value);
+        }
+        return packed;
+    }
+
+    public static int[] unpack(byte[] packed) {
+        int[] values = new int[packed.length];
+        for (int i = 0; i < packed.length; i++) {
+            int value = packed[i] & 0xFF;
+            values[i] = value == UNANSWERED ? -1 : value;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,8 @@
+package com.shop.backend.service;
+
+// Hàng đợi băm mật khẩu đã đầy, client cần thử lại sau (HTTP 503)
+public class PasswordHashingBusyException extends RuntimeException {
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,59 @@
+package com.shop.backend.service;
+
+import com.shop.backend.model.DepressionTestResult;
+import com.shop.backend.model.User;
+
+import java.time.LocalDateTime;
+
+// Bài nộp đã chấm điểm đang chờ ghi xuống database ở chế độ write-behind.
+// Chỉ giữ id câu hỏi + giá trị đã trả lời để bản ghi journal không phụ thuộc vào version của catalog.
+public record PendingSubmission(long sequence,
+                                long userId,
+                                String testType,
+                                int totalScore,
+                                DepressionTestResult.SeverityLevel severityLevel,
+                                String diagnosis,
+                                String recommendation,
+                                LocalDateTime testedAt,
+                                long[] questionIds,
+                                int[] answerValues,
+                                String idempotencyKey) {
+
+    static PendingSubmission of(long sequence, long userId, ScoredSubmission submission, String recommendation,
+                                LocalDateTime testedAt, String idempotencyKey) {
+        int[] values = submission.values();
+        int answered = 0;
+        for (int value : values) {
+            if (value >= 0) {
+                answered++;
+            }
+        }
+        long[] questionIds = new long[answered];
+        int[] answerValues = new int[answered];
+        for (int i = 0, j = 0; i < values.length; i++) {
+            if (values[i] >= 0) {
+                questionIds[j] = submission.bank().questionIdAt(i);
+                answerValues[j] = values[i];
+                j++;
+            }
+        }
+        ScoringEngine.ScoreResult score = submission.score();
+        return new PendingSubmission(sequence, userId, submission.testType(), score.totalScore(), score.severityLevel(),
+                score.diagnosis(), recommendation, testedAt, questionIds, answerValues, idempotencyKey);
+    }
+
+    DepressionTestResult toEntity() {
+        DepressionTestResult testResult = new DepressionTestResult();
+        testResult.setTotalScore(totalScore);
+        testResult.setDiagnosis(diagnosis);
+        testResult.setSeverityLevel(severityLevel);
+        testResult.setUser(new User());
+        testResult.getUser().setId(userId);
+        testResult.setRecommendation(recommendation);
+        testResult.setTestType(testType);
+        testResult.setTestedAt(testedAt);
+        testResult.setIdempotencyKey(idempotencyKey);
+        testResult.setSubmissionSeq(sequence);
+        return testResult;
+    }
+}
@@ -0,0 +1,75 @@
+package com.shop.backend.service;
+
+import java.util.Arrays;
+
+// Bộ câu hỏi của một testKey ở dạng mảng nguyên thủy, sắp theo questionId tăng dần.
+// Vị trí trong mảng là "thứ tự catalog" dùng chung cho tính điểm, kiểm tra đáp án và lưu trữ.
+public final class QuestionBank {
+    // Thang điểm mặc định khi câu hỏi chưa có đáp án nào (0-3)
+    static final int DEFAULT_MIN_VALUE = 0;
+    static final int DEFAULT_MAX_VALUE = 3;
+
+    private final String testKey;
+    private final long[] questionIds;
+    private final int[] weights;
+    private final int[] minValues;
+    private final int[] maxValues;
+    private final boolean[] reverseScored;
+    private final String[] categories;
+
+    QuestionBank(String testKey, long[] questionIds, int[] weights, int[] minValues, int[] maxValues,
+                 boolean[] reverseScored, String[] categories) {
+        this.testKey = testKey;
+        this.questionIds = questionIds;
+        this.weights = weights;
+        this.minValues = minValues;
+        this.maxValues = maxValues;
+        this.reverseScored = reverseScored;
+        this.categories = categories;
+    }
+
+    public String getTestKey() {
+        return testKey;
+    }
+
+    public int size() {
+        return questionIds.length;
+    }
+
+    // Trả về vị trí của câu hỏi trong bank, -1 nếu câu hỏi không thuộc bank
+    public int indexOf(long questionId) {
+        int index = Arrays.binarySearch(questionIds, questionId);
+        return index >= 0 ? index : -1;
+    }
+
+    public long questionIdAt(int index) {
+        return questionIds[index];
+    }
+
+    public int weightAt(int index) {
+        return weights[index];
+    }
+
+    public int minValueAt(int index) {
+        return minValues[index];
+    }
+
+    public int maxValueAt(int index) {
+        return maxValues[index];
+    }
+
+    public boolean isReverseScoredAt(int index) {
+        return reverseScored[index];
+    }
+
+    public String categoryAt(int index) {
+        return categories[index];
+    }
+
+    // Vector đáp án theo thứ tự catalog, -1 nghĩa là chưa trả lời
+    public int[] newAnswerVector() {
+        int[] values = new int[questionIds.length];
+        Arrays.fill(values, -1);
+        return values;
+    }
+}
@@ -0,0 +1,212 @@
+package com.shop.backend.service;
+
+import com.shop.backend.dto.depression.DepressionQuestionDTO;
+import com.shop.backend.model.DepressionQuestion;
+import com.shop.backend.model.DepressionQuestionOption;
+import com.shop.backend.repository.DepressionQuestionOptionRepository;
+import com.shop.backend.repository.DepressionQuestionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Bộ câu hỏi + đáp án giữ trong bộ nhớ dưới dạng snapshot bất biến theo testKey.
+// Đường đọc (/api/depression-test/questions, /api/admin/questions) không chạm vào MySQL;
+// mỗi thay đổi từ AdminService sẽ nạp lại và công bố một phiên bản mới sau khi commit.
+@Component
+public class QuestionCatalog {
+    private static final Logger logger = LoggerFactory.getLogger(QuestionCatalog.class);
+
+    @Autowired
+    private DepressionQuestionRepository questionRepository;
+
+    @Autowired
+    private DepressionQuestionOptionRepository optionRepository;
+
+    private final TransactionTemplate readTransaction;
+
+    // Bắt đầu từ thời điểm khởi động để version không lặp lại giữa các lần restart
+    private final AtomicLong versionSequence = new AtomicLong(System.currentTimeMillis());
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(Snapshot.empty());
+
+    public QuestionCatalog(PlatformTransactionManager transactionManager) {
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reload();
+    }
+
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    public long getVersion() {
+        return current.get().version();
+    }
+
+    // Các DTO trả về được chia sẻ giữa mọi request, không được chỉnh sửa
+    public List<DepressionQuestionDTO> getActiveQuestions() {
+        return current.get().activeQuestions();
+    }
+
+    public List<DepressionQuestionDTO> getActiveQuestions(String testKey) {
+        return current.get().activeByTestKey().getOrDefault(testKey, Collections.emptyList());
+    }
+
+    public List<DepressionQuestionDTO> getAllQuestions() {
+        return current.get().allQuestions();
+    }
+
+    // Tra câu hỏi theo id, kể cả câu đã tắt (dùng khi giải mã đáp án của bài test cũ)
+    public DepressionQuestionDTO getQuestion(Long questionId) {
+        return current.get().questionsById().get(questionId);
+    }
+
+    // Gọi trong transaction của AdminService: chỉ nạp lại khi dữ liệu đã commit
+    public void reloadAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reload();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reload();
+            }
+        });
+    }
+
+    public synchronized void reload() {
+        try {
+            Snapshot next = readTransaction.execute(status -> load(versionSequence.incrementAndGet()));
+            current.set(next);
+            logger.info("[QuestionCatalog] Published version {} ({} questions, {} test keys)",
+                    next.version(), next.allQuestions().size(), next.activeByTestKey().size());
+        } catch (RuntimeException e) {
+            // Giữ snapshot cũ nếu nạp lỗi, lần thay đổi sau sẽ thử lại
+            logger.error("[QuestionCatalog] Reload failed, keeping version {}: {}", getVersion(), e.getMessage());
+        }
+    }
+
+    private Snapshot load(long version) {
+        List<DepressionQuestion> questions = new ArrayList<>(questionRepository.findAll());
+        questions.sort(Comparator.comparing(DepressionQuestion::getId));
+
+        // Một truy vấn cho toàn bộ đáp án thay vì một truy vấn cho mỗi câu hỏi
+        Map<Long, List<DepressionQuestionOption>> optionsByQuestion = new HashMap<>();
+        for (DepressionQuestionOption option : optionRepository.findAll()) {
+            DepressionQuestionOption copy = new DepressionQuestionOption();
+            copy.setId(option.getId());
+            copy.setOptionText(option.getOptionText());
+            copy.setOptionValue(option.getOptionValue());
+            copy.setOrder(option.getOrder());
+            optionsByQuestion.computeIfAbsent(option.getQuestion().getId(), k -> new ArrayList<>()).add(copy);
+        }
+        Comparator<DepressionQuestionOption> byOrder = Comparator.comparing(DepressionQuestionOption::getOrder,
+                Comparator.nullsLast(Comparator.naturalOrder()));
+
+        List<DepressionQuestionDTO> all = new ArrayList<>(questions.size());
+        Map<Long, DepressionQuestionDTO> byId = new HashMap<>();
+        List<DepressionQuestionDTO> active = new ArrayList<>();
+        Map<String, List<DepressionQuestionDTO>> activeByTestKey = new LinkedHashMap<>();
+        for (DepressionQuestion q : questions) {
+            List<DepressionQuestionOption> options = optionsByQuestion.getOrDefault(q.getId(), new ArrayList<>());
+            options.sort(byOrder);
+
+            DepressionQuestionDTO dto = new DepressionQuestionDTO();
+            dto.setId(q.getId());
+            dto.setQuestionText(q.getQuestionText());
+            dto.setWeight(q.getWeight());
+            dto.setCategory(q.getCategory());
+            dto.setOrder(q.getOrder());
+            dto.setIsActive(q.getIsActive());
+            dto.setReverseScored(Boolean.TRUE.equals(q.getReverseScored()));
+            dto.setOptions(List.copyOf(options));
+            all.add(dto);
+            byId.put(dto.getId(), dto);
+
+            if (Boolean.TRUE.equals(q.getIsActive())) {
+                active.add(dto);
+                if (q.getTestKey() != null) {
+                    activeByTestKey.computeIfAbsent(q.getTestKey(), k -> new ArrayList<>()).add(dto);
+                }
+            }
+        }
+        Map<String, List<DepressionQuestionDTO>> frozen = new LinkedHashMap<>();
+        Map<String, QuestionBank> banks = new HashMap<>();
+        activeByTestKey.forEach((key, list) -> {
+            frozen.put(key, List.copyOf(list));
+            banks.put(key, toBank(key, list));
+        });
+        return new Snapshot(version, List.copyOf(all), List.copyOf(active), Collections.unmodifiableMap(frozen),
+                toBank(null, active), Collections.unmodifiableMap(banks), Map.copyOf(byId));
+    }
+
+    // Danh sách DTO đã sắp theo id nên thứ tự trong bank trùng với thứ tự trong danh sách
+    private static QuestionBank toBank(String testKey, List<DepressionQuestionDTO> questions) {
+        int size = questions.size();
+        long[] ids = new long[size];
+        int[] weights = new int[size];
+        int[] minValues = new int[size];
+        int[] maxValues = new int[size];
+        boolean[] reverse = new boolean[size];
+        String[] categories = new String[size];
+        for (int i = 0; i < size; i++) {
+            DepressionQuestionDTO q = questions.get(i);
+            ids[i] = q.getId();
+            weights[i] = q.getWeight() != null ? q.getWeight() : 1;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (DepressionQuestionOption option : q.getOptions()) {
+                if (option.getOptionValue() != null) {
+                    min = Math.min(min, option.getOptionValue());
+                    max = Math.max(max, option.getOptionValue());
+                }
+            }
+            minValues[i] = min <= max ? min : QuestionBank.DEFAULT_MIN_VALUE;
+            maxValues[i] = min <= max ? max : QuestionBank.DEFAULT_MAX_VALUE;
+            reverse[i] = Boolean.TRUE.equals(q.getReverseScored());
+            categories[i] = q.getCategory();
+        }
+        return new QuestionBank(testKey, ids, weights, minValues, maxValues, reverse, categories);
+    }
+
+    public record Snapshot(long version,
+                           List<DepressionQuestionDTO> allQuestions,
+                           List<DepressionQuestionDTO> activeQuestions,
+                           Map<String, List<DepressionQuestionDTO>> activeByTestKey,
+                           QuestionBank activeBank,
+                           Map<String, QuestionBank> banksByTestKey,
+                           Map<Long, DepressionQuestionDTO> questionsById) {
+        static Snapshot empty() {
+            return new Snapshot(0L, List.of(), List.of(), Map.of(), toBank(null, List.of()), Map.of(), Map.of());
+        }
+
+        // Bank của testKey; testKey rỗng hoặc không tồn tại thì dùng toàn bộ câu hỏi đang active
+        public QuestionBank bank(String testKey) {
+            QuestionBank bank = testKey != null ? banksByTestKey.get(testKey) : null;
+            return bank != null ? bank : activeBank;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.shop.backend.service;
+
+// Câu hỏi đang được bài test đã lưu tham chiếu tới nên không thể xóa (HTTP 409)
+public class QuestionInUseException extends RuntimeException {
+    public QuestionInUseException(String message) {
+        super(message);
+    }
+}
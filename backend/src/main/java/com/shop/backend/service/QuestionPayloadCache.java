@@ -0,0 +1,97 @@
+package com.shop.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.dto.depression.DepressionQuestionDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+// Payload JSON của /api/depression-test/questions được render sẵn một lần cho mỗi version của QuestionCatalog.
+// Mỗi payload giữ cả bản gốc và bản gzip, kèm strong ETag suy ra từ version của catalog.
+@Component
+public class QuestionPayloadCache {
+    // Key dùng cho danh sách toàn bộ câu hỏi đang active (không truyền ?type=)
+    private static final String ALL_ACTIVE = "";
+
+    @Autowired
+    private QuestionCatalog questionCatalog;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private volatile Rendered rendered = new Rendered(-1L, new ConcurrentHashMap<>());
+
+    public Payload get(String testKey) {
+        QuestionCatalog.Snapshot snapshot = questionCatalog.snapshot();
+        Rendered current = rendered;
+        if (current.version() != snapshot.version()) {
+            current = new Rendered(snapshot.version(), new ConcurrentHashMap<>());
+            rendered = current;
+        }
+        String key = testKey == null || testKey.isEmpty() ? ALL_ACTIVE : testKey;
+        List<DepressionQuestionDTO> questions;
+        if (ALL_ACTIVE.equals(key)) {
+            questions = snapshot.activeQuestions();
+        } else {
+            questions = snapshot.activeByTestKey().get(key);
+            if (questions == null) {
+                // testKey không tồn tại: dùng chung payload rỗng để map không phình theo input của client
+                key = "\u0000empty";
+                questions = List.of();
+            }
+        }
+        long version = snapshot.version();
+        List<DepressionQuestionDTO> source = questions;
+        return current.payloads().computeIfAbsent(key, k -> render(version, source));
+    }
+
+    private Payload render(long version, List<DepressionQuestionDTO> questions) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(questions);
+            String tag = Long.toString(version, 36);
+            return new Payload(body, gzip(body), "\"q" + tag + "\"", "\"q" + tag + "-gz\"");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Không thể render danh sách câu hỏi", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private record Rendered(long version, Map<String, Payload> payloads) {
+    }
+
+    public record Payload(byte[] body, byte[] gzipBody, String etag, String gzipEtag) {
+        // So khớp header If-None-Match (hỗ trợ danh sách, "*" và tiền tố W/) với cả hai biểu diễn
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipEtag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
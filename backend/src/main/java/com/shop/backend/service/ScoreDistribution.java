@@ -0,0 +1,141 @@
+package com.shop.backend.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Phân bố totalScore theo loại test: mỗi loại một mảng đếm cố định, mỗi điểm số một ô.
+// Nạp một lần lúc khởi động bằng GROUP BY trên depression_test_results, sau đó cập nhật theo từng bài nộp;
+// percentile rank và histogram chỉ cộng vài trăm ô trong bộ nhớ.
+// Việc nạp chạy lúc khởi tạo bean: trước khi Tomcat nhận request và trước khi write-behind replay journal
+// (ApplicationReadyEvent), nên mỗi bài nộp được đếm đúng một lần, qua GROUP BY hoặc qua record().
+@Component
+public class ScoreDistribution {
+    private static final Logger logger = LoggerFactory.getLogger(ScoreDistribution.class);
+    // Điểm cao nhất của các bộ test hiện có là 126 (DASS-42); điểm lớn hơn dồn vào ô cuối
+    static final int MAX_TRACKED_SCORE = 255;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Map<String, AtomicLongArray> histograms = new ConcurrentHashMap<>();
+
+    // Nạp vào map mới rồi mới thay vào, không có lúc nào đọc thấy phân bố nạp dở
+    @PostConstruct
+    public void seed() {
+        Map<String, AtomicLongArray> seeded = new ConcurrentHashMap<>();
+        long[] total = {0};
+        jdbcTemplate.query(
+                "SELECT COALESCE(test_type, ''), total_score, COUNT(*) FROM depression_test_results GROUP BY test_type, total_score",
+                rs -> {
+                    seeded.computeIfAbsent(rs.getString(1), k -> new AtomicLongArray(MAX_TRACKED_SCORE + 1))
+                            .addAndGet(slot(rs.getInt(2)), rs.getLong(3));
+                    total[0] += rs.getLong(3);
+                });
+        histograms = seeded;
+        logger.info("[ScoreDistribution] Seeded {} results across {} test types", total[0], seeded.size());
+    }
+
+    public void record(String testType, int totalScore) {
+        histogram(testType).incrementAndGet(slot(totalScore));
+    }
+
+    public void remove(String testType, int totalScore) {
+        histogram(testType).decrementAndGet(slot(totalScore));
+    }
+
+    // Xóa bị rollback thì bài vẫn còn trong bảng, nên chỉ trừ sau commit
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTestResultDeleted(TestResultDeletedEvent event) {
+        remove(event.testType(), event.totalScore());
+    }
+
+    // Phần trăm bài test cùng loại có điểm thấp hơn (điểm bằng nhau tính một nửa); null khi chưa có dữ liệu
+    public Double percentileRank(String testType, int totalScore) {
+        AtomicLongArray counts = histograms.get(key(testType));
+        if (counts == null) {
+            return null;
+        }
+        int target = slot(totalScore);
+        long below = 0;
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i);
+            if (i < target) {
+                below += count;
+            }
+            total += count;
+        }
+        if (total <= 0) {
+            return null;
+        }
+        double rank = (below + 0.5 * counts.get(target)) / total * 100;
+        return Math.round(rank * 10) / 10.0;
+    }
+
+    // Histogram theo độ rộng bucket; testType null thì trả về mọi loại test
+    public Map<String, Object> histogram(String testType, int bucketWidth) {
+        int width = Math.max(1, bucketWidth);
+        Map<String, Object> result = new TreeMap<>();
+        histograms.forEach((key, counts) -> {
+            if (testType == null || key.equals(key(testType))) {
+                result.put(key, toBuckets(counts, width));
+            }
+        });
+        return result;
+    }
+
+    private static Map<String, Object> toBuckets(AtomicLongArray counts, int width) {
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        long total = 0;
+        int maxNonEmpty = -1;
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+            if (snapshot[i] != 0) {
+                maxNonEmpty = i;
+            }
+        }
+        for (int from = 0; from <= maxNonEmpty; from += width) {
+            long count = 0;
+            int to = Math.min(from + width - 1, snapshot.length - 1);
+            for (int i = from; i <= to; i++) {
+                count += snapshot[i];
+            }
+            Map<String, Object> bucket = new LinkedHashMap<>();
+            bucket.put("from", from);
+            bucket.put("to", to);
+            bucket.put("count", count);
+            buckets.add(bucket);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("total", total);
+        result.put("buckets", buckets);
+        return result;
+    }
+
+    private AtomicLongArray histogram(String testType) {
+        return histograms.computeIfAbsent(key(testType), k -> new AtomicLongArray(MAX_TRACKED_SCORE + 1));
+    }
+
+    private static String key(String testType) {
+        return testType != null ? testType : "";
+    }
+
+    private static int slot(int totalScore) {
+        return Math.max(0, Math.min(totalScore, MAX_TRACKED_SCORE));
+    }
+}
@@ -0,0 +1,6 @@
+package com.shop.backend.service;
+
+// Bài nộp đã được kiểm tra và chấm điểm, chưa chạm vào database.
+// values theo thứ tự catalog của bank, -1 là câu chưa trả lời.
+public record ScoredSubmission(String testType, QuestionBank bank, int[] values, ScoringEngine.ScoreResult score) {
+}
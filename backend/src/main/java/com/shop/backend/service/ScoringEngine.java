@@ -0,0 +1,253 @@
+package com.shop.backend.service;
+
+import com.shop.backend.model.DepressionTestResult.SeverityLevel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Chấm điểm theo bảng cho từng bộ test (DASS-21/42, BDI, RADS, EPDS, SAS).
+// Luật của mỗi testKey được biên dịch một lần thành mảng nguyên thủy (trọng số, subscale, câu đảo, ngưỡng)
+// và biên dịch lại khi QuestionCatalog công bố version mới; vòng lặp chấm điểm không cấp phát bộ nhớ.
+@Component
+public class ScoringEngine {
+    private static final SeverityLevel[] SEVERITIES = SeverityLevel.values();
+    private static final int MINIMAL = SeverityLevel.MINIMAL.ordinal();
+    private static final int MILD = SeverityLevel.MILD.ordinal();
+    private static final int MODERATE = SeverityLevel.MODERATE.ordinal();
+    private static final int SEVERE = SeverityLevel.SEVERE.ordinal();
+
+    // Subscale của DASS theo thứ tự: trầm cảm, lo âu, stress
+    private static final int NO_SUBSCALE = -1;
+    private static final String[] DASS_SUBSCALE_NAMES = {"Trầm cảm", "Lo âu", "Stress"};
+    private static final String[] DASS_BAND_LABELS = {"bình thường", "nhẹ", "vừa", "nặng", "rất nặng"};
+    private static final int[] DASS_BAND_SEVERITY = {MINIMAL, MILD, MODERATE, SEVERE, SEVERE};
+
+    // Thang mặc định (giữ nguyên hành vi cũ cho testKey không xác định)
+    private static final Ladder DEFAULT_LADDER = new Ladder(
+            new int[]{4, 9, 14, 19},
+            new int[]{MINIMAL, MILD, MODERATE, SEVERE, SEVERE},
+            new String[]{"Không có dấu hiệu trầm cảm", "Trầm cảm nhẹ", "Trầm cảm vừa", "Trầm cảm nặng vừa", "Trầm cảm rất nặng"});
+
+    private static final String[] DEPRESSION_DIAGNOSES = {"Trầm cảm tối thiểu", "Trầm cảm nhẹ", "Trầm cảm vừa", "Trầm cảm nặng"};
+    private static final int[] FOUR_BAND_SEVERITY = {MINIMAL, MILD, MODERATE, SEVERE};
+
+    // Ngưỡng DASS áp dụng trên điểm subscale đã nhân hệ số (DASS-21 nhân 2 để quy về thang DASS-42)
+    private static final Ladder[] DASS_LADDERS = {
+            new Ladder(new int[]{9, 13, 20, 27}, DASS_BAND_SEVERITY, DASS_BAND_LABELS),
+            new Ladder(new int[]{7, 9, 14, 19}, DASS_BAND_SEVERITY, DASS_BAND_LABELS),
+            new Ladder(new int[]{14, 18, 25, 33}, DASS_BAND_SEVERITY, DASS_BAND_LABELS)
+    };
+
+    private static final Instrument[] INSTRUMENTS = {
+            new Instrument("DASS-21", 2, DEFAULT_LADDER, DASS_LADDERS),
+            new Instrument("DASS-42", 1, DEFAULT_LADDER, DASS_LADDERS),
+            new Instrument("BDI", 1, new Ladder(new int[]{13, 19, 28}, FOUR_BAND_SEVERITY, DEPRESSION_DIAGNOSES), null),
+            // RADS: 77 là điểm cắt lâm sàng của thang 30-120
+            new Instrument("RADS", 1, new Ladder(new int[]{63, 76, 87}, FOUR_BAND_SEVERITY, DEPRESSION_DIAGNOSES), null),
+            new Instrument("EPDS", 1, new Ladder(new int[]{9, 12, 19}, FOUR_BAND_SEVERITY, new String[]{
+                    "Không có dấu hiệu trầm cảm sau sinh", "Có thể có trầm cảm sau sinh",
+                    "Nhiều khả năng trầm cảm sau sinh", "Trầm cảm sau sinh nặng"}), null),
+            // SAS (Zung): ngưỡng chỉ số 45/60/75 quy về điểm thô (chỉ số = điểm thô x 1.25)
+            new Instrument("SAS", 1, new Ladder(new int[]{35, 47, 59}, FOUR_BAND_SEVERITY, new String[]{
+                    "Lo âu trong giới hạn bình thường", "Lo âu nhẹ", "Lo âu vừa", "Lo âu nặng"}), null)
+    };
+    private static final Instrument DEFAULT_INSTRUMENT = new Instrument("", 1, DEFAULT_LADDER, null);
+
+    @Autowired
+    private QuestionCatalog questionCatalog;
+
+    private volatile Compiled compiled = new Compiled(-1L, Map.of(), null);
+
+    public InstrumentRules rulesFor(String testKey) {
+        Compiled current = current();
+        InstrumentRules rules = testKey != null ? current.byTestKey().get(testKey) : null;
+        return rules != null ? rules : current.fallback();
+    }
+
+    // values theo thứ tự catalog của rules.bank(), -1 là câu chưa trả lời
+    public ScoreResult score(InstrumentRules rules, int[] values) {
+        final int[] weights = rules.weights;
+        final int[] subscales = rules.subscales;
+        final boolean[] reverse = rules.reverse;
+        final int[] reverseBase = rules.reverseBase;
+        int total = 0;
+        int s0 = 0;
+        int s1 = 0;
+        int s2 = 0;
+        for (int i = 0; i < values.length; i++) {
+            int value = values[i];
+            if (value < 0) {
+                continue;
+            }
+            if (reverse[i]) {
+                value = reverseBase[i] - value;
+            }
+            int scored = value * weights[i];
+            total += scored;
+            switch (subscales[i]) {
+                case 0 -> s0 += scored;
+                case 1 -> s1 += scored;
+                case 2 -> s2 += scored;
+                default -> { }
+            }
+        }
+        if (!rules.useSubscales) {
+            int band = rules.totalLadder.band(total);
+            return new ScoreResult(total, SEVERITIES[rules.totalLadder.severities[band]], rules.totalLadder.labels[band]);
+        }
+        Ladder[] ladders = rules.subscaleLadders;
+        int multiplier = rules.multiplier;
+        int b0 = ladders[0].band(s0 * multiplier);
+        int b1 = ladders[1].band(s1 * multiplier);
+        int b2 = ladders[2].band(s2 * multiplier);
+        int severity = Math.max(ladders[0].severities[b0], Math.max(ladders[1].severities[b1], ladders[2].severities[b2]));
+        return new ScoreResult(total, SEVERITIES[severity], rules.combinedDiagnoses[(b0 * 5 + b1) * 5 + b2]);
+    }
+
+    private Compiled current() {
+        QuestionCatalog.Snapshot snapshot = questionCatalog.snapshot();
+        Compiled current = compiled;
+        if (current.version() == snapshot.version()) {
+            return current;
+        }
+        synchronized (this) {
+            current = compiled;
+            if (current.version() != snapshot.version()) {
+                current = compile(snapshot);
+                compiled = current;
+            }
+            return current;
+        }
+    }
+
+    private static Compiled compile(QuestionCatalog.Snapshot snapshot) {
+        Map<String, InstrumentRules> byTestKey = new HashMap<>();
+        snapshot.banksByTestKey().forEach((testKey, bank) -> byTestKey.put(testKey, compile(instrumentFor(testKey), bank)));
+        return new Compiled(snapshot.version(), Map.copyOf(byTestKey), compile(DEFAULT_INSTRUMENT, snapshot.activeBank()));
+    }
+
+    private static InstrumentRules compile(Instrument instrument, QuestionBank bank) {
+        int size = bank.size();
+        int[] weights = new int[size];
+        int[] subscales = new int[size];
+        boolean[] reverse = new boolean[size];
+        int[] reverseBase = new int[size];
+        boolean anySubscale = false;
+        for (int i = 0; i < size; i++) {
+            weights[i] = bank.weightAt(i);
+            reverse[i] = bank.isReverseScoredAt(i);
+            reverseBase[i] = bank.minValueAt(i) + bank.maxValueAt(i);
+            subscales[i] = instrument.subscaleLadders != null ? dassSubscale(bank.categoryAt(i)) : NO_SUBSCALE;
+            anySubscale |= subscales[i] != NO_SUBSCALE;
+        }
+        String[] combined = null;
+        if (anySubscale) {
+            combined = new String[125];
+            for (int d = 0; d < 5; d++) {
+                for (int a = 0; a < 5; a++) {
+                    for (int s = 0; s < 5; s++) {
+                        combined[(d * 5 + a) * 5 + s] = DASS_SUBSCALE_NAMES[0] + ": " + DASS_BAND_LABELS[d] + ", "
+                                + DASS_SUBSCALE_NAMES[1] + ": " + DASS_BAND_LABELS[a] + ", "
+                                + DASS_SUBSCALE_NAMES[2] + ": " + DASS_BAND_LABELS[s];
+                    }
+                }
+            }
+        }
+        return new InstrumentRules(bank, weights, subscales, reverse, reverseBase, instrument.multiplier,
+                instrument.totalLadder, instrument.subscaleLadders, anySubscale, combined);
+    }
+
+    private static Instrument instrumentFor(String testKey) {
+        String key = testKey.toUpperCase(Locale.ROOT);
+        for (Instrument instrument : INSTRUMENTS) {
+            if (key.startsWith(instrument.keyPrefix)) {
+                return instrument;
+            }
+        }
+        return DEFAULT_INSTRUMENT;
+    }
+
+    // Nhận diện subscale DASS từ category (chấp nhận tiếng Việt có/không dấu và tiếng Anh)
+    static int dassSubscale(String category) {
+        if (category == null) {
+            return NO_SUBSCALE;
+        }
+        String normalized = VietnameseText.fold(category);
+        if (normalized.contains("depress") || normalized.contains("tram cam")) {
+            return 0;
+        }
+        if (normalized.contains("anx") || normalized.contains("lo au")) {
+            return 1;
+        }
+        if (normalized.contains("stress") || normalized.contains("cang thang")) {
+            return 2;
+        }
+        return NO_SUBSCALE;
+    }
+
+    public record ScoreResult(int totalScore, SeverityLevel severityLevel, String diagnosis) {
+    }
+
+    // Luật đã biên dịch cho một testKey ở một version của catalog
+    public static final class InstrumentRules {
+        private final QuestionBank bank;
+        private final int[] weights;
+        private final int[] subscales;
+        private final boolean[] reverse;
+        private final int[] reverseBase;
+        private final int multiplier;
+        private final Ladder totalLadder;
+        private final Ladder[] subscaleLadders;
+        private final boolean useSubscales;
+        private final String[] combinedDiagnoses;
+
+        private InstrumentRules(QuestionBank bank, int[] weights, int[] subscales, boolean[] reverse, int[] reverseBase,
+                                int multiplier, Ladder totalLadder, Ladder[] subscaleLadders, boolean useSubscales,
+                                String[] combinedDiagnoses) {
+            this.bank = bank;
+            this.weights = weights;
+            this.subscales = subscales;
+            this.reverse = reverse;
+            this.reverseBase = reverseBase;
+            this.multiplier = multiplier;
+            this.totalLadder = totalLadder;
+            this.subscaleLadders = subscaleLadders;
+            this.useSubscales = useSubscales;
+            this.combinedDiagnoses = combinedDiagnoses;
+        }
+
+        public QuestionBank bank() {
+            return bank;
+        }
+    }
+
+    // Bậc thang ngưỡng: upperBounds[i] là điểm cao nhất (bao gồm) của bậc i, bậc cuối không giới hạn
+    private static final class Ladder {
+        private final int[] upperBounds;
+        private final int[] severities;
+        private final String[] labels;
+
+        private Ladder(int[] upperBounds, int[] severities, String[] labels) {
+            this.upperBounds = upperBounds;
+            this.severities = severities;
+            this.labels = labels;
+        }
+
+        private int band(int score) {
+            int band = 0;
+            while (band < upperBounds.length && score > upperBounds[band]) {
+                band++;
+            }
+            return band;
+        }
+    }
+
+    private record Instrument(String keyPrefix, int multiplier, Ladder totalLadder, Ladder[] subscaleLadders) {
+    }
+
+    private record Compiled(long version, Map<String, InstrumentRules> byTestKey, InstrumentRules fallback) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.shop.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shop.backend.dto.depression.DepressionTestResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Kết quả các lần nộp bài có Idempotency-Key, theo (userId, key).
+// Lần gửi lại cùng key nhận đúng response cũ mà không chạm vào đường ghi; nếu lần đầu còn đang xử lý
+// thì chờ lần đó xong. Cache có giới hạn và tự hết hạn; sau khi hết hạn, ràng buộc unique trong database chặn bản trùng.
+@Component
+public class SubmissionIdempotencyCache {
+    public static final int MAX_KEY_LENGTH = 64;
+
+    private final Cache<String, CompletableFuture<DepressionTestResponse>> cache;
+    private final Counter replayCounter;
+
+    @Value("${depression-test.idempotency.wait-seconds:30}")
+    private long waitSeconds;
+
+    public SubmissionIdempotencyCache(
+            @Value("${depression-test.idempotency.ttl-minutes:1440}") long ttlMinutes,
+            @Value("${depression-test.idempotency.maximum-size:100000}") long maximumSize,
+            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .maximumSize(maximumSize)
+                .build();
+        this.replayCounter = meterRegistry.counter("depression_test.idempotency.replayed");
+    }
+
+    public static boolean isValidKey(String key) {
+        if (key == null || key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < 0x21 || c > 0x7e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Chạy action đúng một lần cho mỗi (userId, key) còn trong cache; lỗi không được ghi nhớ để client có thể thử lại
+    public DepressionTestResponse execute(long userId, String key, Supplier<DepressionTestResponse> action) {
+        String cacheKey = userId + ":" + key;
+        CompletableFuture<DepressionTestResponse> mine = new CompletableFuture<>();
+        CompletableFuture<DepressionTestResponse> existing = cache.asMap().putIfAbsent(cacheKey, mine);
+        if (existing != null) {
+            replayCounter.increment();
+            return await(existing);
+        }
+        try {
+            DepressionTestResponse response = action.get();
+            mine.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            cache.asMap().remove(cacheKey, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private DepressionTestResponse await(CompletableFuture<DepressionTestResponse> future) {
+        try {
+            return future.get(waitSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new SubmissionInProgressException("Bài nộp với Idempotency-Key này vẫn đang được xử lý, vui lòng thử lại sau");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.shop.backend.service;
+
+// Lần nộp đầu tiên với cùng Idempotency-Key vẫn chưa xong sau thời gian chờ (HTTP 409)
+public class SubmissionInProgressException extends RuntimeException {
+    public SubmissionInProgressException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,153 @@
+package com.shop.backend.service;
+
+import com.shop.backend.model.DepressionTestResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Journal append-only cho các bài nộp đã nhận nhưng chưa commit xuống MySQL.
+// Dòng "A" ghi một bài nộp (fsync trước khi trả response), dòng "C" đánh dấu các sequence đã commit.
+// Khi mọi bài nộp đã commit, file được cắt về rỗng để không phình mãi.
+class SubmissionJournal {
+    private static final long COMPACT_THRESHOLD_BYTES = 1024 * 1024;
+
+    private final Path file;
+    private final FileChannel channel;
+    private long outstanding;
+
+    SubmissionJournal(Path file) throws IOException {
+        this.file = file;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // Đọc lại các bài nộp chưa có dấu commit (gọi một lần lúc khởi động)
+    synchronized List<PendingSubmission> readUncommitted() throws IOException {
+        Map<Long, PendingSubmission> pending = new LinkedHashMap<>();
+        Set<Long> committed = new HashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("A\t")) {
+                    PendingSubmission submission = decode(line);
+                    if (submission != null) {
+                        pending.put(submission.sequence(), submission);
+                    }
+                } else if (line.startsWith("C\t")) {
+                    for (String seq : line.substring(2).split(",")) {
+                        if (!seq.isEmpty()) {
+                            committed.add(Long.parseLong(seq));
+                        }
+                    }
+                }
+            }
+        }
+        committed.forEach(pending::remove);
+        outstanding = pending.size();
+        return new ArrayList<>(pending.values());
+    }
+
+    void append(PendingSubmission submission) throws IOException {
+        write(encode(submission));
+        // fsync ngoài lock để các request đồng thời có thể dùng chung một lần đẩy xuống đĩa
+        channel.force(false);
+    }
+
+    void markCommitted(List<PendingSubmission> submissions) throws IOException {
+        StringBuilder line = new StringBuilder("C\t");
+        for (int i = 0; i < submissions.size(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append(submissions.get(i).sequence());
+        }
+        line.append('\n');
+        synchronized (this) {
+            channel.write(ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8)));
+            outstanding -= submissions.size();
+            if (outstanding <= 0 && channel.size() > COMPACT_THRESHOLD_BYTES) {
+                channel.truncate(0);
+                outstanding = 0;
+            }
+        }
+    }
+
+    synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private synchronized void write(String line) throws IOException {
+        channel.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+        outstanding++;
+    }
+
+    private static String encode(PendingSubmission s) {
+        StringBuilder answers = new StringBuilder();
+        for (int i = 0; i < s.questionIds().length; i++) {
+            if (i > 0) {
+                answers.append(',');
+            }
+            answers.append(s.questionIds()[i]).append(':').append(s.answerValues()[i]);
+        }
+        return "A\t" + s.sequence()
+                + '\t' + s.userId()
+                + '\t' + text(s.testType())
+                + '\t' + s.totalScore()
+                + '\t' + s.severityLevel().name()
+                + '\t' + text(s.diagnosis())
+                + '\t' + text(s.recommendation())
+                + '\t' + s.testedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                + '\t' + answers
+                + '\t' + text(s.idempotencyKey())
+                + '\n';
+    }
+
+    // Dòng ghi dở lúc crash (thiếu trường) bị bỏ qua: bài nộp đó chưa được trả response cho client.
+    // Dòng 10 trường là định dạng cũ, chưa có Idempotency-Key.
+    private static PendingSubmission decode(String line) {
+        String[] f = line.split("\t", -1);
+        if (f.length != 10 && f.length != 11) {
+            return null;
+        }
+        try {
+            String[] pairs = f[9].isEmpty() ? new String[0] : f[9].split(",");
+            long[] questionIds = new long[pairs.length];
+            int[] values = new int[pairs.length];
+            for (int i = 0; i < pairs.length; i++) {
+                int colon = pairs[i].indexOf(':');
+                questionIds[i] = Long.parseLong(pairs[i].substring(0, colon));
+                values[i] = Integer.parseInt(pairs[i].substring(colon + 1));
+            }
+            LocalDateTime testedAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(f[8])), ZoneId.systemDefault());
+            return new PendingSubmission(Long.parseLong(f[1]), Long.parseLong(f[2]), untext(f[3]),
+                    Integer.parseInt(f[4]), DepressionTestResult.SeverityLevel.valueOf(f[5]), untext(f[6]),
+                    untext(f[7]), testedAt, questionIds, values, f.length == 11 ? untext(f[10]) : null);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String text(String value) {
+        return value == null ? "-" : Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String untext(String value) {
+        return "-".equals(value) ? null : new String(Base64.getDecoder().decode(value), StandardCharsets.UTF_8);
+    }
+}
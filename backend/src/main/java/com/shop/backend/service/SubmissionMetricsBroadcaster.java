@@ -0,0 +1,224 @@
+package com.shop.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Đẩy số bài nộp trực tiếp tới dashboard qua SSE. Khi kết nối nhận sự kiện "snapshot" (các phút gần đây),
+// sau đó mỗi chu kỳ nhận sự kiện "delta" chứa phần tăng thêm kể từ lần đẩy trước.
+// Dữ liệu đọc từ SubmissionMetricsRing nên số người xem không làm tăng truy vấn database.
+// Mỗi kết nối có hàng chờ riêng, các delta chưa gửi được gộp theo phút nên hàng chờ không phình ra;
+// mỗi kết nối chỉ chiếm tối đa một thread gửi, và kết nối gửi quá statistics.live.send-timeout-ms bị đóng.
+@Component
+public class SubmissionMetricsBroadcaster {
+    private static final Logger logger = LoggerFactory.getLogger(SubmissionMetricsBroadcaster.class);
+
+    private final SubmissionMetricsRing submissionMetricsRing;
+    private final long emitterTimeoutMillis;
+    private final int snapshotMinutes;
+    private final long sendTimeoutMillis;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    // Bộ đếm đã đẩy đi của các phút còn có thể thay đổi (phút hiện tại và phút trước)
+    private final Map<Long, long[]> lastSent = new HashMap<>();
+    private final ExecutorService sender;
+
+    public SubmissionMetricsBroadcaster(SubmissionMetricsRing submissionMetricsRing,
+                                        @Value("${statistics.live.emitter-timeout-ms:1800000}") long emitterTimeoutMillis,
+                                        @Value("${statistics.live.snapshot-minutes:30}") int snapshotMinutes,
+                                        @Value("${statistics.live.send-timeout-ms:10000}") long sendTimeoutMillis,
+                                        @Value("${statistics.live.sender-threads:2}") int senderThreads) {
+        this.submissionMetricsRing = submissionMetricsRing;
+        this.emitterTimeoutMillis = emitterTimeoutMillis;
+        this.snapshotMinutes = snapshotMinutes;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(Math.max(1, senderThreads), r -> {
+            Thread thread = new Thread(r, "live-metrics-sender-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        synchronized (this) {
+            // Đồng bộ lastSent với vòng đếm trước, để snapshot và delta kế tiếp cùng tính từ một mốc
+            long now = pushDeltas(submissionMetricsRing.currentMinute());
+            subscribers.add(subscriber);
+            subscriber.offerSnapshot(snapshot(now));
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedRateString = "${statistics.live.push-interval-ms:2000}")
+    public synchronized void pushDeltas() {
+        pushDeltas(submissionMetricsRing.currentMinute());
+        closeStalledSubscribers();
+    }
+
+    // Các phút cũ lấy thẳng từ vòng đếm (không còn thay đổi), hai phút cuối lấy đúng giá trị đã đẩy đi
+    private List<SubmissionMetricsRing.MinuteCounts> snapshot(long now) {
+        List<SubmissionMetricsRing.MinuteCounts> snapshot = new ArrayList<>();
+        for (long minute = now - Math.max(1, snapshotMinutes) + 1; minute <= now; minute++) {
+            long[] counts = minute >= now - 1 ? lastSent.get(minute) : submissionMetricsRing.countsOf(minute);
+            if (counts != null) {
+                snapshot.add(submissionMetricsRing.toMinuteCounts(minute, counts));
+            }
+        }
+        return snapshot;
+    }
+
+    private long pushDeltas(long now) {
+        Map<Long, long[]> deltas = new TreeMap<>();
+        for (long minute = now - 1; minute <= now; minute++) {
+            long[] counts = submissionMetricsRing.countsOf(minute);
+            if (counts == null) {
+                continue;
+            }
+            long[] previous = lastSent.get(minute);
+            long[] delta = new long[counts.length];
+            boolean changed = false;
+            for (int i = 0; i < counts.length; i++) {
+                delta[i] = counts[i] - (previous != null ? previous[i] : 0);
+                changed |= delta[i] != 0;
+            }
+            lastSent.put(minute, counts);
+            if (changed) {
+                deltas.put(minute, delta);
+            }
+        }
+        lastSent.keySet().removeIf(minute -> minute < now - 1);
+        if (!deltas.isEmpty()) {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offerDeltas(deltas);
+            }
+        }
+        return now;
+    }
+
+    // Không ngắt được một lần ghi socket đang treo, nhưng đóng emitter thì container đóng kết nối và lần ghi đó thất bại
+    private void closeStalledSubscribers() {
+        long deadline = System.currentTimeMillis() - sendTimeoutMillis;
+        for (Subscriber subscriber : subscribers) {
+            long startedAt = subscriber.sendStartedAt;
+            if (startedAt != 0 && startedAt < deadline) {
+                subscribers.remove(subscriber);
+                logger.debug("[LiveMetrics] Closing emitter stalled for more than {} ms", sendTimeoutMillis);
+                subscriber.emitter.completeWithError(new IOException("Live metrics send timed out"));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    // Trạng thái gửi của một kết nối: chỉ một tác vụ drain chạy cho mỗi kết nối, nên thứ tự snapshot -> delta được giữ
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private List<SubmissionMetricsRing.MinuteCounts> pendingSnapshot;
+        // Delta chưa gửi, cộng dồn theo phút: client chậm nhận một delta gộp thay vì cả chuỗi delta nhỏ
+        private final Map<Long, long[]> pendingDeltas = new TreeMap<>();
+        private boolean draining;
+        // Thời điểm bắt đầu lần gửi đang chạy, 0 khi không gửi
+        private volatile long sendStartedAt;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private synchronized void offerSnapshot(List<SubmissionMetricsRing.MinuteCounts> snapshot) {
+            pendingSnapshot = snapshot;
+            scheduleDrain();
+        }
+
+        private synchronized void offerDeltas(Map<Long, long[]> deltas) {
+            deltas.forEach((minute, delta) -> pendingDeltas.merge(minute, delta.clone(), (pending, added) -> {
+                for (int i = 0; i < pending.length; i++) {
+                    pending[i] += added[i];
+                }
+                return pending;
+            }));
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining) {
+                return;
+            }
+            draining = true;
+            try {
+                sender.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Đang tắt ứng dụng
+                draining = false;
+            }
+        }
+
+        private void drain() {
+            while (subscribers.contains(this)) {
+                String name;
+                Object data;
+                synchronized (this) {
+                    if (pendingSnapshot != null) {
+                        name = "snapshot";
+                        data = pendingSnapshot;
+                        pendingSnapshot = null;
+                    } else if (!pendingDeltas.isEmpty()) {
+                        List<SubmissionMetricsRing.MinuteCounts> deltas = new ArrayList<>(pendingDeltas.size());
+                        pendingDeltas.forEach((minute, delta) -> deltas.add(submissionMetricsRing.toMinuteCounts(minute, delta)));
+                        pendingDeltas.clear();
+                        name = "delta";
+                        data = deltas;
+                    } else {
+                        draining = false;
+                        return;
+                    }
+                }
+                if (!send(name, data)) {
+                    break;
+                }
+            }
+            synchronized (this) {
+                draining = false;
+            }
+        }
+
+        private boolean send(String name, Object data) {
+            sendStartedAt = System.currentTimeMillis();
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data));
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                // Client đã đóng kết nối, hoặc emitter vừa bị đóng vì gửi quá lâu
+                subscribers.remove(this);
+                logger.debug("[LiveMetrics] Dropping emitter: {}", e.getMessage());
+                return false;
+            } finally {
+                sendStartedAt = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.shop.backend.service;
+
+import com.shop.backend.model.DepressionTestResult.SeverityLevel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Số bài nộp theo phút x loại test x mức độ cho dashboard trực tiếp, chỉ nằm trong bộ nhớ.
+// Vòng N phút, mỗi ô là một bucket bất biến về phút; sang phút mới thì thay bucket bằng CAS,
+// bucket của phút hiện tại không bao giờ bị thay nên tăng đếm không cần khóa và không mất số.
+@Component
+public class SubmissionMetricsRing {
+    private static final SeverityLevel[] SEVERITIES = SeverityLevel.values();
+    private static final String OTHER_TEST_TYPE = "OTHER";
+    // Số loại test theo dõi riêng, loại thứ MAX_TEST_TYPES trở đi gộp vào OTHER
+    static final int MAX_TEST_TYPES = 32;
+
+    private final int minutes;
+    private final AtomicReferenceArray<Bucket> ring;
+    private final Map<String, Integer> testTypeIndex = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<String> testTypeNames = new AtomicReferenceArray<>(MAX_TEST_TYPES);
+    private final AtomicInteger nextTestTypeIndex = new AtomicInteger(1);
+
+    public SubmissionMetricsRing(@Value("${statistics.live.window-minutes:60}") int minutes) {
+        this.minutes = Math.max(2, minutes);
+        this.ring = new AtomicReferenceArray<>(this.minutes);
+        testTypeIndex.put(OTHER_TEST_TYPE, 0);
+        testTypeNames.set(0, OTHER_TEST_TYPE);
+    }
+
+    public void record(String testType, SeverityLevel severity) {
+        record(testType, severity, System.currentTimeMillis());
+    }
+
+    void record(String testType, SeverityLevel severity, long nowMillis) {
+        long minute = nowMillis / 60_000;
+        int slot = (int) (minute % minutes);
+        Bucket bucket = ring.get(slot);
+        while (bucket == null || bucket.minute != minute) {
+            if (bucket != null && bucket.minute > minute) {
+                // Đồng hồ lùi: bỏ qua thay vì ghi vào phút sai
+                return;
+            }
+            Bucket fresh = new Bucket(minute);
+            if (ring.compareAndSet(slot, bucket, fresh)) {
+                bucket = fresh;
+            } else {
+                bucket = ring.get(slot);
+            }
+        }
+        bucket.counts.incrementAndGet(indexOf(testType) * SEVERITIES.length + severity.ordinal());
+    }
+
+    private int indexOf(String testType) {
+        String key = testType == null || testType.isEmpty() ? OTHER_TEST_TYPE : testType;
+        Integer index = testTypeIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        if (nextTestTypeIndex.get() >= MAX_TEST_TYPES) {
+            return 0;
+        }
+        return testTypeIndex.computeIfAbsent(key, k -> {
+            int next = nextTestTypeIndex.getAndIncrement();
+            if (next >= MAX_TEST_TYPES) {
+                return 0;
+            }
+            testTypeNames.set(next, k);
+            return next;
+        });
+    }
+
+    public long currentMinute() {
+        return System.currentTimeMillis() / 60_000;
+    }
+
+    // Bộ đếm thô của một phút (null nếu phút đó đã rời khỏi vòng hoặc chưa có bài nộp)
+    long[] countsOf(long minute) {
+        Bucket bucket = ring.get((int) (minute % minutes));
+        if (bucket == null || bucket.minute != minute) {
+            return null;
+        }
+        long[] counts = new long[bucket.counts.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = bucket.counts.get(i);
+        }
+        return counts;
+    }
+
+    // Các phút gần nhất có bài nộp, cũ trước mới sau
+    public List<MinuteCounts> recent(int lastMinutes) {
+        long now = currentMinute();
+        int window = Math.min(Math.max(1, lastMinutes), minutes);
+        List<MinuteCounts> result = new ArrayList<>(window);
+        for (long minute = now - window + 1; minute <= now; minute++) {
+            long[] counts = countsOf(minute);
+            if (counts != null) {
+                result.add(toMinuteCounts(minute, counts));
+            }
+        }
+        return result;
+    }
+
+    // Chuyển mảng đếm (hoặc mảng chênh lệch) thành dạng testType -> severity -> count, bỏ các ô 0
+    MinuteCounts toMinuteCounts(long minute, long[] counts) {
+        Map<String, Map<String, Long>> byTestType = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            String testType = testTypeNames.get(i / SEVERITIES.length);
+            byTestType.computeIfAbsent(testType, k -> new LinkedHashMap<>())
+                    .put(SEVERITIES[i % SEVERITIES.length].name(), counts[i]);
+        }
+        LocalDateTime start = LocalDateTime.ofInstant(Instant.ofEpochMilli(minute * 60_000), ZoneId.systemDefault());
+        return new MinuteCounts(start, byTestType);
+    }
+
+    public record MinuteCounts(LocalDateTime minute, Map<String, Map<String, Long>> counts) {
+    }
+
+    private static final class Bucket {
+        private final long minute;
+        private final AtomicLongArray counts = new AtomicLongArray(MAX_TEST_TYPES * SEVERITIES.length);
+
+        private Bucket(long minute) {
+            this.minute = minute;
+        }
+    }
+}
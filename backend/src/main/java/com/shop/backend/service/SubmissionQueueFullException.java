@@ -0,0 +1,8 @@
+package com.shop.backend.service;
+
+// Hàng đợi write-behind đã đầy, client cần thử lại sau (HTTP 429)
+public class SubmissionQueueFullException extends RuntimeException {
+    public SubmissionQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,44 @@
+package com.shop.backend.service;
+
+import com.shop.backend.dto.depression.DepressionTestRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Kiểm tra bài nộp với bộ câu hỏi trong bộ nhớ trước khi mượn connection nào từ pool.
+// Tra cứu questionId -> vị trí/thang điểm qua mảng long[] đã sắp xếp của QuestionBank, không cấp phát thêm.
+@Component
+public class SubmissionValidator {
+
+    // Trả về vector đáp án theo thứ tự catalog, ném InvalidSubmissionException nếu bài nộp không hợp lệ
+    public int[] toAnswerVector(QuestionBank bank, String testType, List<DepressionTestRequest.QuestionAnswer> answers) {
+        if (testType != null && !testType.isEmpty() && bank.getTestKey() == null) {
+            throw new InvalidSubmissionException("Loại bài test không tồn tại: " + testType);
+        }
+        if (answers == null || answers.isEmpty()) {
+            throw new InvalidSubmissionException("Bài nộp không có câu trả lời");
+        }
+        if (answers.size() > bank.size()) {
+            throw new InvalidSubmissionException("Số câu trả lời vượt quá số câu hỏi của bài test");
+        }
+        int[] values = bank.newAnswerVector();
+        for (DepressionTestRequest.QuestionAnswer answer : answers) {
+            if (answer == null || answer.getQuestionId() == null || answer.getAnswerValue() == null) {
+                throw new InvalidSubmissionException("Câu trả lời thiếu questionId hoặc answerValue");
+            }
+            int index = bank.indexOf(answer.getQuestionId());
+            if (index < 0) {
+                throw new InvalidSubmissionException("Câu hỏi không thuộc bài test: " + answer.getQuestionId());
+            }
+            if (values[index] >= 0) {
+                throw new InvalidSubmissionException("Câu hỏi được trả lời nhiều lần: " + answer.getQuestionId());
+            }
+            int value = answer.getAnswerValue();
+            if (value < bank.minValueAt(index) || value > bank.maxValueAt(index)) {
+                throw new InvalidSubmissionException("Giá trị trả lời ngoài thang điểm cho câu hỏi: " + answer.getQuestionId());
+            }
+            values[index] = value;
+        }
+        return values;
+    }
+}
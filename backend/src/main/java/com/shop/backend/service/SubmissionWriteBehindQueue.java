@@ -0,0 +1,280 @@
+package com.shop.backend.service;
+
+import com.shop.backend.repository.DepressionTestResultRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Chế độ write-behind cho /api/depression-test/submit (tắt mặc định).
+// Request chỉ chấm điểm, ghi journal rồi trả kết quả ngay; một nhóm writer nhỏ gom nhiều bài nộp
+// vào một transaction. Hàng đợi có giới hạn cứng, đầy thì từ chối (429) thay vì giữ thread Tomcat.
+@Component
+public class SubmissionWriteBehindQueue {
+    private static final Logger logger = LoggerFactory.getLogger(SubmissionWriteBehindQueue.class);
+
+    @Autowired
+    private TestSubmissionWriter testSubmissionWriter;
+
+    @Autowired
+    private DepressionTestResultRepository testResultRepository;
+
+    @Autowired
+    private ScoreDistribution scoreDistribution;
+
+    @Value("${depression-test.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${depression-test.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${depression-test.write-behind.writer-threads:2}")
+    private int writerThreads;
+
+    @Value("${depression-test.write-behind.max-batch-size:200}")
+    private int maxBatchSize;
+
+    @Value("${depression-test.write-behind.journal-dir:./data/submission-journal}")
+    private String journalDir;
+
+    private final MeterRegistry meterRegistry;
+    private final BlockingQueue<PendingSubmission> queue = new LinkedBlockingQueue<>();
+    // Sequence được lưu vào cột unique submission_seq: điểm bắt đầu ngẫu nhiên trong 2^62 để các node
+    // và các lần khởi động không bao giờ chồng dải số lên nhau
+    private final AtomicLong sequence = new AtomicLong(ThreadLocalRandom.current().nextLong(1L << 62));
+    private final List<Thread> writers = new ArrayList<>();
+    private Thread replayer;
+    private Semaphore capacity;
+    private SubmissionJournal journal;
+    private volatile boolean running;
+
+    private Counter rejectedCounter;
+    private DistributionSummary batchSizeSummary;
+    private Timer commitTimer;
+
+    public SubmissionWriteBehindQueue(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean isEnabled() {
+        return enabled && running;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        journal = new SubmissionJournal(Path.of(journalDir, "submissions.journal"));
+        // Luôn replay journal, kể cả khi chế độ write-behind vừa bị tắt sau một lần crash.
+        // Database chưa sẵn sàng không được làm hỏng khởi động: journal được giữ nguyên và replay lại ở nền.
+        List<PendingSubmission> uncommitted = journal.readUncommitted();
+        if (!uncommitted.isEmpty() && !tryReplay(uncommitted)) {
+            replayer = new Thread(() -> replayUntilDone(uncommitted), "submission-replay");
+            replayer.setDaemon(true);
+            replayer.start();
+        }
+        if (!enabled) {
+            return;
+        }
+        capacity = new Semaphore(queueCapacity);
+        rejectedCounter = meterRegistry.counter("depression_test.write_behind.rejected");
+        batchSizeSummary = DistributionSummary.builder("depression_test.write_behind.batch.size")
+                .description("Số bài nộp trong mỗi transaction group-commit")
+                .register(meterRegistry);
+        commitTimer = Timer.builder("depression_test.write_behind.commit")
+                .description("Thời gian commit một batch bài nộp")
+                .register(meterRegistry);
+        Gauge.builder("depression_test.write_behind.queue.depth", queue, BlockingQueue::size)
+                .description("Số bài nộp đang chờ ghi")
+                .register(meterRegistry);
+
+        running = true;
+        for (int i = 0; i < writerThreads; i++) {
+            Thread writer = new Thread(this::drainLoop, "submission-writer-" + i);
+            writer.setDaemon(false);
+            writer.start();
+            writers.add(writer);
+        }
+        logger.info("[WriteBehind] Enabled with capacity {}, {} writer(s), batch size {}", queueCapacity, writerThreads, maxBatchSize);
+    }
+
+    // Nhận một bài nộp đã chấm điểm; chỉ trả về sau khi bài nộp đã nằm an toàn trong journal
+    public PendingSubmission submit(long userId, ScoredSubmission submission, String recommendation, String idempotencyKey) {
+        if (!capacity.tryAcquire()) {
+            rejectedCounter.increment();
+            throw new SubmissionQueueFullException("Hệ thống đang quá tải, vui lòng thử lại sau ít phút");
+        }
+        PendingSubmission pending = PendingSubmission.of(sequence.incrementAndGet(), userId, submission, recommendation,
+                LocalDateTime.now(), idempotencyKey);
+        try {
+            journal.append(pending);
+        } catch (IOException e) {
+            capacity.release();
+            throw new UncheckedIOException("Không ghi được journal bài nộp", e);
+        }
+        queue.add(pending);
+        return pending;
+    }
+
+    private void drainLoop() {
+        List<PendingSubmission> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingSubmission first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingSubmission> batch) throws InterruptedException {
+        long backoffMillis = 100;
+        while (true) {
+            try {
+                commitTimer.record(() -> testSubmissionWriter.persistAll(batch));
+                batchSizeSummary.record(batch.size());
+                acknowledge(batch);
+                return;
+            } catch (RuntimeException e) {
+                if (batch.size() > 1) {
+                    // Một bài nộp lỗi không được chặn cả batch: ghi lần lượt từng bài
+                    logger.warn("[WriteBehind] Batch of {} failed ({}), retrying individually", batch.size(), e.getMessage());
+                    for (PendingSubmission single : batch) {
+                        commit(List.of(single));
+                    }
+                    return;
+                }
+                if (isPermanentFailure(e)) {
+                    logger.error("[WriteBehind] Dropping submission {} of user {}: {}", batch.get(0).sequence(), batch.get(0).userId(), e.getMessage());
+                    acknowledge(batch);
+                    return;
+                }
+                logger.warn("[WriteBehind] Commit failed ({}), retrying in {} ms", e.getMessage(), backoffMillis);
+                Thread.sleep(backoffMillis);
+                backoffMillis = Math.min(backoffMillis * 2, 10_000);
+            }
+        }
+    }
+
+    // Vi phạm ràng buộc dữ liệu (user đã bị xóa, Idempotency-Key trùng) sẽ không tự hết khi thử lại
+    private static boolean isPermanentFailure(RuntimeException e) {
+        return e instanceof org.springframework.dao.DataIntegrityViolationException;
+    }
+
+    private void acknowledge(List<PendingSubmission> batch) {
+        try {
+            journal.markCommitted(batch);
+        } catch (IOException e) {
+            // Journal chỉ ảnh hưởng tới replay: tệ nhất là bài nộp bị ghi lại lần nữa khi khởi động
+            logger.error("[WriteBehind] Failed to mark {} submission(s) committed: {}", batch.size(), e.getMessage());
+        }
+        capacity.release(batch.size());
+    }
+
+    private void replayUntilDone(List<PendingSubmission> pending) {
+        long backoffMillis = 1000;
+        while (!tryReplay(pending)) {
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, 60_000);
+        }
+    }
+
+    // Replay theo từng chunk, mỗi chunk được đánh dấu "C" ngay sau khi commit nên lần thử sau chỉ làm phần còn lại.
+    // Trả về false nếu gặp lỗi tạm thời (database không truy cập được...)
+    private boolean tryReplay(List<PendingSubmission> pending) {
+        logger.warn("[WriteBehind] Replaying {} uncommitted submission(s) from journal", pending.size());
+        try {
+            while (!pending.isEmpty()) {
+                List<PendingSubmission> chunk = pending.subList(0, Math.min(pending.size(), maxBatchSize));
+                replayChunk(chunk);
+                journal.markCommitted(new ArrayList<>(chunk));
+                chunk.clear();
+            }
+            return true;
+        } catch (RuntimeException | IOException e) {
+            logger.error("[WriteBehind] Replay failed, {} submission(s) kept in journal: {}", pending.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void replayChunk(List<PendingSubmission> chunk) {
+        // Bài đã commit nhưng chưa kịp ghi dấu "C" trước khi crash: đã có dòng mang cùng submission_seq
+        List<Long> sequences = chunk.stream().map(PendingSubmission::sequence).toList();
+        Set<Long> existing = new HashSet<>(testResultRepository.findExistingSubmissionSeqs(sequences));
+        List<PendingSubmission> missing = chunk.stream().filter(s -> !existing.contains(s.sequence())).toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+        try {
+            testSubmissionWriter.persistAll(missing);
+            missing.forEach(this::recordReplayed);
+        } catch (org.springframework.dao.DataIntegrityViolationException e) {
+            // Ghi lần lượt để bỏ riêng bài vi phạm ràng buộc (Idempotency-Key trùng, user đã bị xóa)
+            for (PendingSubmission single : missing) {
+                try {
+                    testSubmissionWriter.persistAll(List.of(single));
+                    recordReplayed(single);
+                } catch (org.springframework.dao.DataIntegrityViolationException duplicate) {
+                    logger.warn("[WriteBehind] Skipping submission {} on replay: {}", single.sequence(), duplicate.getMessage());
+                }
+            }
+        }
+    }
+
+    // ScoreDistribution được nạp từ database trước khi replay, bài vừa ghi lại từ journal chưa nằm trong đó
+    private void recordReplayed(PendingSubmission submission) {
+        scoreDistribution.record(submission.testType(), submission.totalScore());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        // Ngừng nhận bài mới, để writer ghi nốt hàng đợi rồi mới đóng journal
+        running = false;
+        if (replayer != null) {
+            replayer.interrupt();
+            replayer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        for (Thread writer : writers) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.shop.backend.service;
+
+import com.shop.backend.repository.AdviceMessageRepository;
+import com.shop.backend.repository.TestDailyRollupRepository;
+import com.shop.backend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Thống kê hệ thống cho trang admin, giữ dưới dạng snapshot bất biến và làm mới theo lịch.
+// Mỗi lần làm mới: một truy vấn gộp có điều kiện cho users, một cho test_daily_rollup (không quét kết quả gốc),
+// một COUNT cho advice_messages; số câu hỏi lấy từ QuestionCatalog trong bộ nhớ.
+@Service
+public class SystemStatisticsService {
+    private static final Logger logger = LoggerFactory.getLogger(SystemStatisticsService.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestDailyRollupRepository rollupRepository;
+
+    @Autowired
+    private AdviceMessageRepository adviceMessageRepository;
+
+    @Autowired
+    private QuestionCatalog questionCatalog;
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+
+    // Trả về snapshot hiện tại kèm tuổi của nó; lần gọi đầu tiên tính ngay
+    public Map<String, Object> getStatistics() {
+        Snapshot snapshot = current.get();
+        if (snapshot == null) {
+            snapshot = refresh();
+        }
+        Map<String, Object> stats = new HashMap<>(snapshot.stats());
+        stats.put("snapshotAt", snapshot.computedAtMillis());
+        stats.put("snapshotAgeMillis", System.currentTimeMillis() - snapshot.computedAtMillis());
+        return stats;
+    }
+
+    @Scheduled(fixedDelayString = "${statistics.snapshot.refresh-ms:60000}", initialDelayString = "${statistics.snapshot.refresh-ms:60000}")
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // Giữ snapshot cũ, lần sau thử lại
+            logger.error("[SystemStatistics] Refresh failed: {}", e.getMessage());
+        }
+    }
+
+    public Snapshot refresh() {
+        Map<String, Object> stats = new HashMap<>();
+
+        Object[] users = firstRow(userRepository.countGroupedByRole(), 4);
+        stats.put("totalUsers", number(users[0]));
+        stats.put("studentCount", number(users[1]));
+        stats.put("expertCount", number(users[2]));
+        stats.put("adminCount", number(users[3]));
+
+        Object[] tests = firstRow(rollupRepository.sumBySeverity(), 5);
+        long totalTests = number(tests[0]);
+        long minimalTests = number(tests[1]);
+        long mildTests = number(tests[2]);
+        long moderateTests = number(tests[3]);
+        long severeTests = number(tests[4]);
+        stats.put("totalTests", totalTests);
+        stats.put("minimalTests", minimalTests);
+        stats.put("mildTests", mildTests);
+        stats.put("moderateTests", moderateTests);
+        stats.put("severeTests", severeTests);
+        if (totalTests > 0) {
+            stats.put("minimalPercentage", (double) minimalTests / totalTests * 100);
+            stats.put("mildPercentage", (double) mildTests / totalTests * 100);
+            stats.put("moderatePercentage", (double) moderateTests / totalTests * 100);
+            stats.put("severePercentage", (double) severeTests / totalTests * 100);
+        }
+
+        stats.put("totalQuestions", (long) questionCatalog.getAllQuestions().size());
+        stats.put("activeQuestions", (long) questionCatalog.getActiveQuestions().size());
+
+        stats.put("totalAdvices", adviceMessageRepository.count());
+
+        Snapshot snapshot = new Snapshot(Collections.unmodifiableMap(stats), System.currentTimeMillis());
+        current.set(snapshot);
+        return snapshot;
+    }
+
+    private static Object[] firstRow(List<Object[]> rows, int width) {
+        return rows.isEmpty() ? new Object[width] : rows.get(0);
+    }
+
+    // SUM trên bảng rỗng trả về NULL
+    private static long number(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
+    public record Snapshot(Map<String, Object> stats, long computedAtMillis) {
+    }
+}
@@ -0,0 +1,103 @@
+package com.shop.backend.service;
+
+import com.shop.backend.dto.depression.AnswerDetailDTO;
+import com.shop.backend.dto.depression.DepressionQuestionDTO;
+import com.shop.backend.model.DepressionTestAnswer;
+import com.shop.backend.repository.DepressionTestAnswerRepository;
+import com.shop.backend.repository.DepressionTestResultRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Đọc đáp án chi tiết của một hoặc nhiều bài test bất kể được lưu dạng nén hay từng dòng.
+// Nội dung câu hỏi lấy từ QuestionCatalog nên không phải nạp DepressionQuestion cho từng đáp án.
+@Service
+public class TestAnswerReader {
+
+    @Autowired
+    private DepressionTestResultRepository testResultRepository;
+
+    @Autowired
+    private DepressionTestAnswerRepository testAnswerRepository;
+
+    @Autowired
+    private AnswerLayoutRegistry answerLayoutRegistry;
+
+    @Autowired
+    private QuestionCatalog questionCatalog;
+
+    public static final int MAX_BATCH_SIZE = 200;
+
+    @Transactional(readOnly = true)
+    public List<AnswerDetailDTO> getAnswerDetails(Long testResultId) {
+        List<Object[]> packed = testResultRepository.findPackedAnswersById(testResultId);
+        if (!packed.isEmpty() && packed.get(0)[1] != null) {
+            return decode((Long) packed.get(0)[0], (byte[]) packed.get(0)[1]);
+        }
+        List<DepressionTestAnswer> answers = testAnswerRepository.findByTestResultId(testResultId);
+        List<AnswerDetailDTO> result = new ArrayList<>(answers.size());
+        for (DepressionTestAnswer answer : answers) {
+            result.add(toDetail(answer.getQuestion().getId(), answer.getAnswerValue()));
+        }
+        return result;
+    }
+
+    // Nhiều bài test một lúc với đúng hai câu lệnh (dạng nén, rồi dạng dòng cho phần còn lại), theo thứ tự id truyền vào.
+    // Bài test không tồn tại hoặc không có đáp án nhận danh sách rỗng.
+    @Transactional(readOnly = true)
+    public Map<Long, List<AnswerDetailDTO>> getAnswerDetails(Collection<Long> testResultIds) {
+        Set<Long> ids = new LinkedHashSet<>(testResultIds);
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Tối đa " + MAX_BATCH_SIZE + " bài test mỗi lần");
+        }
+        Map<Long, List<AnswerDetailDTO>> details = new LinkedHashMap<>();
+        ids.forEach(id -> details.put(id, new ArrayList<>()));
+        if (ids.isEmpty()) {
+            return details;
+        }
+
+        Set<Long> unpacked = new LinkedHashSet<>(ids);
+        for (Object[] row : testResultRepository.findPackedAnswersByIdIn(ids)) {
+            if (row[2] != null) {
+                Long id = (Long) row[0];
+                details.put(id, decode((Long) row[1], (byte[]) row[2]));
+                unpacked.remove(id);
+            }
+        }
+        if (!unpacked.isEmpty()) {
+            for (Object[] row : testAnswerRepository.findAnswerValuesByTestResultIds(unpacked)) {
+                details.get((Long) row[0]).add(toDetail((Long) row[1], (Integer) row[2]));
+            }
+        }
+        return details;
+    }
+
+    private List<AnswerDetailDTO> decode(long layoutId, byte[] packedAnswers) {
+        long[] questionIds = answerLayoutRegistry.questionIds(layoutId);
+        int[] values = PackedAnswers.unpack(packedAnswers);
+        List<AnswerDetailDTO> result = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length && i < questionIds.length; i++) {
+            if (values[i] >= 0) {
+                result.add(toDetail(questionIds[i], values[i]));
+            }
+        }
+        return result;
+    }
+
+    private AnswerDetailDTO toDetail(Long questionId, Integer answerValue) {
+        DepressionQuestionDTO question = questionCatalog.getQuestion(questionId);
+        AnswerDetailDTO dto = new AnswerDetailDTO();
+        dto.setQuestionId(questionId);
+        dto.setQuestionText(question != null ? question.getQuestionText() : null);
+        dto.setAnswerValue(answerValue);
+        return dto;
+    }
+}
@@ -0,0 +1,70 @@
+package com.shop.backend.service;
+
+import com.shop.backend.dto.depression.DepressionTestRequest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Bài làm dở của một học sinh: đáp án nén theo thứ tự của bank (xem PackedAnswers), không giữ entity nào.
+// Bất biến; mỗi lần autosave tạo một bản mới thay thế bản cũ trong TestDraftStore.
+public record TestDraft(String draftId,
+                        String testType,
+                        QuestionBank bank,
+                        byte[] packedValues,
+                        LocalDateTime startedAt,
+                        LocalDateTime updatedAt) {
+
+    // Ước lượng số byte chiếm dụng, dùng cho giới hạn bộ nhớ của store
+    int weight() {
+        return 128 + packedValues.length + (testType != null ? testType.length() * 2 : 0);
+    }
+
+    public int answeredCount() {
+        int count = 0;
+        for (byte value : packedValues) {
+            if (value != (byte) 0xFF) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Đáp án theo thứ tự của target; catalog đổi version giữa chừng thì ánh xạ lại theo questionId
+    int[] valuesIn(QuestionBank target) {
+        int[] values = PackedAnswers.unpack(packedValues);
+        if (target == bank) {
+            return values;
+        }
+        int[] mapped = target.newAnswerVector();
+        for (int i = 0; i < values.length; i++) {
+            int index = target.indexOf(bank.questionIdAt(i));
+            if (values[i] >= 0 && index >= 0) {
+                mapped[index] = values[i];
+            }
+        }
+        return mapped;
+    }
+
+    public List<DepressionTestRequest.QuestionAnswer> answers() {
+        int[] values = PackedAnswers.unpack(packedValues);
+        List<DepressionTestRequest.QuestionAnswer> answers = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] >= 0) {
+                DepressionTestRequest.QuestionAnswer answer = new DepressionTestRequest.QuestionAnswer();
+                answer.setQuestionId(bank.questionIdAt(i));
+                answer.setAnswerValue(values[i]);
+                answers.add(answer);
+            }
+        }
+        return answers;
+    }
+
+    // Chuyển thành request như client tự gửi lên /submit
+    public DepressionTestRequest toRequest() {
+        DepressionTestRequest request = new DepressionTestRequest();
+        request.setTestType(testType);
+        request.setAnswers(answers());
+        return request;
+    }
+}
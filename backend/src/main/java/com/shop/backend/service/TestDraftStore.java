@@ -0,0 +1,69 @@
+package com.shop.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+// Bài làm dở theo userId, chỉ nằm trong bộ nhớ. Giới hạn theo tổng số byte ước lượng
+// và tự hết hạn sau một khoảng không autosave; mất bản nháp khi restart là chấp nhận được.
+@Component
+public class TestDraftStore {
+    private final Cache<Long, TestDraft> drafts;
+    private final Duration ttl;
+
+    public TestDraftStore(
+            @Value("${depression-test.draft.ttl-minutes:720}") long ttlMinutes,
+            @Value("${depression-test.draft.max-memory-bytes:33554432}") long maxMemoryBytes) {
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.drafts = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(maxMemoryBytes)
+                .weigher((Long userId, TestDraft draft) -> draft.weight())
+                .build();
+    }
+
+    public TestDraft get(long userId) {
+        return drafts.getIfPresent(userId);
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    // Ghép các câu vừa trả lời (update theo thứ tự bank, -1 = không đổi) vào bản nháp hiện có.
+    // Đổi sang bài test khác thì bắt đầu bản nháp mới.
+    public TestDraft merge(long userId, String testType, QuestionBank bank, int[] update) {
+        return drafts.asMap().compute(userId, (key, existing) -> {
+            LocalDateTime now = LocalDateTime.now();
+            boolean sameTest = existing != null && Objects.equals(existing.testType(), testType);
+            int[] values = sameTest ? existing.valuesIn(bank) : bank.newAnswerVector();
+            for (int i = 0; i < update.length; i++) {
+                if (update[i] >= 0) {
+                    values[i] = update[i];
+                }
+            }
+            return new TestDraft(
+                    sameTest ? existing.draftId() : UUID.randomUUID().toString(),
+                    testType,
+                    bank,
+                    PackedAnswers.pack(values),
+                    sameTest ? existing.startedAt() : now,
+                    now);
+        });
+    }
+
+    public void remove(long userId) {
+        drafts.invalidate(userId);
+    }
+
+    // Chỉ xóa nếu bản nháp chưa bị autosave đè trong lúc đang nộp
+    public void remove(long userId, TestDraft draft) {
+        drafts.asMap().remove(userId, draft);
+    }
+}
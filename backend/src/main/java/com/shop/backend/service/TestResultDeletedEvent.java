@@ -0,0 +1,5 @@
+package com.shop.backend.service;
+
+// Một kết quả test vừa bị xóa; ScoreDistribution chỉ trừ khỏi phân bố sau khi transaction xóa đã commit
+public record TestResultDeletedEvent(String testType, int totalScore) {
+}
@@ -0,0 +1,174 @@
+package com.shop.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.dto.depression.DepressionTestResultDTO;
+import com.shop.backend.repository.DepressionTestResultRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Xuất kết quả test ra CSV hoặc NDJSON, ghi từng dòng ngay khi đọc được từ database.
+// Bộ nhớ không phụ thuộc số dòng: con trỏ JDBC forward-only, DTO không được quản lý bởi persistence context.
+@Service
+public class TestResultExportService {
+    private static final String CSV_HEADER =
+            "id,userId,studentName,email,testType,totalScore,severityLevel,diagnosis,recommendation,testedAt";
+    private static final int FLUSH_EVERY_ROWS = 500;
+
+    public enum Format {
+        CSV(new MediaType("text", "csv", StandardCharsets.UTF_8)),
+        NDJSON(MediaType.APPLICATION_NDJSON);
+
+        private final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+    }
+
+    @Autowired
+    private DepressionTestResultRepository testResultRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Integer.MIN_VALUE bật chế độ streaming từng dòng của MySQL Connector/J;
+    // đặt giá trị dương khi URL có useCursorFetch=true
+    @Value("${depression-test.export.fetch-size:-2147483648}")
+    private int fetchSize;
+
+    // StreamingResponseBody chạy sau khi controller đã trả về, ngoài proxy của Spring,
+    // nên transaction giữ con trỏ JDBC được mở ngay trong export thay vì dựa vào @Transactional
+    private final TransactionTemplate readTransaction;
+
+    public TestResultExportService(PlatformTransactionManager transactionManager) {
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    // Chỉ nhận csv hoặc ndjson (không phân biệt hoa thường)
+    public static Format parseFormat(String format) {
+        if ("csv".equalsIgnoreCase(format)) {
+            return Format.CSV;
+        }
+        if ("ndjson".equalsIgnoreCase(format)) {
+            return Format.NDJSON;
+        }
+        throw new IllegalArgumentException("Định dạng xuất không hỗ trợ: " + format + " (chỉ csv hoặc ndjson)");
+    }
+
+    // Response tải file dùng chung cho /api/admin và /api/expert; định dạng lạ trả về 400
+    public ResponseEntity<?> download(String format, TestResultFilter filter) {
+        Format exportFormat;
+        try {
+            exportFormat = parseFormat(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        String extension = exportFormat.name().toLowerCase(Locale.ROOT);
+        StreamingResponseBody body = out -> export(filter, exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(exportFormat.mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"test-results." + extension + "\"")
+                .body(body);
+    }
+
+    public void export(TestResultFilter filter, Format format, OutputStream out) throws IOException {
+        try {
+            readTransaction.executeWithoutResult(status -> {
+                try {
+                    writeRows(filter, format, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // Client ngắt kết nối giữa chừng: trả lại IOException để Spring xử lý như mọi lỗi ghi response
+            throw e.getCause();
+        }
+    }
+
+    private void writeRows(TestResultFilter filter, Format format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        if (format == Format.CSV) {
+            // BOM để Excel nhận đúng tiếng Việt
+            writer.write('\uFEFF');
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        try (Stream<DepressionTestResultDTO> rows = testResultRepository.streamForExport(filter, fetchSize)) {
+            Iterator<DepressionTestResultDTO> iterator = rows.iterator();
+            int written = 0;
+            while (iterator.hasNext()) {
+                DepressionTestResultDTO row = iterator.next();
+                if (format == Format.CSV) {
+                    writeCsv(writer, row);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(row));
+                    writer.write('\n');
+                }
+                if (++written % FLUSH_EVERY_ROWS == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    private static void writeCsv(Writer writer, DepressionTestResultDTO row) throws IOException {
+        writer.write(String.valueOf(row.getId()));
+        writer.write(',');
+        writer.write(row.getUserId() != null ? row.getUserId().toString() : "");
+        writer.write(',');
+        writer.write(csv(row.getStudentName()));
+        writer.write(',');
+        writer.write(csv(row.getEmail()));
+        writer.write(',');
+        writer.write(csv(row.getTestType()));
+        writer.write(',');
+        writer.write(row.getTotalScore() != null ? row.getTotalScore().toString() : "");
+        writer.write(',');
+        writer.write(csv(row.getSeverityLevel()));
+        writer.write(',');
+        writer.write(csv(row.getDiagnosis()));
+        writer.write(',');
+        writer.write(csv(row.getRecommendation()));
+        writer.write(',');
+        writer.write(row.getTestedAt() != null ? row.getTestedAt().toString() : "");
+        writer.write('\n');
+    }
+
+    // RFC 4180: bọc trong dấu nháy khi có dấu phẩy, nháy kép hoặc xuống dòng; chặn công thức khi mở bằng Excel
+    private static String csv(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        String text = value;
+        char first = text.charAt(0);
+        if (first == '=' || first == '+' || first == '-' || first == '@') {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+}
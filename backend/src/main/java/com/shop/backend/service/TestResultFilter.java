@@ -0,0 +1,17 @@
+package com.shop.backend.service;
+
+import com.shop.backend.model.DepressionTestResult;
+
+import java.time.LocalDate;
+
+// Bộ lọc dùng chung cho xuất dữ liệu và tìm kiếm kết quả test; trường null nghĩa là không lọc
+public record TestResultFilter(LocalDate from,
+                               LocalDate to,
+                               DepressionTestResult.SeverityLevel severityLevel,
+                               String testType,
+                               Long userId) {
+
+    public static TestResultFilter bySeverity(DepressionTestResult.SeverityLevel severityLevel) {
+        return new TestResultFilter(null, null, severityLevel, null, null);
+    }
+}
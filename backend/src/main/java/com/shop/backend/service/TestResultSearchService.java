@@ -0,0 +1,62 @@
+package com.shop.backend.service;
+
+import com.shop.backend.dto.CursorPage;
+import com.shop.backend.dto.depression.DepressionTestResultDTO;
+import com.shop.backend.repository.DepressionTestResultRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+// Danh sách kết quả test cho admin và chuyên gia: một câu JPQL projection (join User một lần),
+// lọc theo mức độ, loại test, khoảng ngày, học sinh và phân trang keyset trên (tested_at, id)
+@Service
+public class TestResultSearchService {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    // Trần cho client cũ không gửi tham số phân trang
+    static final int MAX_UNPAGED_RESULTS = 1000;
+    // Danh sách không phân trang bị cắt: "true" kèm cursor để đọc tiếp bằng ?cursor=
+    public static final String TRUNCATED_HEADER = "X-Result-Truncated";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    @Autowired
+    private DepressionTestResultRepository testResultRepository;
+
+    // Client cũ không gửi cursor/limit: trang đầu gồm tối đa MAX_UNPAGED_RESULTS dòng mới nhất,
+    // trả về dạng mảng qua unpagedResponse (hasMore thì có header báo bị cắt)
+    public CursorPage<DepressionTestResultDTO> unpaged(TestResultFilter filter) {
+        return toPage(testResultRepository.search(filter, null, MAX_UNPAGED_RESULTS + 1), MAX_UNPAGED_RESULTS);
+    }
+
+    // Cursor sai định dạng ném IllegalArgumentException
+    public CursorPage<DepressionTestResultDTO> page(TestResultFilter filter, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        HistoryCursor after = cursor == null || cursor.isEmpty() ? null : HistoryCursor.decode(cursor);
+        return toPage(testResultRepository.search(filter, after, pageSize + 1), pageSize);
+    }
+
+    // rows được đọc dư một dòng để biết còn trang sau hay không
+    static CursorPage<DepressionTestResultDTO> toPage(List<DepressionTestResultDTO> rows, int pageSize) {
+        boolean hasMore = rows.size() > pageSize;
+        List<DepressionTestResultDTO> items = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            DepressionTestResultDTO last = items.get(items.size() - 1);
+            nextCursor = new HistoryCursor(last.getTestedAt(), last.getId()).encode();
+        }
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+
+    // Client cũ vẫn nhận một mảng; trang bị cắt ở MAX_UNPAGED_RESULTS được báo qua header thay vì âm thầm thiếu dòng
+    public static <T> ResponseEntity<List<T>> unpagedResponse(CursorPage<T> page) {
+        if (!page.isHasMore()) {
+            return ResponseEntity.ok(page.getItems());
+        }
+        return ResponseEntity.ok()
+                .header(TRUNCATED_HEADER, "true")
+                .header(NEXT_CURSOR_HEADER, page.getNextCursor())
+                .body(page.getItems());
+    }
+}
@@ -0,0 +1,115 @@
+package com.shop.backend.service;
+
+import com.shop.backend.model.DepressionTestResult;
+import com.shop.backend.repository.DepressionTestResultRepository;
+import com.shop.backend.repository.TestDailyRollupRepository;
+import com.shop.backend.repository.TestDailyRollupRepositoryCustom.Increment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Bảng test_daily_rollup cho biểu đồ số lượt test theo ngày của admin và expert.
+// Mỗi bài nộp/xóa cộng trừ vào đúng một dòng trong transaction của nó; dashboard chỉ đọc O(số ngày) dòng.
+@Service
+public class TestRollupService {
+    private static final Logger logger = LoggerFactory.getLogger(TestRollupService.class);
+    private static final Comparator<Increment> KEY_ORDER = Comparator.comparing(Increment::statDate)
+            .thenComparing(Increment::testType)
+            .thenComparing(Increment::severityLevel);
+    // Một năm (kể cả năm nhuận) là khoảng dài nhất biểu đồ theo ngày cần
+    static final int MAX_DAYS = 366;
+
+    @Autowired
+    private TestDailyRollupRepository rollupRepository;
+
+    @Autowired
+    private DepressionTestResultRepository testResultRepository;
+
+    // Gọi trong transaction ghi kết quả (TestSubmissionWriter)
+    public void recordAdded(List<DepressionTestResult> results) {
+        apply(results, 1);
+    }
+
+    // Gọi trong transaction xóa kết quả
+    public void recordRemoved(List<DepressionTestResult> results) {
+        apply(results, -1);
+    }
+
+    private void apply(List<DepressionTestResult> results, int sign) {
+        Map<Key, long[]> totals = new HashMap<>();
+        for (DepressionTestResult result : results) {
+            if (result.getTestedAt() == null || result.getSeverityLevel() == null) {
+                continue;
+            }
+            Key key = new Key(result.getTestedAt().toLocalDate(),
+                    result.getTestType() != null ? result.getTestType() : "", result.getSeverityLevel());
+            long[] sum = totals.computeIfAbsent(key, k -> new long[2]);
+            sum[0] += sign;
+            sum[1] += (long) sign * (result.getTotalScore() != null ? result.getTotalScore() : 0);
+        }
+        List<Increment> increments = new ArrayList<>(totals.size());
+        totals.forEach((key, sum) -> increments.add(new Increment(key.statDate(), key.testType(), key.severityLevel(), sum[0], sum[1])));
+        // Thứ tự khóa cố định để các group commit đồng thời không deadlock trên cùng dòng
+        increments.sort(KEY_ORDER);
+        rollupRepository.applyIncrements(increments);
+    }
+
+    @Transactional
+    public void rebuild() {
+        rollupRepository.rebuildFromResults();
+        logger.info("[TestRollup] Rebuilt test_daily_rollup from depression_test_results");
+    }
+
+    // Lần đầu triển khai: bảng rollup còn trống trong khi đã có kết quả cũ
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildIfEmpty() {
+        if (rollupRepository.count() == 0 && testResultRepository.count() > 0) {
+            rollupRepository.rebuildFromResults();
+            logger.info("[TestRollup] Seeded empty test_daily_rollup from depression_test_results");
+        }
+    }
+
+    // Số lượt test theo ngày (và số severe test), đủ mọi ngày trong khoảng (ngày không có dữ liệu = 0).
+    // days nằm ngoài 1..MAX_DAYS được kẹp lại thay vì tạo danh sách âm hoặc quá lớn
+    @Transactional(readOnly = true)
+    public Map<String, Object> getTestCountByDateRange(int requestedDays) {
+        int days = Math.max(1, Math.min(requestedDays, MAX_DAYS));
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(days - 1);
+        Map<String, long[]> byDate = new HashMap<>();
+        for (Object[] row : rollupRepository.sumByDate(from, today)) {
+            byDate.put(row[0].toString(), new long[]{((Number) row[1]).longValue(), ((Number) row[2]).longValue()});
+        }
+        List<String> dates = new ArrayList<>(days);
+        List<Integer> totalTests = new ArrayList<>(days);
+        List<Integer> severeTests = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) {
+            String key = from.plusDays(i).toString();
+            long[] counts = byDate.get(key);
+            dates.add(key);
+            totalTests.add(counts != null ? (int) counts[0] : 0);
+            severeTests.add(counts != null ? (int) counts[1] : 0);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("dates", dates);
+        result.put("totalTests", totalTests);
+        result.put("severeTests", severeTests);
+        return result;
+    }
+
+    private record Key(LocalDate statDate, String testType, DepressionTestResult.SeverityLevel severityLevel) {
+    }
+}
@@ -0,0 +1,133 @@
+package com.shop.backend.service;
+
+import com.shop.backend.model.DepressionQuestion;
+import com.shop.backend.model.DepressionTestAnswer;
+import com.shop.backend.model.DepressionTestResult;
+import com.shop.backend.repository.DepressionTestAnswerRepository;
+import com.shop.backend.repository.DepressionTestResultRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Đường ghi của submitTest: một transaction ngắn gồm 1 insert kết quả + 1 batch insert cho toàn bộ đáp án.
+// Tính điểm được làm trước khi vào đây để không giữ connection lâu hơn cần thiết.
+// Upsert rollup luôn là câu lệnh cuối: dòng rollup là điểm nóng, khóa của nó chỉ được giữ từ đó tới lúc commit.
+// Ở chế độ PACKED, đáp án được nén vào chính dòng kết quả và không tạo dòng depression_test_answers nào.
+// Id layout được lấy trước khi mở transaction ghi: tạo layout mới cần một transaction riêng, nếu làm bên trong
+// thì mỗi request giữ hai connection cùng lúc và pool có thể kẹt khi tải cao.
+@Component
+public class TestSubmissionWriter {
+
+    public enum AnswerStorage {
+        ROWS,
+        PACKED
+    }
+
+    @Autowired
+    private DepressionTestResultRepository testResultRepository;
+
+    @Autowired
+    private DepressionTestAnswerRepository testAnswerRepository;
+
+    @Autowired
+    private AnswerLayoutRegistry answerLayoutRegistry;
+
+    @Autowired
+    private TestRollupService testRollupService;
+
+    @Autowired
+    private TriageService triageService;
+
+    @Value("${depression-test.answer-storage:ROWS}")
+    private AnswerStorage answerStorage;
+
+    private final TransactionTemplate transaction;
+
+    public TestSubmissionWriter(PlatformTransactionManager transactionManager) {
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    public DepressionTestResult persist(DepressionTestResult testResult, ScoredSubmission submission) {
+        QuestionBank bank = submission.bank();
+        int[] values = submission.values();
+        Long layoutId = answerStorage == AnswerStorage.PACKED && PackedAnswers.canPack(values)
+                ? answerLayoutRegistry.layoutIdFor(bank) : null;
+        return transaction.execute(status -> persist(testResult, bank, values, layoutId));
+    }
+
+    private DepressionTestResult persist(DepressionTestResult testResult, QuestionBank bank, int[] values, Long layoutId) {
+        if (layoutId != null) {
+            testResult.setAnswerLayoutId(layoutId);
+            testResult.setPackedAnswers(PackedAnswers.pack(values));
+            DepressionTestResult saved = testResultRepository.save(testResult);
+            triageService.openCases(List.of(saved));
+            testRollupService.recordAdded(List.of(saved));
+            return saved;
+        }
+
+        DepressionTestResult saved = testResultRepository.save(testResult);
+        List<DepressionTestAnswer> rows = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] < 0) {
+                continue;
+            }
+            rows.add(answerRow(saved, bank.questionIdAt(i), values[i]));
+        }
+        testAnswerRepository.saveAllBatched(rows);
+        triageService.openCases(List.of(saved));
+        testRollupService.recordAdded(List.of(saved));
+        return saved;
+    }
+
+    // Group commit cho chế độ write-behind: nhiều bài nộp trong một transaction, đáp án gộp thành một batch
+    public void persistAll(List<PendingSubmission> submissions) {
+        Long[] layoutIds = new Long[submissions.size()];
+        for (int i = 0; i < layoutIds.length; i++) {
+            PendingSubmission submission = submissions.get(i);
+            if (answerStorage == AnswerStorage.PACKED && PackedAnswers.canPack(submission.answerValues())) {
+                // Bài nộp trong journal chỉ giữ các câu đã trả lời, layout tương ứng là đúng danh sách đó
+                layoutIds[i] = answerLayoutRegistry.layoutIdFor(submission.questionIds());
+            }
+        }
+        transaction.executeWithoutResult(status -> persistAll(submissions, layoutIds));
+    }
+
+    private void persistAll(List<PendingSubmission> submissions, Long[] layoutIds) {
+        List<DepressionTestAnswer> rows = new ArrayList<>();
+        List<DepressionTestResult> savedResults = new ArrayList<>(submissions.size());
+        for (int s = 0; s < submissions.size(); s++) {
+            PendingSubmission submission = submissions.get(s);
+            long[] questionIds = submission.questionIds();
+            int[] answerValues = submission.answerValues();
+            DepressionTestResult testResult = submission.toEntity();
+            if (layoutIds[s] != null) {
+                testResult.setAnswerLayoutId(layoutIds[s]);
+                testResult.setPackedAnswers(PackedAnswers.pack(answerValues));
+                savedResults.add(testResultRepository.save(testResult));
+                continue;
+            }
+            DepressionTestResult saved = testResultRepository.save(testResult);
+            savedResults.add(saved);
+            for (int i = 0; i < questionIds.length; i++) {
+                rows.add(answerRow(saved, questionIds[i], answerValues[i]));
+            }
+        }
+        testAnswerRepository.saveAllBatched(rows);
+        triageService.openCases(savedResults);
+        testRollupService.recordAdded(savedResults);
+    }
+
+    private static DepressionTestAnswer answerRow(DepressionTestResult testResult, long questionId, int value) {
+        DepressionTestAnswer testAnswer = new DepressionTestAnswer();
+        testAnswer.setTestResult(testResult);
+        testAnswer.setQuestion(new DepressionQuestion());
+        testAnswer.getQuestion().setId(questionId);
+        testAnswer.setAnswerValue(value);
+        return testAnswer;
+    }
+}
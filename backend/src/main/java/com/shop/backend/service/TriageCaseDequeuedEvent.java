@@ -0,0 +1,7 @@
+package com.shop.backend.service;
+
+import com.shop.backend.model.TriageCase;
+
+// Một ca vừa được lấy khỏi hàng đợi trong bộ nhớ để nhận; nếu transaction rollback thì TriageService đưa ca trở lại
+public record TriageCaseDequeuedEvent(TriageCase triageCase) {
+}
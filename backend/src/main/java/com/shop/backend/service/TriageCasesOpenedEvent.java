@@ -0,0 +1,9 @@
+package com.shop.backend.service;
+
+import com.shop.backend.model.TriageCase;
+
+import java.util.List;
+
+// Các ca triage vừa được ghi cùng transaction với bài nộp; TriageService đưa vào hàng đợi sau commit
+public record TriageCasesOpenedEvent(List<TriageCase> cases) {
+}
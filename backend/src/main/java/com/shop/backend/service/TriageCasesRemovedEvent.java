@@ -0,0 +1,7 @@
+package com.shop.backend.service;
+
+import java.util.List;
+
+// Các ca triage vừa bị xóa cùng kết quả test; TriageService bỏ khỏi hàng đợi sau commit
+public record TriageCasesRemovedEvent(List<Long> caseIds) {
+}
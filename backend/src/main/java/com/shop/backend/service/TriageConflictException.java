@@ -0,0 +1,8 @@
+package com.shop.backend.service;
+
+// Ca triage không ở trạng thái cho phép thao tác (đã bị người khác nhận, không phải người nhận...) (HTTP 409)
+public class TriageConflictException extends RuntimeException {
+    public TriageConflictException(String message) {
+        super(message);
+    }
+}
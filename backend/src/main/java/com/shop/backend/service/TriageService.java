@@ -0,0 +1,298 @@
+package com.shop.backend.service;
+
+import com.shop.backend.dto.UserDTO;
+import com.shop.backend.dto.expert.TriageCaseDTO;
+import com.shop.backend.model.DepressionTestResult;
+import com.shop.backend.model.TriageCase;
+import com.shop.backend.repository.TriageCaseRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Hàng đợi triage cho các bài test SEVERE. Bảng triage_cases là nguồn sự thật (sống qua restart);
+// các ca OPEN được giữ thêm trong một skip list để xem đầu hàng đợi với O(log n) mà không truy vấn database.
+// Thứ tự ưu tiên = thời điểm vào hàng đợi trừ đi điểm số * score-weight: điểm cao lên trước,
+// và ca chờ lâu tự nhích lên mà khóa sắp xếp không bao giờ phải tính lại.
+// Skip list chỉ phản ánh những gì đã commit: ca lấy ra để nhận được trả lại nếu transaction rollback,
+// ca bị xóa chỉ rời hàng đợi sau commit. Ca mở, nhận hoặc xóa ở node khác được đồng bộ bằng lượt đối chiếu định kỳ với bảng.
+@Service
+public class TriageService {
+    private static final Logger logger = LoggerFactory.getLogger(TriageService.class);
+    private static final List<TriageCase.Status> ACTIVE_STATUSES = List.of(TriageCase.Status.CLAIMED, TriageCase.Status.ACKNOWLEDGED);
+
+    @Autowired
+    private TriageCaseRepository triageCaseRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private UserDirectoryIndex userDirectoryIndex;
+
+    private final Duration scoreWeight;
+    private final NavigableSet<QueueEntry> queue = new ConcurrentSkipListSet<>(
+            Comparator.comparingLong(QueueEntry::priorityKey).thenComparingLong(QueueEntry::caseId));
+    private final Map<Long, QueueEntry> entriesByCaseId = new ConcurrentHashMap<>();
+
+    // Mỗi điểm số tương đương với score-weight-minutes phút chờ
+    public TriageService(@Value("${triage.score-weight-minutes:10}") long scoreWeightMinutes, MeterRegistry meterRegistry) {
+        this.scoreWeight = Duration.ofMinutes(scoreWeightMinutes);
+        Gauge.builder("triage.queue.depth", queue, NavigableSet::size)
+                .description("Số ca SEVERE đang chờ chuyên gia nhận")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOpenCases() {
+        triageCaseRepository.findByStatus(TriageCase.Status.OPEN).forEach(this::offer);
+        logger.info("[Triage] Loaded {} open case(s)", queue.size());
+    }
+
+    // Các event chỉ đến trên node đã ghi: đối chiếu với các ca OPEN trong bảng để thêm ca mở/trả ở node khác
+    // và bỏ ca đã được nhận hoặc bị xóa ở node khác
+    @Scheduled(fixedDelayString = "${triage.reconcile-interval-ms:15000}", initialDelayString = "${triage.reconcile-interval-ms:15000}")
+    public void reconcile() {
+        // Chỉ bỏ những entry đã có trước khi đọc bảng: entry thêm sau đó có thể là ca vừa commit mà lượt đọc chưa thấy
+        List<QueueEntry> before = new ArrayList<>(entriesByCaseId.values());
+        List<TriageCase> openCases = triageCaseRepository.findByStatus(TriageCase.Status.OPEN);
+        Set<Long> openIds = new HashSet<>();
+        int added = 0;
+        for (TriageCase triageCase : openCases) {
+            openIds.add(triageCase.getId());
+            if (offer(triageCase)) {
+                added++;
+            }
+        }
+        int removed = 0;
+        for (QueueEntry entry : before) {
+            if (!openIds.contains(entry.caseId()) && entriesByCaseId.remove(entry.caseId(), entry)) {
+                queue.remove(entry);
+                removed++;
+            }
+        }
+        if (added > 0 || removed > 0) {
+            logger.debug("[Triage] Reconciled queue: {} added, {} removed", added, removed);
+        }
+    }
+
+    // Gọi trong transaction ghi bài nộp: ca triage được ghi cùng lúc với kết quả test
+    public void openCases(List<DepressionTestResult> results) {
+        List<TriageCase> cases = new ArrayList<>();
+        for (DepressionTestResult result : results) {
+            if (result.getSeverityLevel() != DepressionTestResult.SeverityLevel.SEVERE) {
+                continue;
+            }
+            TriageCase triageCase = new TriageCase();
+            triageCase.setTestResultId(result.getId());
+            triageCase.setUserId(result.getUser().getId());
+            triageCase.setTestType(result.getTestType());
+            triageCase.setTotalScore(result.getTotalScore());
+            triageCase.setEnqueuedAt(result.getTestedAt() != null ? result.getTestedAt() : LocalDateTime.now());
+            cases.add(triageCase);
+        }
+        if (cases.isEmpty()) {
+            return;
+        }
+        eventPublisher.publishEvent(new TriageCasesOpenedEvent(triageCaseRepository.saveAll(cases)));
+    }
+
+    @TransactionalEventListener
+    public void onCasesOpened(TriageCasesOpenedEvent event) {
+        event.cases().forEach(this::offer);
+    }
+
+    // UPDATE nhận ca, load hoặc toDTO lỗi: ca vẫn OPEN trong bảng nên phải quay lại hàng đợi
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void onDequeueRolledBack(TriageCaseDequeuedEvent event) {
+        offer(event.triageCase());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCasesRemoved(TriageCasesRemovedEvent event) {
+        for (Long caseId : event.caseIds()) {
+            QueueEntry entry = entriesByCaseId.remove(caseId);
+            if (entry != null) {
+                queue.remove(entry);
+            }
+        }
+    }
+
+    // Các ca đầu hàng đợi, chỉ đọc từ bộ nhớ
+    public List<TriageCaseDTO> peek(int limit) {
+        List<TriageCaseDTO> head = new ArrayList<>();
+        Iterator<QueueEntry> iterator = queue.iterator();
+        while (iterator.hasNext() && head.size() < Math.max(1, limit)) {
+            head.add(toDTO(iterator.next().triageCase()));
+        }
+        return head;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    // Nhận ca ưu tiên cao nhất; null nếu hàng đợi trống
+    @Transactional
+    public TriageCaseDTO claimNext(Long expertId) {
+        QueueEntry entry;
+        while ((entry = queue.pollFirst()) != null) {
+            entriesByCaseId.remove(entry.caseId(), entry);
+            TriageCaseDTO claimed = tryClaim(entry, expertId);
+            if (claimed != null) {
+                return claimed;
+            }
+        }
+        return null;
+    }
+
+    // Nhận một ca cụ thể; chỉ thành công nếu ca vẫn đang OPEN
+    @Transactional
+    public TriageCaseDTO claim(Long caseId, Long expertId) {
+        QueueEntry entry = entriesByCaseId.remove(caseId);
+        if (entry != null) {
+            queue.remove(entry);
+        }
+        TriageCaseDTO claimed = tryClaim(entry, caseId, expertId);
+        if (claimed == null) {
+            throw new TriageConflictException("Ca này đã được chuyên gia khác nhận hoặc không còn mở");
+        }
+        return claimed;
+    }
+
+    @Transactional
+    public TriageCaseDTO acknowledge(Long caseId, Long expertId) {
+        if (triageCaseRepository.acknowledge(caseId, expertId, LocalDateTime.now()) == 0) {
+            throw new TriageConflictException("Chỉ chuyên gia đã nhận ca mới có thể xác nhận");
+        }
+        return toDTO(load(caseId));
+    }
+
+    @Transactional
+    public TriageCaseDTO resolve(Long caseId, Long expertId) {
+        if (triageCaseRepository.resolve(caseId, expertId, LocalDateTime.now()) == 0) {
+            throw new TriageConflictException("Chỉ chuyên gia đã nhận ca mới có thể đóng ca");
+        }
+        return toDTO(load(caseId));
+    }
+
+    // Trả ca về hàng đợi với thời điểm vào hàng đợi ban đầu nên không bị mất thứ tự ưu tiên
+    @Transactional
+    public TriageCaseDTO release(Long caseId, Long expertId) {
+        if (triageCaseRepository.release(caseId, expertId) == 0) {
+            throw new TriageConflictException("Chỉ chuyên gia đã nhận ca mới có thể trả ca");
+        }
+        TriageCase triageCase = load(caseId);
+        eventPublisher.publishEvent(new TriageCasesOpenedEvent(List.of(triageCase)));
+        return toDTO(triageCase);
+    }
+
+    public List<TriageCaseDTO> getClaimedCases(Long expertId) {
+        return triageCaseRepository.findByClaimedByAndStatusInOrderByClaimedAtDesc(expertId, ACTIVE_STATUSES)
+                .stream().map(this::toDTO).toList();
+    }
+
+    // Kết quả test bị xóa thì ca triage tương ứng cũng không còn ý nghĩa
+    public void removeForResults(List<Long> testResultIds) {
+        List<TriageCase> cases = triageCaseRepository.findByTestResultIdIn(testResultIds);
+        if (cases.isEmpty()) {
+            return;
+        }
+        triageCaseRepository.deleteAll(cases);
+        eventPublisher.publishEvent(new TriageCasesRemovedEvent(cases.stream().map(TriageCase::getId).toList()));
+    }
+
+    private TriageCaseDTO tryClaim(QueueEntry entry, Long expertId) {
+        return tryClaim(entry, entry.caseId(), expertId);
+    }
+
+    private TriageCaseDTO tryClaim(QueueEntry entry, Long caseId, Long expertId) {
+        int claimed;
+        try {
+            claimed = triageCaseRepository.claim(caseId, expertId, LocalDateTime.now());
+        } catch (RuntimeException e) {
+            restoreOnRollback(entry);
+            throw e;
+        }
+        if (claimed == 0) {
+            // Ca đã được nhận ở nơi khác: bỏ hẳn khỏi hàng đợi, kể cả khi transaction này rollback sau đó
+            return null;
+        }
+        restoreOnRollback(entry);
+        return toDTO(load(caseId));
+    }
+
+    private void restoreOnRollback(QueueEntry entry) {
+        if (entry != null) {
+            eventPublisher.publishEvent(new TriageCaseDequeuedEvent(entry.triageCase()));
+        }
+    }
+
+    private TriageCase load(Long caseId) {
+        return triageCaseRepository.findById(caseId)
+                .orElseThrow(() -> new TriageConflictException("Không tìm thấy ca triage: " + caseId));
+    }
+
+    // true nếu ca vừa được thêm vào hàng đợi
+    private boolean offer(TriageCase triageCase) {
+        if (triageCase.getStatus() != TriageCase.Status.OPEN) {
+            return false;
+        }
+        long enqueuedAtMillis = triageCase.getEnqueuedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long priorityKey = enqueuedAtMillis - triageCase.getTotalScore() * scoreWeight.toMillis();
+        QueueEntry entry = new QueueEntry(triageCase.getId(), priorityKey, triageCase);
+        if (entriesByCaseId.putIfAbsent(entry.caseId(), entry) != null) {
+            return false;
+        }
+        queue.add(entry);
+        return true;
+    }
+
+    private TriageCaseDTO toDTO(TriageCase triageCase) {
+        TriageCaseDTO dto = new TriageCaseDTO();
+        dto.setId(triageCase.getId());
+        dto.setTestResultId(triageCase.getTestResultId());
+        dto.setUserId(triageCase.getUserId());
+        UserDTO student = userDirectoryIndex.find(triageCase.getUserId());
+        if (student != null) {
+            dto.setStudentName(student.getFirstName() + " " + student.getLastName());
+            dto.setEmail(student.getEmail());
+        }
+        dto.setTestType(triageCase.getTestType());
+        dto.setTotalScore(triageCase.getTotalScore());
+        dto.setStatus(triageCase.getStatus().name());
+        dto.setClaimedBy(triageCase.getClaimedBy());
+        dto.setEnqueuedAt(triageCase.getEnqueuedAt());
+        dto.setClaimedAt(triageCase.getClaimedAt());
+        dto.setAcknowledgedAt(triageCase.getAcknowledgedAt());
+        dto.setResolvedAt(triageCase.getResolvedAt());
+        return dto;
+    }
+
+    private record QueueEntry(long caseId, long priorityKey, TriageCase triageCase) {
+    }
+}
@@ -0,0 +1,355 @@
+package com.shop.backend.service;
+
+import com.shop.backend.dto.CursorPage;
+import com.shop.backend.dto.UserDTO;
+import com.shop.backend.model.Role;
+import com.shop.backend.model.User;
+import com.shop.backend.model.UserChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Chỉ mục tìm kiếm user trong bộ nhớ cho trang quản trị: trigram trên họ tên và email đã bỏ dấu,
+// cộng thêm gram "^x", "^xy" ở đầu mỗi từ để gõ 1-2 ký tự vẫn tìm được theo tiền tố.
+// Mỗi gram trỏ tới mảng id tăng dần (thay mảng mới khi ghi) nên đọc không cần khóa và phân trang keyset theo id.
+// Đồng bộ với bảng users qua UserChangedEvent sau khi transaction commit.
+@Component
+public class UserDirectoryIndex {
+    private static final Logger logger = LoggerFactory.getLogger(UserDirectoryIndex.class);
+    private static final int LOAD_BATCH_SIZE = 5000;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final NavigableMap<Long, Entry> entries = new ConcurrentSkipListMap<>();
+    private final Map<String, long[]> postings = new ConcurrentHashMap<>();
+    // Thay đổi đến trong lúc đang nạp lần đầu, áp dụng lại ngay sau khi nạp xong
+    private final List<UserChangedEvent> pendingEvents = new ArrayList<>();
+    private volatile boolean ready;
+
+    public UserDirectoryIndex(MeterRegistry meterRegistry) {
+        Gauge.builder("user_directory.size", entries, Map::size)
+                .description("Số user trong chỉ mục tìm kiếm")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long startedAt = System.currentTimeMillis();
+        Map<Long, Entry> loaded = new HashMap<>();
+        Map<String, List<Long>> loadedPostings = new HashMap<>();
+        long lastId = 0;
+        while (true) {
+            List<Entry> batch = jdbcTemplate.query(
+                    "SELECT id, first_name, last_name, email, phone, avatar_url, role, status, plan, created_at, updated_at "
+                            + "FROM users WHERE id > ? ORDER BY id LIMIT ?",
+                    (rs, rowNum) -> Entry.of(rs.getLong("id"), rs.getString("first_name"), rs.getString("last_name"),
+                            rs.getString("email"), rs.getString("phone"), rs.getString("avatar_url"),
+                            rs.getString("role") != null ? Role.valueOf(rs.getString("role")) : null,
+                            rs.getString("status") != null ? User.Status.valueOf(rs.getString("status")) : null,
+                            rs.getString("plan"), toLocalDateTime(rs.getTimestamp("created_at")),
+                            toLocalDateTime(rs.getTimestamp("updated_at"))),
+                    lastId, LOAD_BATCH_SIZE);
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (Entry entry : batch) {
+                loaded.put(entry.id(), entry);
+                // Id được đọc tăng dần nên mỗi danh sách đã được sắp xếp sẵn
+                for (String gram : grams(entry.text())) {
+                    loadedPostings.computeIfAbsent(gram, k -> new ArrayList<>()).add(entry.id());
+                }
+            }
+            lastId = batch.get(batch.size() - 1).id();
+        }
+
+        synchronized (this) {
+            entries.clear();
+            postings.clear();
+            entries.putAll(loaded);
+            loadedPostings.forEach((gram, ids) -> postings.put(gram, ids.stream().mapToLong(Long::longValue).toArray()));
+            pendingEvents.forEach(this::apply);
+            pendingEvents.clear();
+            ready = true;
+        }
+        logger.info("[UserDirectory] Indexed {} user(s), {} gram(s) in {} ms",
+                entries.size(), postings.size(), System.currentTimeMillis() - startedAt);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onUserChanged(UserChangedEvent event) {
+        if (!ready) {
+            pendingEvents.add(event);
+            return;
+        }
+        apply(event);
+    }
+
+    // Tìm theo tên/email (mọi từ trong q đều phải khớp), lọc role/status; kết quả tăng dần theo id
+    public CursorPage<UserDTO> search(String query, Role role, User.Status status, String cursor, int limit) {
+        if (!ready) {
+            throw new IllegalStateException("Chỉ mục người dùng đang được nạp, vui lòng thử lại sau");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        long afterId = parseCursor(cursor);
+        String[] terms = Arrays.stream(VietnameseText.fold(query).trim().split("\\s+"))
+                .filter(term -> !term.isEmpty())
+                .toArray(String[]::new);
+
+        List<UserDTO> items = new ArrayList<>(pageSize + 1);
+        if (terms.length == 0) {
+            for (Entry entry : entries.tailMap(afterId, false).values()) {
+                if (items.size() > pageSize) {
+                    break;
+                }
+                if (entry.matches(terms, role, status)) {
+                    items.add(entry.toDTO());
+                }
+            }
+        } else {
+            long[] candidates = candidates(terms);
+            int from = Arrays.binarySearch(candidates, afterId);
+            from = from >= 0 ? from + 1 : -from - 1;
+            for (int i = from; i < candidates.length && items.size() <= pageSize; i++) {
+                Entry entry = entries.get(candidates[i]);
+                // Posting có thể cũ hơn entry một chút: luôn kiểm tra lại trên chính entry
+                if (entry != null && entry.matches(terms, role, status)) {
+                    items.add(entry.toDTO());
+                }
+            }
+        }
+
+        boolean hasMore = items.size() > pageSize;
+        if (hasMore) {
+            items = items.subList(0, pageSize);
+        }
+        String nextCursor = hasMore ? String.valueOf(items.get(items.size() - 1).getId()) : null;
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+
+    // Tra một user theo id mà không chạm database; null nếu chưa có trong chỉ mục
+    public UserDTO find(long userId) {
+        Entry entry = entries.get(userId);
+        return entry != null ? entry.toDTO() : null;
+    }
+
+    // Giao của các danh sách id cho mọi gram trong truy vấn, bắt đầu từ danh sách ngắn nhất
+    private long[] candidates(String[] terms) {
+        List<long[]> lists = new ArrayList<>();
+        for (String term : terms) {
+            List<String> termGrams = new ArrayList<>();
+            if (term.length() < 3) {
+                termGrams.add("^" + term);
+            } else {
+                for (int i = 0; i + 3 <= term.length(); i++) {
+                    termGrams.add(term.substring(i, i + 3));
+                }
+            }
+            for (String gram : termGrams) {
+                long[] ids = postings.get(gram);
+                if (ids == null) {
+                    return new long[0];
+                }
+                lists.add(ids);
+            }
+        }
+        lists.sort((a, b) -> Integer.compare(a.length, b.length));
+        long[] result = lists.get(0);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i));
+        }
+        return result;
+    }
+
+    private void apply(UserChangedEvent event) {
+        User user = event.user();
+        if (user.getId() == null) {
+            return;
+        }
+        if (event.removed()) {
+            Entry old = entries.remove(user.getId());
+            if (old != null) {
+                grams(old.text()).forEach(gram -> removePosting(gram, old.id()));
+            }
+            return;
+        }
+        Entry entry = Entry.of(user.getId(), user.getFirstName(), user.getLastName(), user.getEmail(), user.getPhone(),
+                user.getAvatarUrl(), user.getRole(), user.getStatus(), user.getPlan(), user.getCreatedAt(), user.getUpdatedAt());
+        Entry old = entries.get(entry.id());
+        if (old != null && old.updatedAt() != null && entry.updatedAt() != null && entry.updatedAt().isBefore(old.updatedAt())) {
+            // Sự kiện đến muộn hơn dữ liệu đã nạp
+            return;
+        }
+        Set<String> newGrams = grams(entry.text());
+        if (old != null) {
+            Set<String> oldGrams = grams(old.text());
+            for (String gram : oldGrams) {
+                if (!newGrams.contains(gram)) {
+                    removePosting(gram, entry.id());
+                }
+            }
+            newGrams.removeAll(oldGrams);
+        }
+        newGrams.forEach(gram -> addPosting(gram, entry.id()));
+        entries.put(entry.id(), entry);
+    }
+
+    private void addPosting(String gram, long id) {
+        postings.compute(gram, (key, ids) -> {
+            if (ids == null) {
+                return new long[]{id};
+            }
+            int pos = Arrays.binarySearch(ids, id);
+            if (pos >= 0) {
+                return ids;
+            }
+            int insertAt = -pos - 1;
+            long[] copy = new long[ids.length + 1];
+            System.arraycopy(ids, 0, copy, 0, insertAt);
+            copy[insertAt] = id;
+            System.arraycopy(ids, insertAt, copy, insertAt + 1, ids.length - insertAt);
+            return copy;
+        });
+    }
+
+    private void removePosting(String gram, long id) {
+        postings.computeIfPresent(gram, (key, ids) -> {
+            int pos = Arrays.binarySearch(ids, id);
+            if (pos < 0) {
+                return ids;
+            }
+            if (ids.length == 1) {
+                return null;
+            }
+            long[] copy = new long[ids.length - 1];
+            System.arraycopy(ids, 0, copy, 0, pos);
+            System.arraycopy(ids, pos + 1, copy, pos, ids.length - pos - 1);
+            return copy;
+        });
+    }
+
+    private static long[] intersect(long[] a, long[] b) {
+        long[] out = new long[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // Trigram trong từng dòng của text (không vắt qua dòng) và gram tiền tố của từng từ
+    static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (String line : text.split("\n")) {
+            for (int i = 0; i + 3 <= line.length(); i++) {
+                grams.add(line.substring(i, i + 3));
+            }
+        }
+        for (String token : text.split("[^a-z0-9]+")) {
+            if (!token.isEmpty()) {
+                grams.add("^" + token.charAt(0));
+                if (token.length() > 1) {
+                    grams.add("^" + token.substring(0, 2));
+                }
+            }
+        }
+        return grams;
+    }
+
+    private static long parseCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor không hợp lệ");
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    record Entry(long id, String firstName, String lastName, String email, String phone, String avatarUrl,
+                 Role role, User.Status status, String plan, LocalDateTime createdAt, LocalDateTime updatedAt,
+                 String text) {
+
+        static Entry of(long id, String firstName, String lastName, String email, String phone, String avatarUrl,
+                        Role role, User.Status status, String plan, LocalDateTime createdAt, LocalDateTime updatedAt) {
+            // Tên tiếng Việt hay được gõ theo cả hai thứ tự "họ tên" và "tên họ"
+            String text = VietnameseText.fold(firstName + " " + lastName) + "\n"
+                    + VietnameseText.fold(lastName + " " + firstName) + "\n"
+                    + VietnameseText.fold(email);
+            return new Entry(id, firstName, lastName, email, phone, avatarUrl, role, status, plan, createdAt, updatedAt, text);
+        }
+
+        boolean matches(String[] terms, Role roleFilter, User.Status statusFilter) {
+            if ((roleFilter != null && role != roleFilter) || (statusFilter != null && status != statusFilter)) {
+                return false;
+            }
+            for (String term : terms) {
+                if (term.length() < 3 ? !hasTokenStartingWith(term) : !text.contains(term)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean hasTokenStartingWith(String prefix) {
+            for (String token : text.split("[^a-z0-9]+")) {
+                if (token.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        UserDTO toDTO() {
+            UserDTO dto = new UserDTO();
+            dto.setId(id);
+            dto.setFirstName(firstName);
+            dto.setLastName(lastName);
+            dto.setEmail(email);
+            dto.setPhone(phone);
+            dto.setRole(role != null ? role.name() : null);
+            dto.setStatus(status != null ? status.name() : null);
+            dto.setAvatarUrl(avatarUrl);
+            dto.setCreatedAt(createdAt);
+            dto.setUpdatedAt(updatedAt);
+            dto.setPlan(plan);
+            return dto;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.shop.backend.service;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+// Chuẩn hóa chữ tiếng Việt để so khớp: bỏ dấu, đ -> d, chữ thường
+public final class VietnameseText {
+
+    private VietnameseText() {
+    }
+
+    public static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .replace('đ', 'd').replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+    }
+}
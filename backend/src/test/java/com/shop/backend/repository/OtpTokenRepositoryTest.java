@@ -0,0 +1,145 @@
+package com.shop.backend.repository;
+
+import com.shop.backend.model.OtpToken;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Câu upsert dùng ON DUPLICATE KEY UPDATE và IF() của MySQL nên phải chạy trên MySQL thật; bỏ qua khi máy không có Docker
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class OtpTokenRepositoryTest {
+    private static final String EMAIL = "a@example.com";
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Container
+    @ServiceConnection
+    static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+
+    @Autowired
+    private OtpTokenRepository repository;
+
+    private final LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+    @Test
+    void upsertInsertsThenReplacesTheCode() {
+        repository.upsert(EMAIL, "h1", now.plusMinutes(5), MAX_ATTEMPTS, now);
+        repository.upsert(EMAIL, "h2", now.plusMinutes(10), MAX_ATTEMPTS, now);
+
+        OtpToken token = repository.findById(EMAIL).orElseThrow();
+        assertEquals("h2", token.getOtpHash());
+        assertEquals(now.plusMinutes(10), token.getExpiresAt());
+        assertEquals(0, token.getFailedAttempts());
+        assertNull(token.getFailuresUntil());
+    }
+
+    @Test
+    void upsertKeepsFailuresInsideTheWindow() {
+        repository.upsert(EMAIL, "h1", now.plusMinutes(5), MAX_ATTEMPTS, now);
+        assertEquals(1, repository.recordFailure(EMAIL, now, MAX_ATTEMPTS, now.plusMinutes(15)));
+
+        repository.upsert(EMAIL, "h2", now.plusMinutes(5), MAX_ATTEMPTS, now);
+
+        OtpToken token = repository.findById(EMAIL).orElseThrow();
+        assertEquals("h2", token.getOtpHash());
+        assertEquals(1, token.getFailedAttempts());
+        assertEquals(now.plusMinutes(15), token.getFailuresUntil());
+    }
+
+    @Test
+    void upsertResetsFailuresOnceTheWindowHasPassed() {
+        repository.upsert(EMAIL, "h1", now.plusMinutes(5), MAX_ATTEMPTS, now);
+        repository.recordFailure(EMAIL, now, MAX_ATTEMPTS, now.plusMinutes(1));
+
+        LocalDateTime later = now.plusMinutes(2);
+        repository.upsert(EMAIL, "h2", later.plusMinutes(5), MAX_ATTEMPTS, later);
+
+        OtpToken token = repository.findById(EMAIL).orElseThrow();
+        assertEquals("h2", token.getOtpHash());
+        assertEquals(0, token.getFailedAttempts());
+        assertNull(token.getFailuresUntil());
+    }
+
+    @Test
+    void upsertKeepsTheOldCodeWhileLocked() {
+        repository.upsert(EMAIL, "h1", now.plusMinutes(5), MAX_ATTEMPTS, now);
+        failUntilLocked();
+
+        repository.upsert(EMAIL, "h2", now.plusMinutes(10), MAX_ATTEMPTS, now);
+
+        OtpToken token = repository.findById(EMAIL).orElseThrow();
+        assertEquals("h1", token.getOtpHash());
+        assertEquals(now.plusMinutes(5), token.getExpiresAt());
+        assertEquals(MAX_ATTEMPTS, token.getFailedAttempts());
+        assertEquals(now.plusMinutes(15), token.getFailuresUntil());
+    }
+
+    @Test
+    void consumeDeletesOnlyTheMatchingUnexpiredCode() {
+        repository.upsert(EMAIL, "h1", now.plusMinutes(5), MAX_ATTEMPTS, now);
+
+        assertEquals(0, repository.consume(EMAIL, "bad", now, MAX_ATTEMPTS));
+        assertEquals(0, repository.consume(EMAIL, "h1", now.plusMinutes(5), MAX_ATTEMPTS));
+        assertEquals(1, repository.consume(EMAIL, "h1", now, MAX_ATTEMPTS));
+        assertTrue(repository.findById(EMAIL).isEmpty());
+    }
+
+    @Test
+    void consumeRefusesTheCorrectCodeWhileLocked() {
+        repository.upsert(EMAIL, "h1", now.plusMinutes(5), MAX_ATTEMPTS, now);
+        failUntilLocked();
+
+        assertEquals(0, repository.consume(EMAIL, "h1", now, MAX_ATTEMPTS));
+        assertTrue(repository.findById(EMAIL).isPresent());
+    }
+
+    @Test
+    void recordFailureStopsCountingAtTheLimit() {
+        repository.upsert(EMAIL, "h1", now.plusMinutes(5), MAX_ATTEMPTS, now);
+
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            assertEquals(1, repository.recordFailure(EMAIL, now, MAX_ATTEMPTS, now.plusMinutes(15)));
+        }
+        assertEquals(0, repository.recordFailure(EMAIL, now, MAX_ATTEMPTS, now.plusMinutes(15)));
+        assertEquals(MAX_ATTEMPTS, repository.findById(EMAIL).orElseThrow().getFailedAttempts());
+    }
+
+    @Test
+    void lockOnlyAppliesAtTheLimit() {
+        repository.upsert(EMAIL, "h1", now.plusMinutes(5), MAX_ATTEMPTS, now);
+        repository.recordFailure(EMAIL, now, MAX_ATTEMPTS, now.plusMinutes(15));
+
+        assertEquals(0, repository.lock(EMAIL, MAX_ATTEMPTS, now.plusMinutes(15)));
+    }
+
+    @Test
+    void deleteExpiredKeepsRowsThatAreStillLocked() {
+        repository.upsert(EMAIL, "h1", now.plusMinutes(5), MAX_ATTEMPTS, now);
+        failUntilLocked();
+        repository.upsert("b@example.com", "h2", now.minusMinutes(1), MAX_ATTEMPTS, now.minusMinutes(6));
+
+        assertEquals(1, repository.deleteExpired(now.plusMinutes(10)));
+        assertTrue(repository.findById(EMAIL).isPresent());
+        assertTrue(repository.findById("b@example.com").isEmpty());
+    }
+
+    private void failUntilLocked() {
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            repository.recordFailure(EMAIL, now, MAX_ATTEMPTS, now.plusMinutes(15));
+        }
+        assertEquals(1, repository.lock(EMAIL, MAX_ATTEMPTS, now.plusMinutes(15)));
+    }
+}
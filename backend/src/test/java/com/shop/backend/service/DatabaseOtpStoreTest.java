@@ -0,0 +1,100 @@
+package com.shop.backend.service;
+
+import com.shop.backend.model.OtpToken;
+import com.shop.backend.repository.OtpTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Chỉ kiểm tra cách store diễn giải kết quả của repository; bản thân các câu SQL được kiểm tra trên MySQL ở OtpTokenRepositoryTest
+class DatabaseOtpStoreTest {
+    private static final String EMAIL = "a@example.com";
+    private static final Duration TTL = Duration.ofMinutes(5);
+    private static final Duration LOCKOUT = Duration.ofMinutes(15);
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final OtpTokenRepository repository = mock(OtpTokenRepository.class);
+    private final DatabaseOtpStore store = new DatabaseOtpStore();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(store, "otpTokenRepository", repository);
+    }
+
+    @Test
+    void saveUpsertsAndReportsSuccessWhenTheNewCodeIsStored() {
+        when(repository.findById(EMAIL)).thenReturn(Optional.of(token("h2", 0, null)));
+
+        assertTrue(store.save(EMAIL, "h2", TTL, MAX_ATTEMPTS, LOCKOUT));
+        verify(repository).upsert(eq(EMAIL), eq("h2"), any(LocalDateTime.class), eq(MAX_ATTEMPTS), any(LocalDateTime.class));
+    }
+
+    @Test
+    void saveReportsLockedWhenTheOldCodeIsKept() {
+        when(repository.findById(EMAIL)).thenReturn(Optional.of(token("h1", MAX_ATTEMPTS, LocalDateTime.now().plus(LOCKOUT))));
+
+        assertFalse(store.save(EMAIL, "h2", TTL, MAX_ATTEMPTS, LOCKOUT));
+    }
+
+    @Test
+    void verifyConsumesTheCorrectCode() {
+        when(repository.consume(eq(EMAIL), eq("h1"), any(LocalDateTime.class), eq(MAX_ATTEMPTS))).thenReturn(1);
+
+        assertEquals(OtpStore.Result.VALID, store.verify(EMAIL, "h1", MAX_ATTEMPTS, LOCKOUT));
+    }
+
+    @Test
+    void verifyCountsAWrongCode() {
+        when(repository.recordFailure(eq(EMAIL), any(LocalDateTime.class), eq(MAX_ATTEMPTS), any(LocalDateTime.class))).thenReturn(1);
+
+        assertEquals(OtpStore.Result.INVALID, store.verify(EMAIL, "bad", MAX_ATTEMPTS, LOCKOUT));
+    }
+
+    @Test
+    void verifyLocksOnTheLastAllowedFailure() {
+        when(repository.recordFailure(eq(EMAIL), any(LocalDateTime.class), eq(MAX_ATTEMPTS), any(LocalDateTime.class))).thenReturn(1);
+        when(repository.lock(eq(EMAIL), eq(MAX_ATTEMPTS), any(LocalDateTime.class))).thenReturn(1);
+
+        assertEquals(OtpStore.Result.LOCKED, store.verify(EMAIL, "bad", MAX_ATTEMPTS, LOCKOUT));
+    }
+
+    @Test
+    void verifyReportsAnExistingLock() {
+        when(repository.findById(EMAIL)).thenReturn(Optional.of(token("h1", MAX_ATTEMPTS, LocalDateTime.now().plus(LOCKOUT))));
+
+        assertEquals(OtpStore.Result.LOCKED, store.verify(EMAIL, "h1", MAX_ATTEMPTS, LOCKOUT));
+    }
+
+    @Test
+    void verifyReportsMissingWhenThereIsNoUsableCode() {
+        when(repository.findById(EMAIL)).thenReturn(Optional.empty());
+        assertEquals(OtpStore.Result.MISSING, store.verify(EMAIL, "h1", MAX_ATTEMPTS, LOCKOUT));
+
+        // Lần sai cũ còn trong cửa sổ nhưng chưa tới giới hạn: không phải bị khóa
+        when(repository.findById(EMAIL)).thenReturn(Optional.of(token("h1", 1, LocalDateTime.now().plus(LOCKOUT))));
+        assertEquals(OtpStore.Result.MISSING, store.verify(EMAIL, "h1", MAX_ATTEMPTS, LOCKOUT));
+    }
+
+    private static OtpToken token(String otpHash, int failedAttempts, LocalDateTime failuresUntil) {
+        OtpToken token = new OtpToken();
+        token.setEmail(EMAIL);
+        token.setOtpHash(otpHash);
+        token.setExpiresAt(LocalDateTime.now().plus(TTL));
+        token.setFailedAttempts(failedAttempts);
+        token.setFailuresUntil(failuresUntil);
+        return token;
+    }
+}
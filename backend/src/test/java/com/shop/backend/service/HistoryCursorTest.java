@@ -0,0 +1,40 @@
+package com.shop.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HistoryCursorTest {
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        HistoryCursor cursor = new HistoryCursor(LocalDateTime.of(2024, 5, 17, 8, 30, 15, 123_000_000), 42L);
+
+        assertEquals(cursor, HistoryCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void encodedCursorIsUrlSafe() {
+        String encoded = new HistoryCursor(LocalDateTime.of(2024, 1, 1, 0, 0), Long.MAX_VALUE).encode();
+
+        assertFalse(encoded.contains("+") || encoded.contains("/") || encoded.contains("="));
+    }
+
+    @Test
+    void malformedCursorsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> HistoryCursor.decode("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> HistoryCursor.decode(encode("2024-01-01T00:00")));
+        assertThrows(IllegalArgumentException.class, () -> HistoryCursor.decode(encode("yesterday|5")));
+        assertThrows(IllegalArgumentException.class, () -> HistoryCursor.decode(encode("2024-01-01T00:00|x")));
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
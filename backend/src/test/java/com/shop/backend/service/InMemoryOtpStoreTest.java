@@ -0,0 +1,87 @@
+package com.shop.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryOtpStoreTest {
+    private static final String EMAIL = "a@example.com";
+    private static final Duration TTL = Duration.ofMinutes(5);
+    private static final Duration LOCKOUT = Duration.ofMinutes(15);
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final InMemoryOtpStore store = new InMemoryOtpStore(100, new SimpleMeterRegistry());
+
+    @Test
+    void correctCodeIsSingleUse() {
+        assertTrue(store.save(EMAIL, "h1", TTL, MAX_ATTEMPTS, LOCKOUT));
+
+        assertEquals(OtpStore.Result.VALID, store.verify(EMAIL, "h1", MAX_ATTEMPTS, LOCKOUT));
+        assertEquals(OtpStore.Result.MISSING, store.verify(EMAIL, "h1", MAX_ATTEMPTS, LOCKOUT));
+    }
+
+    @Test
+    void expiredCodeIsMissing() {
+        store.save(EMAIL, "h1", Duration.ZERO, MAX_ATTEMPTS, LOCKOUT);
+
+        assertEquals(OtpStore.Result.MISSING, store.verify(EMAIL, "h1", MAX_ATTEMPTS, LOCKOUT));
+    }
+
+    @Test
+    void reachingMaxAttemptsLocksEvenTheCorrectCode() {
+        store.save(EMAIL, "h1", TTL, MAX_ATTEMPTS, LOCKOUT);
+
+        assertEquals(OtpStore.Result.INVALID, store.verify(EMAIL, "bad", MAX_ATTEMPTS, LOCKOUT));
+        assertEquals(OtpStore.Result.INVALID, store.verify(EMAIL, "bad", MAX_ATTEMPTS, LOCKOUT));
+        assertEquals(OtpStore.Result.LOCKED, store.verify(EMAIL, "bad", MAX_ATTEMPTS, LOCKOUT));
+        assertEquals(OtpStore.Result.LOCKED, store.verify(EMAIL, "h1", MAX_ATTEMPTS, LOCKOUT));
+    }
+
+    @Test
+    void lockedEmailCannotRequestANewCode() {
+        store.save(EMAIL, "h1", TTL, MAX_ATTEMPTS, LOCKOUT);
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            store.verify(EMAIL, "bad", MAX_ATTEMPTS, LOCKOUT);
+        }
+
+        assertFalse(store.save(EMAIL, "h2", TTL, MAX_ATTEMPTS, LOCKOUT));
+        assertEquals(OtpStore.Result.LOCKED, store.verify(EMAIL, "h2", MAX_ATTEMPTS, LOCKOUT));
+    }
+
+    @Test
+    void newCodeDoesNotResetTheFailureCount() {
+        store.save(EMAIL, "h1", TTL, MAX_ATTEMPTS, LOCKOUT);
+        store.verify(EMAIL, "bad", MAX_ATTEMPTS, LOCKOUT);
+        store.verify(EMAIL, "bad", MAX_ATTEMPTS, LOCKOUT);
+
+        assertTrue(store.save(EMAIL, "h2", TTL, MAX_ATTEMPTS, LOCKOUT));
+        assertEquals(OtpStore.Result.LOCKED, store.verify(EMAIL, "bad", MAX_ATTEMPTS, LOCKOUT));
+    }
+
+    @Test
+    void failureCountResetsOnceTheWindowHasPassed() {
+        // Cửa sổ 0: mỗi lần sai mở cửa sổ mới đã hết hạn ngay
+        store.save(EMAIL, "h1", TTL, MAX_ATTEMPTS, Duration.ZERO);
+        store.verify(EMAIL, "bad", MAX_ATTEMPTS, Duration.ZERO);
+        store.verify(EMAIL, "bad", MAX_ATTEMPTS, Duration.ZERO);
+
+        assertTrue(store.save(EMAIL, "h2", TTL, MAX_ATTEMPTS, Duration.ZERO));
+        assertEquals(OtpStore.Result.INVALID, store.verify(EMAIL, "bad", MAX_ATTEMPTS, Duration.ZERO));
+        assertEquals(OtpStore.Result.VALID, store.verify(EMAIL, "h2", MAX_ATTEMPTS, Duration.ZERO));
+    }
+
+    @Test
+    void fullStoreRejectsNewEmailsButAcceptsKnownOnes() {
+        InMemoryOtpStore small = new InMemoryOtpStore(1, new SimpleMeterRegistry());
+        small.save(EMAIL, "h1", TTL, MAX_ATTEMPTS, LOCKOUT);
+
+        assertThrows(OtpStoreFullException.class, () -> small.save("b@example.com", "h1", TTL, MAX_ATTEMPTS, LOCKOUT));
+        assertTrue(small.save(EMAIL, "h2", TTL, MAX_ATTEMPTS, LOCKOUT));
+    }
+}
@@ -0,0 +1,39 @@
+package com.shop.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PackedAnswersTest {
+
+    @Test
+    void roundTripKeepsValuesAndUnanswered() {
+        int[] values = {0, 3, -1, 254, 127, 128};
+
+        byte[] packed = PackedAnswers.pack(values);
+
+        assertEquals(values.length, packed.length);
+        assertArrayEquals(values, PackedAnswers.unpack(packed));
+    }
+
+    @Test
+    void anyNegativeValueIsStoredAsUnanswered() {
+        assertArrayEquals(new int[]{-1}, PackedAnswers.unpack(PackedAnswers.pack(new int[]{-7})));
+    }
+
+    @Test
+    void valuesAbove254CannotBePacked() {
+        assertTrue(PackedAnswers.canPack(new int[]{0, PackedAnswers.MAX_VALUE}));
+        assertFalse(PackedAnswers.canPack(new int[]{0, 255}));
+        assertThrows(IllegalArgumentException.class, () -> PackedAnswers.pack(new int[]{255}));
+    }
+
+    @Test
+    void emptyVector() {
+        assertArrayEquals(new int[0], PackedAnswers.unpack(PackedAnswers.pack(new int[0])));
+    }
+}
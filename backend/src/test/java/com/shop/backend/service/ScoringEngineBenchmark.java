@@ -0,0 +1,70 @@
+package com.shop.backend.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Đo vòng chấm điểm ScoringEngine.score(rules, int[]) trên luật đã biên dịch sẵn, không có database.
+// Chạy: mvn test-compile rồi chạy main() của lớp này với classpath test (IDE hoặc exec:java -Dexec.classpathScope=test).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringEngineBenchmark {
+    // Số vector đáp án xoay vòng, đủ lớn để branch predictor không học thuộc một bài nộp
+    private static final int VECTORS = 1024;
+
+    @Param({"BDI", "DASS-21", "DASS-42"})
+    public String testKey;
+
+    private ScoringEngine engine;
+    private ScoringEngine.InstrumentRules rules;
+    private int[][] answers;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        int size = testKey.equals("DASS-42") ? 42 : 21;
+        boolean[] reverse = new boolean[size];
+        for (int i = 0; i < size; i += 7) {
+            reverse[i] = true;
+        }
+        engine = ScoringFixtures.engine(ScoringFixtures.bank(testKey, size, reverse, "Trầm cảm", "Lo âu", "Căng thẳng"));
+        rules = engine.rulesFor(testKey);
+        Random random = new Random(42);
+        answers = new int[VECTORS][size];
+        for (int[] values : answers) {
+            for (int i = 0; i < size; i++) {
+                // Khoảng 5% câu bỏ trống
+                values[i] = random.nextInt(20) == 0 ? -1 : random.nextInt(QuestionBank.DEFAULT_MAX_VALUE + 1);
+            }
+        }
+    }
+
+    @Benchmark
+    public ScoringEngine.ScoreResult score() {
+        int[] values = answers[next];
+        next = (next + 1) & (VECTORS - 1);
+        return engine.score(rules, values);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ScoringEngineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
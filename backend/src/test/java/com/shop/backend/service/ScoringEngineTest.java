@@ -0,0 +1,167 @@
+package com.shop.backend.service;
+
+import com.shop.backend.model.DepressionTestResult.SeverityLevel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ScoringEngineTest {
+
+    private static final String[] DASS_CATEGORIES = {"Trầm cảm", "Lo âu", "Căng thẳng"};
+
+    private final ScoringEngine engine = ScoringFixtures.engine(
+            ScoringFixtures.bank("BDI", 21),
+            ScoringFixtures.bank("RADS", 30),
+            ScoringFixtures.bank("EPDS", 10),
+            ScoringFixtures.bank("SAS", 20),
+            ScoringFixtures.bank("DASS-21", 21, DASS_CATEGORIES),
+            ScoringFixtures.bank("DASS-42", 42, DASS_CATEGORIES),
+            ScoringFixtures.bank(null, 10));
+
+    // Mỗi ngưỡng được kiểm tra ở cả điểm cao nhất của bậc dưới và điểm thấp nhất của bậc trên
+    @ParameterizedTest
+    @CsvSource({
+            "BDI, 21, 13, MINIMAL, Trầm cảm tối thiểu",
+            "BDI, 21, 14, MILD, Trầm cảm nhẹ",
+            "BDI, 21, 19, MILD, Trầm cảm nhẹ",
+            "BDI, 21, 20, MODERATE, Trầm cảm vừa",
+            "BDI, 21, 28, MODERATE, Trầm cảm vừa",
+            "BDI, 21, 29, SEVERE, Trầm cảm nặng",
+            "RADS, 30, 63, MINIMAL, Trầm cảm tối thiểu",
+            "RADS, 30, 64, MILD, Trầm cảm nhẹ",
+            "RADS, 30, 76, MILD, Trầm cảm nhẹ",
+            "RADS, 30, 77, MODERATE, Trầm cảm vừa",
+            "RADS, 30, 87, MODERATE, Trầm cảm vừa",
+            "RADS, 30, 88, SEVERE, Trầm cảm nặng",
+            "EPDS, 10, 9, MINIMAL, Không có dấu hiệu trầm cảm sau sinh",
+            "EPDS, 10, 10, MILD, Có thể có trầm cảm sau sinh",
+            "EPDS, 10, 12, MILD, Có thể có trầm cảm sau sinh",
+            "EPDS, 10, 13, MODERATE, Nhiều khả năng trầm cảm sau sinh",
+            "EPDS, 10, 19, MODERATE, Nhiều khả năng trầm cảm sau sinh",
+            "EPDS, 10, 20, SEVERE, Trầm cảm sau sinh nặng",
+            "SAS, 20, 35, MINIMAL, Lo âu trong giới hạn bình thường",
+            "SAS, 20, 36, MILD, Lo âu nhẹ",
+            "SAS, 20, 47, MILD, Lo âu nhẹ",
+            "SAS, 20, 48, MODERATE, Lo âu vừa",
+            "SAS, 20, 59, MODERATE, Lo âu vừa",
+            "SAS, 20, 60, SEVERE, Lo âu nặng"
+    })
+    void totalScoreLadders(String testKey, int size, int total, SeverityLevel severity, String diagnosis) {
+        ScoringEngine.ScoreResult result = engine.score(engine.rulesFor(testKey), ScoringFixtures.valuesSummingTo(size, total));
+
+        assertEquals(total, result.totalScore());
+        assertEquals(severity, result.severityLevel());
+        assertEquals(diagnosis, result.diagnosis());
+    }
+
+    // testKey không xác định dùng thang mặc định trên bộ câu hỏi active
+    @ParameterizedTest
+    @CsvSource({
+            "4, MINIMAL, Không có dấu hiệu trầm cảm",
+            "5, MILD, Trầm cảm nhẹ",
+            "10, MODERATE, Trầm cảm vừa",
+            "15, SEVERE, Trầm cảm nặng vừa",
+            "20, SEVERE, Trầm cảm rất nặng"
+    })
+    void unknownTestKeyUsesDefaultLadder(int total, SeverityLevel severity, String diagnosis) {
+        ScoringEngine.ScoreResult result = engine.score(engine.rulesFor("UNKNOWN"), ScoringFixtures.valuesSummingTo(10, total));
+
+        assertEquals(severity, result.severityLevel());
+        assertEquals(diagnosis, result.diagnosis());
+    }
+
+    @Test
+    void dass21DoublesSubscaleScoresBeforeApplyingCutoffs() {
+        int[] values = new int[21];
+        // Câu 0, 3, 6... là trầm cảm: điểm thô 5 -> 10 trên thang DASS-42, vừa qua ngưỡng 9
+        values[0] = 3;
+        values[3] = 2;
+
+        ScoringEngine.ScoreResult result = engine.score(engine.rulesFor("DASS-21"), values);
+
+        assertEquals(5, result.totalScore());
+        assertEquals(SeverityLevel.MILD, result.severityLevel());
+        assertEquals("Trầm cảm: nhẹ, Lo âu: bình thường, Stress: bình thường", result.diagnosis());
+    }
+
+    @Test
+    void dassSeverityIsTheWorstSubscale() {
+        int[] values = new int[21];
+        values[0] = 3;
+        values[3] = 2;
+        // Lo âu: điểm thô 10 -> 20, vượt ngưỡng 19
+        values[1] = 3;
+        values[4] = 3;
+        values[7] = 3;
+        values[10] = 1;
+
+        ScoringEngine.ScoreResult result = engine.score(engine.rulesFor("DASS-21"), values);
+
+        assertEquals(SeverityLevel.SEVERE, result.severityLevel());
+        assertEquals("Trầm cảm: nhẹ, Lo âu: rất nặng, Stress: bình thường", result.diagnosis());
+    }
+
+    @Test
+    void dass42UsesRawSubscaleScores() {
+        int[] values = new int[42];
+        // Stress: điểm thô 15, trên ngưỡng 14 nhưng chưa tới 18
+        values[2] = 3;
+        values[5] = 3;
+        values[8] = 3;
+        values[11] = 3;
+        values[14] = 3;
+
+        ScoringEngine.ScoreResult result = engine.score(engine.rulesFor("DASS-42"), values);
+
+        assertEquals(15, result.totalScore());
+        assertEquals(SeverityLevel.MILD, result.severityLevel());
+        assertEquals("Trầm cảm: bình thường, Lo âu: bình thường, Stress: nhẹ", result.diagnosis());
+    }
+
+    @Test
+    void reverseKeyedQuestionsAreScoredFromTheOtherEnd() {
+        boolean[] reverse = new boolean[10];
+        reverse[0] = true;
+        reverse[1] = true;
+        reverse[2] = true;
+        ScoringEngine reverseEngine = ScoringFixtures.engine(ScoringFixtures.bank("EPDS", 10, reverse));
+        ScoringEngine.InstrumentRules rules = reverseEngine.rulesFor("EPDS");
+
+        // Trả lời 0 ở câu đảo được 3 điểm, ở câu thường được 0 điểm
+        assertEquals(9, reverseEngine.score(rules, new int[10]).totalScore());
+        // Trả lời 3 ở mọi câu: chỉ 7 câu thường được tính
+        int[] allThree = {3, 3, 3, 3, 3, 3, 3, 3, 3, 3};
+        assertEquals(21, reverseEngine.score(rules, allThree).totalScore());
+    }
+
+    @Test
+    void reverseKeyUsesTheQuestionOwnRange() {
+        // Thang 1-4 (kiểu Zung): câu đảo trả lời 1 được 4 điểm
+        QuestionBank bank = new QuestionBank("SAS", new long[]{1, 2}, new int[]{1, 1}, new int[]{1, 1}, new int[]{4, 4},
+                new boolean[]{true, false}, new String[2]);
+        ScoringEngine sasEngine = ScoringFixtures.engine(bank);
+
+        assertEquals(5, sasEngine.score(sasEngine.rulesFor("SAS"), new int[]{1, 1}).totalScore());
+    }
+
+    @Test
+    void unansweredQuestionsAreSkippedEvenWhenReverseKeyed() {
+        boolean[] reverse = new boolean[10];
+        reverse[0] = true;
+        ScoringEngine reverseEngine = ScoringFixtures.engine(ScoringFixtures.bank("EPDS", 10, reverse));
+        int[] values = {-1, 2, -1, -1, -1, -1, -1, -1, -1, -1};
+
+        assertEquals(2, reverseEngine.score(reverseEngine.rulesFor("EPDS"), values).totalScore());
+    }
+
+    @Test
+    void weightsMultiplyAnswerValues() {
+        QuestionBank bank = new QuestionBank("BDI", new long[]{1, 2}, new int[]{2, 1}, new int[]{0, 0}, new int[]{3, 3},
+                new boolean[2], new String[2]);
+        ScoringEngine weighted = ScoringFixtures.engine(bank);
+
+        assertEquals(7, weighted.score(weighted.rulesFor("BDI"), new int[]{3, 1}).totalScore());
+    }
+}
@@ -0,0 +1,73 @@
+package com.shop.backend.service;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Dựng QuestionBank và ScoringEngine trong bộ nhớ cho test và benchmark, không cần database
+final class ScoringFixtures {
+
+    private ScoringFixtures() {
+    }
+
+    // size câu thang 0-3, trọng số 1, không câu đảo; categories lặp vòng theo vị trí câu hỏi
+    static QuestionBank bank(String testKey, int size, String... categories) {
+        return bank(testKey, size, new boolean[size], categories);
+    }
+
+    static QuestionBank bank(String testKey, int size, boolean[] reverse, String... categories) {
+        long[] ids = new long[size];
+        int[] weights = new int[size];
+        int[] minValues = new int[size];
+        int[] maxValues = new int[size];
+        String[] categoryAt = new String[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = i + 1;
+            weights[i] = 1;
+            minValues[i] = QuestionBank.DEFAULT_MIN_VALUE;
+            maxValues[i] = QuestionBank.DEFAULT_MAX_VALUE;
+            categoryAt[i] = categories.length > 0 ? categories[i % categories.length] : null;
+        }
+        return new QuestionBank(testKey, ids, weights, minValues, maxValues, reverse, categoryAt);
+    }
+
+    // Engine đọc catalog cố định gồm đúng các bank truyền vào; bank không có testKey là bộ câu hỏi active
+    static ScoringEngine engine(QuestionBank... banks) {
+        Map<String, QuestionBank> byTestKey = new HashMap<>();
+        QuestionBank activeBank = bank(null, 0);
+        for (QuestionBank bank : banks) {
+            if (bank.getTestKey() != null) {
+                byTestKey.put(bank.getTestKey(), bank);
+            } else {
+                activeBank = bank;
+            }
+        }
+        QuestionCatalog.Snapshot snapshot = new QuestionCatalog.Snapshot(1L, List.of(), List.of(), Map.of(),
+                activeBank, byTestKey, Map.of());
+        QuestionCatalog catalog = new QuestionCatalog(null) {
+            @Override
+            public Snapshot snapshot() {
+                return snapshot;
+            }
+        };
+        ScoringEngine engine = new ScoringEngine();
+        ReflectionTestUtils.setField(engine, "questionCatalog", catalog);
+        return engine;
+    }
+
+    // Vector đáp án có tổng đúng bằng total: dồn điểm 3 vào các câu đầu, phần dư vào câu kế tiếp
+    static int[] valuesSummingTo(int size, int total) {
+        int[] values = new int[size];
+        int remaining = total;
+        for (int i = 0; i < size && remaining > 0; i++) {
+            values[i] = Math.min(QuestionBank.DEFAULT_MAX_VALUE, remaining);
+            remaining -= values[i];
+        }
+        if (remaining > 0) {
+            throw new IllegalArgumentException("Tổng " + total + " vượt quá điểm tối đa của " + size + " câu");
+        }
+        return values;
+    }
+}
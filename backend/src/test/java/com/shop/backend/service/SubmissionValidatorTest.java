@@ -0,0 +1,82 @@
+package com.shop.backend.service;
+
+import com.shop.backend.dto.depression.DepressionTestRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SubmissionValidatorTest {
+
+    private final SubmissionValidator validator = new SubmissionValidator();
+    private final QuestionBank bank = ScoringFixtures.bank("BDI", 4);
+
+    @Test
+    void answersAreReturnedInCatalogOrder() {
+        int[] values = validator.toAnswerVector(bank, "BDI", List.of(answer(3L, 2), answer(1L, 0)));
+
+        assertArrayEquals(new int[]{0, -1, 2, -1}, values);
+    }
+
+    @Test
+    void unknownTestTypeIsRejected() {
+        QuestionBank activeBank = ScoringFixtures.bank(null, 4);
+
+        assertThrows(InvalidSubmissionException.class,
+                () -> validator.toAnswerVector(activeBank, "NOPE", List.of(answer(1L, 0))));
+    }
+
+    @Test
+    void emptySubmissionIsRejected() {
+        assertThrows(InvalidSubmissionException.class, () -> validator.toAnswerVector(bank, "BDI", List.of()));
+        assertThrows(InvalidSubmissionException.class, () -> validator.toAnswerVector(bank, "BDI", null));
+    }
+
+    @Test
+    void moreAnswersThanQuestionsIsRejected() {
+        List<DepressionTestRequest.QuestionAnswer> answers = new ArrayList<>();
+        for (long id = 1; id <= 5; id++) {
+            answers.add(answer(id, 0));
+        }
+
+        assertThrows(InvalidSubmissionException.class, () -> validator.toAnswerVector(bank, "BDI", answers));
+    }
+
+    @Test
+    void questionOutsideTheBankIsRejected() {
+        assertThrows(InvalidSubmissionException.class,
+                () -> validator.toAnswerVector(bank, "BDI", List.of(answer(99L, 0))));
+    }
+
+    @Test
+    void duplicateAnswerIsRejected() {
+        assertThrows(InvalidSubmissionException.class,
+                () -> validator.toAnswerVector(bank, "BDI", List.of(answer(2L, 1), answer(2L, 3))));
+    }
+
+    @Test
+    void valueOutsideTheQuestionRangeIsRejected() {
+        assertThrows(InvalidSubmissionException.class,
+                () -> validator.toAnswerVector(bank, "BDI", List.of(answer(1L, 4))));
+        assertThrows(InvalidSubmissionException.class,
+                () -> validator.toAnswerVector(bank, "BDI", List.of(answer(1L, -1))));
+    }
+
+    @Test
+    void missingFieldsAreRejected() {
+        assertThrows(InvalidSubmissionException.class,
+                () -> validator.toAnswerVector(bank, "BDI", List.of(answer(null, 1))));
+        assertThrows(InvalidSubmissionException.class,
+                () -> validator.toAnswerVector(bank, "BDI", List.of(answer(1L, null))));
+    }
+
+    private static DepressionTestRequest.QuestionAnswer answer(Long questionId, Integer value) {
+        DepressionTestRequest.QuestionAnswer answer = new DepressionTestRequest.QuestionAnswer();
+        answer.setQuestionId(questionId);
+        answer.setAnswerValue(value);
+        return answer;
+    }
+}
@@ -0,0 +1,133 @@
+package com.shop.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.backend.dto.depression.DepressionTestResultDTO;
+import com.shop.backend.model.DepressionTestResult;
+import com.shop.backend.repository.DepressionTestResultRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TestResultExportServiceTest {
+    private static final int FETCH_SIZE = Integer.MIN_VALUE;
+
+    private final DepressionTestResultRepository repository = mock(DepressionTestResultRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final TestResultExportService service = new TestResultExportService(transactionManager);
+    private final TestResultFilter filter = new TestResultFilter(null, null, null, null, null);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "testResultRepository", repository);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(service, "fetchSize", FETCH_SIZE);
+    }
+
+    @Test
+    void parseFormatAcceptsCsvAndNdjsonInAnyCase() {
+        assertEquals(TestResultExportService.Format.CSV, TestResultExportService.parseFormat("csv"));
+        assertEquals(TestResultExportService.Format.CSV, TestResultExportService.parseFormat("CSV"));
+        assertEquals(TestResultExportService.Format.NDJSON, TestResultExportService.parseFormat("NdJson"));
+    }
+
+    @Test
+    void parseFormatRejectsEverythingElse() {
+        assertThrows(IllegalArgumentException.class, () -> TestResultExportService.parseFormat("xlsx"));
+        assertThrows(IllegalArgumentException.class, () -> TestResultExportService.parseFormat(""));
+        assertThrows(IllegalArgumentException.class, () -> TestResultExportService.parseFormat(null));
+    }
+
+    @Test
+    void csvDownloadStreamsRowsInsideAReadOnlyTransaction() throws IOException {
+        when(repository.streamForExport(filter, FETCH_SIZE)).thenReturn(Stream.of(row("=1+1, \"x\"")));
+
+        ResponseEntity<?> response = service.download("csv", filter);
+        assertEquals("text/csv;charset=UTF-8", response.getHeaders().getContentType().toString());
+        assertEquals("attachment; filename=\"test-results.csv\"", response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION));
+
+        String body = write(response);
+        assertEquals("\uFEFF" + "id,userId,studentName,email,testType,totalScore,severityLevel,diagnosis,recommendation,testedAt\n"
+                + "7,3,An Nguyen,an@example.com,BDI,21,MODERATE,\"'=1+1, \"\"x\"\"\",Nghỉ ngơi,2024-05-01T08:30\n", body);
+
+        // Con trỏ chỉ được mở và đọc hết trong transaction chỉ đọc, khi body thực sự được ghi
+        InOrder order = inOrder(transactionManager, repository);
+        order.verify(transactionManager).getTransaction(argThat(TransactionDefinition::isReadOnly));
+        order.verify(repository).streamForExport(filter, FETCH_SIZE);
+        order.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void ndjsonDownloadWritesOneObjectPerLine() throws IOException {
+        when(repository.streamForExport(filter, FETCH_SIZE)).thenReturn(Stream.of(row("a"), row("b")));
+
+        ResponseEntity<?> response = service.download("ndjson", filter);
+        assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+
+        String[] lines = write(response).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"diagnosis\":\"a\""));
+        assertTrue(lines[1].contains("\"diagnosis\":\"b\""));
+    }
+
+    @Test
+    void writeFailureIsRethrownAsIOExceptionAndRollsBack() {
+        when(repository.streamForExport(filter, FETCH_SIZE)).thenReturn(Stream.of(row("a")));
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("client gone");
+            }
+        };
+
+        ResponseEntity<?> response = service.download("csv", filter);
+        IOException error = assertThrows(IOException.class, () -> ((StreamingResponseBody) response.getBody()).writeTo(broken));
+        assertEquals("client gone", error.getMessage());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void unknownFormatIsABadRequestWithoutTouchingTheDatabase() {
+        ResponseEntity<?> response = service.download("xlsx", filter);
+
+        assertEquals(400, response.getStatusCode().value());
+        verify(repository, never()).streamForExport(any(), eq(FETCH_SIZE));
+    }
+
+    private static String write(ResponseEntity<?> response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static DepressionTestResultDTO row(String diagnosis) {
+        return new DepressionTestResultDTO(7L, 21, DepressionTestResult.SeverityLevel.MODERATE,
+                LocalDateTime.of(2024, 5, 1, 8, 30), diagnosis, "Nghỉ ngơi", "BDI",
+                3L, "An", "Nguyen", "an@example.com");
+    }
+}
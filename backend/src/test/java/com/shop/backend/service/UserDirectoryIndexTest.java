@@ -0,0 +1,43 @@
+package com.shop.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserDirectoryIndexTest {
+
+    @Test
+    void gramsCoverTrigramsAndWordPrefixes() {
+        Set<String> grams = UserDirectoryIndex.grams("an nguyen");
+
+        assertEquals(Set.of("an ", "n n", " ng", "ngu", "guy", "uye", "yen", "^a", "^an", "^n", "^ng"), grams);
+    }
+
+    @Test
+    void trigramsDoNotSpanLines() {
+        Set<String> grams = UserDirectoryIndex.grams("abc\ndef");
+
+        assertTrue(grams.contains("abc"));
+        assertTrue(grams.contains("def"));
+        assertFalse(grams.contains("bc\n"));
+        assertFalse(grams.contains("c\nd"));
+    }
+
+    @Test
+    void emailIsSplitIntoWordsForPrefixes() {
+        Set<String> grams = UserDirectoryIndex.grams("lan.tran@mail.vn");
+
+        assertTrue(grams.containsAll(Set.of("^l", "^la", "^t", "^tr", "^m", "^ma", "^v", "^vn")));
+        assertTrue(grams.contains("n.t"));
+    }
+
+    @Test
+    void shortTextHasOnlyPrefixGrams() {
+        assertEquals(Set.of("^a"), UserDirectoryIndex.grams("a"));
+        assertEquals(Set.of(), UserDirectoryIndex.grams(""));
+    }
+}